@@ -0,0 +1,73 @@
+package com.thelogicmaster.example;
+
+/**
+ * Measures garbage collector pause times with a large live heap of linked objects and arrays. Run with different
+ * CLEARWING_GC_THREADS values to compare serial and parallel marking.
+ */
+public class GCPauseBenchmark {
+
+	private static final int TREE_DEPTH = 20;
+	private static final int LIST_LENGTH = 1_000_000;
+	private static final int ARRAY_COUNT = 10_000;
+	private static final int COLLECTIONS = 10;
+
+	static class Node {
+		Node left;
+		Node right;
+		Object payload;
+	}
+
+	private static Node createTree (int depth) {
+		Node node = new Node();
+		if (depth > 0) {
+			node.left = createTree(depth - 1);
+			node.right = createTree(depth - 1);
+		}
+		return node;
+	}
+
+	private static Node createList (int length) {
+		Node head = null;
+		for (int i = 0; i < length; i++) {
+			Node node = new Node();
+			node.left = head;
+			node.payload = Integer.valueOf(i);
+			head = node;
+		}
+		return head;
+	}
+
+	private static void measure (String name) {
+		long total = 0;
+		long max = 0;
+		for (int i = 0; i < COLLECTIONS; i++) {
+			long start = System.nanoTime();
+			System.gc();
+			long pause = System.nanoTime() - start;
+			total += pause;
+			max = Math.max(max, pause);
+		}
+
+		System.out.println(name + " GC pause average: " + total / COLLECTIONS / 1000 + "us, max: " + max / 1000 + "us");
+	}
+
+	public static void main (String[] args) {
+		// One deep and wide tree reached from a single root, which marking threads share by stealing its subtrees
+		Node tree = createTree(TREE_DEPTH);
+		measure("Single graph");
+
+		// Long list to exercise deep object marking, and many small arrays
+		Node list = createList(LIST_LENGTH);
+		Object[][] arrays = new Object[ARRAY_COUNT][];
+		for (int i = 0; i < arrays.length; i++) {
+			arrays[i] = new Object[16];
+			for (int j = 0; j < arrays[i].length; j++)
+				arrays[i][j] = new Node();
+		}
+		measure("Mixed heap");
+
+		// Keep the heap reachable through the collections
+		if (tree.left == null || list.left == null || arrays[0][0] == null)
+			System.out.println("Unreachable");
+	}
+}
@@ -0,0 +1,122 @@
+package com.thelogicmaster.example;
+
+/**
+ * Measures the JDK methods that the transpiler replaces with inline C++ expressions. Run with the builtinIntrinsics
+ * config option enabled and disabled to compare them against regular calls.
+ */
+public class IntrinsicsBenchmark {
+
+	private static final int ITERATIONS = 10_000_000;
+	private static final int ARRAY_LENGTH = 64;
+	private static final int RUNS = 5;
+
+	private static long checksum;
+
+	private static long mathMinMax (int iterations) {
+		int minimum = Integer.MAX_VALUE;
+		int maximum = Integer.MIN_VALUE;
+		double limit = 0;
+		for (int i = 0; i < iterations; i++) {
+			int value = i * 31 ^ i >>> 3;
+			minimum = Math.min(minimum, value);
+			maximum = Math.max(maximum, value);
+			limit = Math.max(limit, Math.min(i * 0.5, 1000.0));
+		}
+		return minimum + maximum + (long)limit;
+	}
+
+	private static long mathAbs (int iterations) {
+		long sum = 0;
+		double fractions = 0;
+		for (int i = 0; i < iterations; i++) {
+			sum += Math.abs(i - iterations / 2);
+			fractions += Math.abs(i * -0.25);
+		}
+		return sum + (long)fractions;
+	}
+
+	private static long mathSqrtFloor (int iterations) {
+		double sum = 0;
+		for (int i = 0; i < iterations; i++)
+			sum += Math.floor(Math.sqrt(i));
+		return (long)sum;
+	}
+
+	private static long integerBits (int iterations) {
+		long sum = 0;
+		for (int i = 0; i < iterations; i++)
+			sum += Integer.bitCount(i) + Integer.numberOfLeadingZeros(i);
+		return sum;
+	}
+
+	private static long floatBits (int iterations) {
+		long sum = 0;
+		for (int i = 0; i < iterations; i++)
+			sum += Float.floatToRawIntBits(i * 0.75f);
+		return sum;
+	}
+
+	private static long stringChars (int iterations) {
+		String string = "The quick brown fox jumps over the lazy dog";
+		long sum = 0;
+		for (int i = 0; i < iterations / string.length(); i++)
+			for (int j = 0; j < string.length(); j++)
+				sum += string.charAt(j);
+		return sum;
+	}
+
+	private static long arrayCopy (int iterations) {
+		int[] source = new int[ARRAY_LENGTH];
+		int[] destination = new int[ARRAY_LENGTH];
+		for (int i = 0; i < source.length; i++)
+			source[i] = i;
+		long sum = 0;
+		for (int i = 0; i < iterations / ARRAY_LENGTH; i++) {
+			System.arraycopy(source, 0, destination, i % 4, ARRAY_LENGTH - 4);
+			sum += destination[i % ARRAY_LENGTH];
+		}
+		return sum;
+	}
+
+	private static long objectClass (int iterations) {
+		Object[] objects = { "string", 1, 2.0, new Object() };
+		long sum = 0;
+		for (int i = 0; i < iterations; i++)
+			if (objects[i & 3].getClass() == String.class)
+				sum++;
+		return sum;
+	}
+
+	private static void run (String name, int benchmark) {
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < RUNS; run++) {
+			long start = System.nanoTime();
+			switch (benchmark) {
+				case 0: checksum += mathMinMax(ITERATIONS); break;
+				case 1: checksum += mathAbs(ITERATIONS); break;
+				case 2: checksum += mathSqrtFloor(ITERATIONS); break;
+				case 3: checksum += integerBits(ITERATIONS); break;
+				case 4: checksum += floatBits(ITERATIONS); break;
+				case 5: checksum += stringChars(ITERATIONS); break;
+				case 6: checksum += arrayCopy(ITERATIONS); break;
+				default: checksum += objectClass(ITERATIONS); break;
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.println(name + ": " + best / 1_000_000 + "ms");
+	}
+
+	public static void main (String[] args) {
+		run("Math.min/max", 0);
+		run("Math.abs", 1);
+		run("Math.sqrt/floor", 2);
+		run("Integer.bitCount/numberOfLeadingZeros", 3);
+		run("Float.floatToRawIntBits", 4);
+		run("String.length/charAt", 5);
+		run("System.arraycopy", 6);
+		run("Object.getClass", 7);
+
+		// Print the results so the loops can't be optimized away
+		System.out.println("Checksum: " + checksum);
+	}
+}
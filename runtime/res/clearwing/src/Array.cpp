@@ -11,14 +11,10 @@ void clinit_array(jcontext ctx) {
 }
 
 void mark_array(jobject object, jint mark, jint depth) {
-    if (!object || (depth > GC_DEPTH_ALWAYS && (object->gcMark < GC_MARK_START || object->gcMark == mark)))
+    if (!object || !gcMarkClaim(object, mark, depth))
         return;
-    if (depth > MAX_GC_MARK_DEPTH) {
-        markDeepObject(object);
+    if (depth > GC_MARK_SPLIT_DEPTH && markDeepObject(object, depth))
         return;
-    }
-    if (object->gcMark >= GC_MARK_START)
-        object->gcMark = mark;
     if (((jclass) ((jclass) object->clazz)->componentClass)->primitive)
         return;
     auto array = (jarray) object;
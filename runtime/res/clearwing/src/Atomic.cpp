@@ -0,0 +1,236 @@
+#include "Clearwing.h"
+
+#include "java/lang/reflect/Field.h"
+#include "java/util/concurrent/atomic/AtomicBoolean.h"
+#include "java/util/concurrent/atomic/AtomicInteger.h"
+#include "java/util/concurrent/atomic/AtomicLong.h"
+#include "java/util/concurrent/atomic/AtomicReference.h"
+#include "java/util/concurrent/atomic/AtomicIntegerFieldUpdater.h"
+#include "java/util/concurrent/atomic/AtomicLongFieldUpdater.h"
+#include "java/util/concurrent/atomic/AtomicReferenceFieldUpdater.h"
+#include "java/util/concurrent/locks/AbstractQueuedSynchronizer.h"
+#include "java/util/concurrent/locks/AbstractQueuedSynchronizer_Node.h"
+
+// Volatile Java fields are plain memory to std::atomic_ref, which requires a non-volatile reference
+template<typename T>
+static inline std::atomic_ref<T> atomicField(volatile T &field) {
+    return std::atomic_ref<T>(const_cast<T &>(field));
+}
+
+template<typename T>
+static inline std::atomic_ref<T> atomicField(jobject object, jlong offset) {
+    return std::atomic_ref<T>(*(T *) ((char *) object + offset));
+}
+
+// Volatile reads and writes are sequentially consistent, while lazySet only needs release ordering
+template<typename T>
+static inline T loadVolatile(std::atomic_ref<T> ref) {
+    return ref.load(std::memory_order_seq_cst);
+}
+
+template<typename T>
+static inline void storeVolatile(std::atomic_ref<T> ref, T value) {
+    ref.store(value, std::memory_order_seq_cst);
+}
+
+template<typename T>
+static inline void storeOrdered(std::atomic_ref<T> ref, T value) {
+    ref.store(value, std::memory_order_release);
+}
+
+template<typename T>
+static inline jbool compareAndSet(std::atomic_ref<T> ref, T expected, T update) {
+    return ref.compare_exchange_strong(expected, update);
+}
+
+extern "C" {
+
+jbool M_java_util_concurrent_atomic_AtomicBoolean_get_R_boolean(jcontext ctx, jobject self) {
+    return loadVolatile(atomicField(((java_util_concurrent_atomic_AtomicBoolean *) self)->F_value));
+}
+
+void M_java_util_concurrent_atomic_AtomicBoolean_set_boolean(jcontext ctx, jobject self, jbool newValue) {
+    storeVolatile(atomicField(((java_util_concurrent_atomic_AtomicBoolean *) self)->F_value), newValue);
+}
+
+void M_java_util_concurrent_atomic_AtomicBoolean_lazySet_boolean(jcontext ctx, jobject self, jbool newValue) {
+    storeOrdered(atomicField(((java_util_concurrent_atomic_AtomicBoolean *) self)->F_value), newValue);
+}
+
+jbool M_java_util_concurrent_atomic_AtomicBoolean_compareAndSet_boolean_boolean_R_boolean(jcontext ctx, jobject self, jbool expect, jbool update) {
+    return compareAndSet(atomicField(((java_util_concurrent_atomic_AtomicBoolean *) self)->F_value), expect, update);
+}
+
+jbool M_java_util_concurrent_atomic_AtomicBoolean_getAndSet_boolean_R_boolean(jcontext ctx, jobject self, jbool newValue) {
+    return atomicField(((java_util_concurrent_atomic_AtomicBoolean *) self)->F_value).exchange(newValue);
+}
+
+jint M_java_util_concurrent_atomic_AtomicInteger_get_R_int(jcontext ctx, jobject self) {
+    return loadVolatile(atomicField(((java_util_concurrent_atomic_AtomicInteger *) self)->F_value));
+}
+
+void M_java_util_concurrent_atomic_AtomicInteger_set_int(jcontext ctx, jobject self, jint newValue) {
+    storeVolatile(atomicField(((java_util_concurrent_atomic_AtomicInteger *) self)->F_value), newValue);
+}
+
+void M_java_util_concurrent_atomic_AtomicInteger_lazySet_int(jcontext ctx, jobject self, jint newValue) {
+    storeOrdered(atomicField(((java_util_concurrent_atomic_AtomicInteger *) self)->F_value), newValue);
+}
+
+jbool M_java_util_concurrent_atomic_AtomicInteger_compareAndSet_int_int_R_boolean(jcontext ctx, jobject self, jint expect, jint update) {
+    return compareAndSet(atomicField(((java_util_concurrent_atomic_AtomicInteger *) self)->F_value), expect, update);
+}
+
+jint M_java_util_concurrent_atomic_AtomicInteger_getAndSet_int_R_int(jcontext ctx, jobject self, jint newValue) {
+    return atomicField(((java_util_concurrent_atomic_AtomicInteger *) self)->F_value).exchange(newValue);
+}
+
+jint M_java_util_concurrent_atomic_AtomicInteger_getAndAdd_int_R_int(jcontext ctx, jobject self, jint delta) {
+    return atomicField(((java_util_concurrent_atomic_AtomicInteger *) self)->F_value).fetch_add(delta);
+}
+
+jlong M_java_util_concurrent_atomic_AtomicLong_get_R_long(jcontext ctx, jobject self) {
+    return loadVolatile(atomicField(((java_util_concurrent_atomic_AtomicLong *) self)->F_value));
+}
+
+void M_java_util_concurrent_atomic_AtomicLong_set_long(jcontext ctx, jobject self, jlong newValue) {
+    storeVolatile(atomicField(((java_util_concurrent_atomic_AtomicLong *) self)->F_value), newValue);
+}
+
+void M_java_util_concurrent_atomic_AtomicLong_lazySet_long(jcontext ctx, jobject self, jlong newValue) {
+    storeOrdered(atomicField(((java_util_concurrent_atomic_AtomicLong *) self)->F_value), newValue);
+}
+
+jbool M_java_util_concurrent_atomic_AtomicLong_compareAndSet_long_long_R_boolean(jcontext ctx, jobject self, jlong expect, jlong update) {
+    return compareAndSet(atomicField(((java_util_concurrent_atomic_AtomicLong *) self)->F_value), expect, update);
+}
+
+jlong M_java_util_concurrent_atomic_AtomicLong_getAndSet_long_R_long(jcontext ctx, jobject self, jlong newValue) {
+    return atomicField(((java_util_concurrent_atomic_AtomicLong *) self)->F_value).exchange(newValue);
+}
+
+jlong M_java_util_concurrent_atomic_AtomicLong_getAndAdd_long_R_long(jcontext ctx, jobject self, jlong delta) {
+    return atomicField(((java_util_concurrent_atomic_AtomicLong *) self)->F_value).fetch_add(delta);
+}
+
+jobject M_java_util_concurrent_atomic_AtomicReference_get_R_java_lang_Object(jcontext ctx, jobject self) {
+    return (jobject) loadVolatile(atomicField(((java_util_concurrent_atomic_AtomicReference *) self)->F_ref));
+}
+
+void M_java_util_concurrent_atomic_AtomicReference_set_java_lang_Object(jcontext ctx, jobject self, jobject newValue) {
+    storeVolatile(atomicField(((java_util_concurrent_atomic_AtomicReference *) self)->F_ref), (jref) newValue);
+}
+
+void M_java_util_concurrent_atomic_AtomicReference_lazySet_java_lang_Object(jcontext ctx, jobject self, jobject newValue) {
+    storeOrdered(atomicField(((java_util_concurrent_atomic_AtomicReference *) self)->F_ref), (jref) newValue);
+}
+
+jbool M_java_util_concurrent_atomic_AtomicReference_compareAndSet_java_lang_Object_java_lang_Object_R_boolean(jcontext ctx, jobject self, jobject expect, jobject update) {
+    return compareAndSet(atomicField(((java_util_concurrent_atomic_AtomicReference *) self)->F_ref), (jref) expect, (jref) update);
+}
+
+jobject M_java_util_concurrent_atomic_AtomicReference_getAndSet_java_lang_Object_R_java_lang_Object(jcontext ctx, jobject self, jobject newValue) {
+    return (jobject) atomicField(((java_util_concurrent_atomic_AtomicReference *) self)->F_ref).exchange((jref) newValue);
+}
+
+jlong SM_java_util_concurrent_atomic_AtomicIntegerFieldUpdater_objectFieldOffset_java_lang_reflect_Field_R_long(jcontext ctx, jobject field) {
+    return ((java_lang_reflect_Field *) NULL_CHECK(field))->F_offset;
+}
+
+jint SM_java_util_concurrent_atomic_AtomicIntegerFieldUpdater_getIntVolatile_java_lang_Object_long_R_int(jcontext ctx, jobject object, jlong offset) {
+    return loadVolatile(atomicField<jint>(object, offset));
+}
+
+void SM_java_util_concurrent_atomic_AtomicIntegerFieldUpdater_putIntVolatile_java_lang_Object_long_int(jcontext ctx, jobject object, jlong offset, jint value) {
+    storeVolatile(atomicField<jint>(object, offset), value);
+}
+
+void SM_java_util_concurrent_atomic_AtomicIntegerFieldUpdater_putOrderedInt_java_lang_Object_long_int(jcontext ctx, jobject object, jlong offset, jint value) {
+    storeOrdered(atomicField<jint>(object, offset), value);
+}
+
+jbool SM_java_util_concurrent_atomic_AtomicIntegerFieldUpdater_compareAndSwapInt_java_lang_Object_long_int_int_R_boolean(jcontext ctx, jobject object, jlong offset, jint expect, jint update) {
+    return compareAndSet(atomicField<jint>(object, offset), expect, update);
+}
+
+jint SM_java_util_concurrent_atomic_AtomicIntegerFieldUpdater_getAndAddInt_java_lang_Object_long_int_R_int(jcontext ctx, jobject object, jlong offset, jint delta) {
+    return atomicField<jint>(object, offset).fetch_add(delta);
+}
+
+jint SM_java_util_concurrent_atomic_AtomicIntegerFieldUpdater_getAndSetInt_java_lang_Object_long_int_R_int(jcontext ctx, jobject object, jlong offset, jint newValue) {
+    return atomicField<jint>(object, offset).exchange(newValue);
+}
+
+jlong SM_java_util_concurrent_atomic_AtomicLongFieldUpdater_objectFieldOffset_java_lang_reflect_Field_R_long(jcontext ctx, jobject field) {
+    return ((java_lang_reflect_Field *) NULL_CHECK(field))->F_offset;
+}
+
+jlong SM_java_util_concurrent_atomic_AtomicLongFieldUpdater_getLongVolatile_java_lang_Object_long_R_long(jcontext ctx, jobject object, jlong offset) {
+    return loadVolatile(atomicField<jlong>(object, offset));
+}
+
+void SM_java_util_concurrent_atomic_AtomicLongFieldUpdater_putLongVolatile_java_lang_Object_long_long(jcontext ctx, jobject object, jlong offset, jlong value) {
+    storeVolatile(atomicField<jlong>(object, offset), value);
+}
+
+void SM_java_util_concurrent_atomic_AtomicLongFieldUpdater_putOrderedLong_java_lang_Object_long_long(jcontext ctx, jobject object, jlong offset, jlong value) {
+    storeOrdered(atomicField<jlong>(object, offset), value);
+}
+
+jbool SM_java_util_concurrent_atomic_AtomicLongFieldUpdater_compareAndSwapLong_java_lang_Object_long_long_long_R_boolean(jcontext ctx, jobject object, jlong offset, jlong expect, jlong update) {
+    return compareAndSet(atomicField<jlong>(object, offset), expect, update);
+}
+
+jlong SM_java_util_concurrent_atomic_AtomicLongFieldUpdater_getAndAddLong_java_lang_Object_long_long_R_long(jcontext ctx, jobject object, jlong offset, jlong delta) {
+    return atomicField<jlong>(object, offset).fetch_add(delta);
+}
+
+jlong SM_java_util_concurrent_atomic_AtomicLongFieldUpdater_getAndSetLong_java_lang_Object_long_long_R_long(jcontext ctx, jobject object, jlong offset, jlong newValue) {
+    return atomicField<jlong>(object, offset).exchange(newValue);
+}
+
+jlong SM_java_util_concurrent_atomic_AtomicReferenceFieldUpdater_objectFieldOffset_java_lang_reflect_Field_R_long(jcontext ctx, jobject field) {
+    return ((java_lang_reflect_Field *) NULL_CHECK(field))->F_offset;
+}
+
+jobject SM_java_util_concurrent_atomic_AtomicReferenceFieldUpdater_getObjectVolatile_java_lang_Object_long_R_java_lang_Object(jcontext ctx, jobject object, jlong offset) {
+    return (jobject) loadVolatile(atomicField<jref>(object, offset));
+}
+
+void SM_java_util_concurrent_atomic_AtomicReferenceFieldUpdater_putObjectVolatile_java_lang_Object_long_java_lang_Object(jcontext ctx, jobject object, jlong offset, jobject value) {
+    storeVolatile(atomicField<jref>(object, offset), (jref) value);
+}
+
+void SM_java_util_concurrent_atomic_AtomicReferenceFieldUpdater_putOrderedObject_java_lang_Object_long_java_lang_Object(jcontext ctx, jobject object, jlong offset, jobject value) {
+    storeOrdered(atomicField<jref>(object, offset), (jref) value);
+}
+
+jbool SM_java_util_concurrent_atomic_AtomicReferenceFieldUpdater_compareAndSwapObject_java_lang_Object_long_java_lang_Object_java_lang_Object_R_boolean(jcontext ctx, jobject object, jlong offset, jobject expect, jobject update) {
+    return compareAndSet(atomicField<jref>(object, offset), (jref) expect, (jref) update);
+}
+
+jobject SM_java_util_concurrent_atomic_AtomicReferenceFieldUpdater_getAndSetObject_java_lang_Object_long_java_lang_Object_R_java_lang_Object(jcontext ctx, jobject object, jlong offset, jobject newValue) {
+    return (jobject) atomicField<jref>(object, offset).exchange((jref) newValue);
+}
+
+jbool M_java_util_concurrent_locks_AbstractQueuedSynchronizer_compareAndSetState_int_int_R_boolean(jcontext ctx, jobject self, jint expect, jint update) {
+    return compareAndSet(atomicField(((java_util_concurrent_locks_AbstractQueuedSynchronizer *) self)->F_state), expect, update);
+}
+
+jbool M_java_util_concurrent_locks_AbstractQueuedSynchronizer_compareAndSetHead_java_util_concurrent_locks_AbstractQueuedSynchronizer$Node_R_boolean(jcontext ctx, jobject self, jobject update) {
+    return compareAndSet(atomicField(((java_util_concurrent_locks_AbstractQueuedSynchronizer *) self)->F_head), (jref) nullptr, (jref) update);
+}
+
+jbool M_java_util_concurrent_locks_AbstractQueuedSynchronizer_compareAndSetTail_java_util_concurrent_locks_AbstractQueuedSynchronizer$Node_java_util_concurrent_locks_AbstractQueuedSynchronizer$Node_R_boolean(jcontext ctx, jobject self, jobject expect, jobject update) {
+    return compareAndSet(atomicField(((java_util_concurrent_locks_AbstractQueuedSynchronizer *) self)->F_tail), (jref) expect, (jref) update);
+}
+
+jbool SM_java_util_concurrent_locks_AbstractQueuedSynchronizer_compareAndSetWaitStatus_java_util_concurrent_locks_AbstractQueuedSynchronizer$Node_int_int_R_boolean(jcontext ctx, jobject node, jint expect, jint update) {
+    return compareAndSet(atomicField(((java_util_concurrent_locks_AbstractQueuedSynchronizer$Node *) NULL_CHECK(node))->F_waitStatus), expect, update);
+}
+
+jbool SM_java_util_concurrent_locks_AbstractQueuedSynchronizer_compareAndSetNext_java_util_concurrent_locks_AbstractQueuedSynchronizer$Node_java_util_concurrent_locks_AbstractQueuedSynchronizer$Node_java_util_concurrent_locks_AbstractQueuedSynchronizer$Node_R_boolean(jcontext ctx, jobject node, jobject expect, jobject update) {
+    return compareAndSet(atomicField(((java_util_concurrent_locks_AbstractQueuedSynchronizer$Node *) NULL_CHECK(node))->F_next), (jref) expect, (jref) update);
+}
+
+}
@@ -12,6 +12,7 @@
 #include "java/lang/IllegalMonitorStateException.h"
 #include "java/lang/IllegalArgumentException.h"
 #include "java/lang/IndexOutOfBoundsException.h"
+#include "java/lang/ArrayIndexOutOfBoundsException.h"
 #include "java/lang/OutOfMemoryError.h"
 #include "java/lang/StackOverflowError.h"
 #include "java/io/IOException.h"
@@ -28,8 +29,6 @@
 #include <java/lang/ref/WeakReference.h>
 #include <java/lang/reflect/Method.h>
 
-#include <ankerl/unordered_dense.h>
-
 #include <set>
 #include <map>
 #include <vector>
@@ -40,19 +39,23 @@
 #include <codecvt>
 #include <atomic>
 #include <unordered_set>
-#include <cstdarg>
 #include <ranges>
 #include <chrono>
 #include <thread>
+#include <array>
+#include <deque>
+#include <memory>
+#include <condition_variable>
+#include <algorithm>
+#include <bit>
 
 static_assert(sizeof(Class) == sizeof(java_lang_Class)); // Loosely ensure generated Class structure matches native representation
 static_assert(std::alignment_of<java_lang_Object>() == std::alignment_of<jlong>()); // Embedding Object in type struct should not add padding
 
-static ankerl::unordered_dense::set<jobject> *objects;
-static ankerl::unordered_dense::set<jobject> *rootObjects;
 static std::vector<jobject> collectedObjects;
 static std::multimap<jobject, jweak> weakReferences;
 static std::mutex objectsLock;
+static std::mutex pagesLock;
 static jthread collectionThread;
 static std::map<std::string, jclass> *classes;
 static std::recursive_mutex criticalLock;
@@ -119,6 +122,9 @@ jcontext initVM() {
     }
     vmInitialized = true;
 
+    if (auto markThreads = getenv("CLEARWING_GC_THREADS"))
+        setGCMarkThreads(atoi(markThreads));
+
     auto mainContext = createContext();
 
     jcontext collectionCtx = createContext();
@@ -149,8 +155,9 @@ void shutdownVM(jcontext ctx) {
             done = false;
             threadContext->lock.lock();
             if (threadContext->blockedBy)
-                ((jmonitor) ((jobject) threadContext->blockedBy)->monitor)->condition.notify_all();
+                wakeMonitor(threadContext->blockedBy);
             threadContext->lock.unlock();
+            unparkThread(threadContext);
         }
         if (done)
             break;
@@ -183,7 +190,6 @@ bool registerClass(jclass clazz) {
             .clazz = (intptr_t) &class_java_lang_Class,
             .gcMark = GC_MARK_ETERNAL,
             .vtable = (intptr_t) vtable_java_lang_Class,
-            .monitor = (intptr_t) new ObjectMonitor,
     };
 
     auto instanceCache = new std::unordered_set<jclass>;
@@ -318,31 +324,47 @@ const char *stringToNative(jcontext ctx, jstring string) {
     return (const char *) string->F_nativeString;
 }
 
-jstring concatStringsRecipe(jcontext ctx, const char *recipe, int argCount, ...) {
-    va_list args;
-    va_start(args, argCount);
-    volatile auto string = new std::string;
-    jstring result{};
-    tryFinally([&] {
-        int term = 0;
-        for (const char *it = recipe; *it; it++) {
-            if (*it == 0x1 || *it == 0x2) {
-                if (term++ >= argCount) throw std::runtime_error("Not enough args for string recipe");
-                auto obj = va_arg(args, jobject);
-                if (obj)
-                    *string += stringToNative(ctx, (jstring)invokeVirtual<func_java_lang_Object_toString_R_java_lang_String, VTABLE_java_lang_Object_toString_R_java_lang_String>(ctx, obj));
-                else
-                    *string += "null";
-            } else {
-                *string += *it;
-            }
-        }
-        result = stringFromNative(ctx, string->c_str());
-    }, [&] {
-        delete string;
-        va_end(args); // This may be unsafe if an exception is thrown...
-    });
-    return result;
+/// Converts an object to a string for concatenation, or null for "null". Throws exceptions.
+jstring concatObjectToString(jcontext ctx, jobject object) {
+    if (!object)
+        return nullptr;
+    return (jstring) invokeVirtual<func_java_lang_Object_toString_R_java_lang_String, VTABLE_java_lang_Object_toString_R_java_lang_String>(ctx, object);
+}
+
+/// Formats a float the same way as Float.toString. Throws exceptions.
+jstring concatFloatToString(jcontext ctx, jfloat value) {
+    return (jstring) SM_java_lang_Float_toString_float_R_java_lang_String(ctx, value);
+}
+
+/// Formats a double the same way as Double.toString. Throws exceptions.
+jstring concatDoubleToString(jcontext ctx, jdouble value) {
+    return (jstring) SM_java_lang_Double_toString_double_R_java_lang_String(ctx, value);
+}
+
+/// Allocates a string with uninitialized chars of the given length to be written directly. Throws exceptions.
+jstring allocateConcatString(jcontext ctx, jint length, jchar **chars) {
+    auto string = (jstring) gcAllocProtected(ctx, &class_java_lang_String); // This leaks if createArray throws an exception
+    auto array = createArray(ctx, &class_char, length);
+    unprotectObject((jobject) string);
+    string->F_value = (intptr_t) array;
+    string->F_count = length;
+    *chars = (jchar *) array->data;
+    return string;
+}
+
+/// Returns the number of chars a string part adds to a concatenation. Does not throw exceptions.
+jint concatStringLength(jstring string) {
+    return string ? string->F_count : 4;
+}
+
+/// Writes a string part of a concatenation, returning the position after it. Does not throw exceptions.
+jchar *concatWriteString(jchar *chars, jstring string) {
+    if (!string) {
+        memcpy(chars, u"null", 4 * sizeof(jchar));
+        return chars + 4;
+    }
+    memcpy(chars, ((jarray) string->F_value)->data, string->F_count * sizeof(jchar));
+    return chars + string->F_count;
 }
 
 /// Returns whether a provided `assignee` is an instance of or inherits from `type`. Does not throw exceptions.
@@ -363,13 +385,210 @@ bool isInstance(jcontext ctx, jobject object, jclass type) {
     return isAssignableFrom(ctx, type, (jclass) object->clazz);
 }
 
-jobject gcAllocObject(jcontext ctx, jclass clazz, int mark) {
-    thread_local bool outOfMem;
+// Small object size classes, each a multiple of 16 bytes
+static constexpr int sizeClasses[GC_SIZE_CLASS_COUNT] {
+    32, 48, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384, 448, 512, 640, 768, 896, 1024, 1280, 1536, 1792, 2048
+};
+
+// Page header, stored at the start of each page aligned allocation and followed by the allocation bitmap and object slots
+struct HeapPage {
+    char *slots; // Start of object slots
+    int slotSize;
+    int slotCount;
+    int sizeClass; // Size class index, or -1 for a dedicated large object page
+    int cursor; // Next slot to try when allocating, only used by the owning thread
+    size_t bytes; // Size of the page allocation
+    std::atomic_int32_t liveCount; // Number of allocated slots
+    std::atomic_int32_t rootCount; // Number of allocated slots with a root (Protected or Eternal) mark
+    bool owned; // Whether a thread is allocating from this page, guarded by pagesLock
+    bool available; // Whether this page is in the available list for its size class, guarded by pagesLock
+    std::atomic_uint64_t *bitmap; // Allocated slots, stored after the header
+};
+
+static std::vector<jpage> heapPages; // Sorted by address for conservative lookups
+static std::vector<jpage> availablePages[GC_SIZE_CLASS_COUNT]; // Unowned pages with free slots
+
+static int getSizeClass(int size) {
+    static constexpr auto lookup = [] {
+        std::array<int8_t, sizeClasses[GC_SIZE_CLASS_COUNT - 1] / 16 + 1> table{};
+        int sizeClass = 0;
+        for (int i = 0; i < (int)table.size(); i++) {
+            while (sizeClasses[sizeClass] < i * 16)
+                sizeClass++;
+            table[i] = (int8_t) sizeClass;
+        }
+        return table;
+    }();
+    return size > sizeClasses[GC_SIZE_CLASS_COUNT - 1] ? -1 : lookup[(size + 15) / 16];
+}
+
+static inline jpage getPage(jobject object) {
+    return (jpage) ((intptr_t) object & ~((intptr_t) GC_PAGE_SIZE - 1));
+}
+
+static inline int getSlotIndex(jpage page, jobject object) {
+    return (int) (((char *) object - page->slots) / page->slotSize);
+}
+
+/// Allocates a new page and inserts it into the sorted page list. Caller must hold pagesLock. Does not throw exceptions.
+static jpage createPage(int sizeClass, int size) {
+    int slotSize = sizeClass >= 0 ? sizeClasses[sizeClass] : (size + 15) & ~15;
+    int slotCount = sizeClass >= 0 ? (GC_PAGE_SIZE - (int) sizeof(HeapPage)) / slotSize : 1;
+    int headerSize;
+    while (true) {
+        headerSize = ((int) sizeof(HeapPage) + (slotCount + 63) / 64 * (int) sizeof(std::atomic_uint64_t) + 15) & ~15;
+        if (sizeClass < 0 || headerSize + slotCount * slotSize <= GC_PAGE_SIZE)
+            break;
+        slotCount--;
+    }
+    size_t bytes = sizeClass >= 0 ? GC_PAGE_SIZE : ((size_t) headerSize + slotSize + GC_PAGE_SIZE - 1) & ~((size_t) GC_PAGE_SIZE - 1);
+
+    auto memory = (char *) ::operator new(bytes, std::align_val_t(GC_PAGE_SIZE));
+    auto page = new(memory) HeapPage{
+        .slots = memory + headerSize,
+        .slotSize = slotSize,
+        .slotCount = slotCount,
+        .sizeClass = sizeClass,
+        .bytes = bytes,
+        .bitmap = new(memory + sizeof(HeapPage)) std::atomic_uint64_t[(slotCount + 63) / 64]{},
+    };
+
+    heapPages.insert(std::upper_bound(heapPages.begin(), heapPages.end(), page), page);
+    return page;
+}
+
+/// Frees an empty page. Caller must hold pagesLock. Does not throw exceptions.
+static void destroyPage(jpage page) {
+    heapPages.erase(std::lower_bound(heapPages.begin(), heapPages.end(), page));
+    auto bytes = page->bytes;
+    page->~HeapPage();
+    ::operator delete((void *) page, bytes, std::align_val_t(GC_PAGE_SIZE));
+}
+
+/// Returns a page to the available list once it's unowned and has free slots. Caller must hold pagesLock. Does not throw exceptions.
+static void makePageAvailable(jpage page) {
+    if (page->owned || page->available || page->sizeClass < 0 || page->liveCount >= page->slotCount)
+        return;
+    page->available = true;
+    availablePages[page->sizeClass].emplace_back(page);
+}
+
+/// Releases the thread-local allocation page for a size class. Caller must hold pagesLock. Does not throw exceptions.
+static void releaseAllocationPage(jcontext ctx, int sizeClass) {
+    auto page = ctx->allocationPages[sizeClass];
+    if (!page)
+        return;
+    ctx->allocationPages[sizeClass] = nullptr;
+    page->owned = false;
+    makePageAvailable(page);
+}
+
+/// Claims a free slot in a page owned by the current thread, or returns null if the page is full. Does not throw exceptions.
+static jobject claimSlot(jpage page) {
+    for (int word = page->cursor / 64; word < (page->slotCount + 63) / 64; word++) {
+        uint64_t free = ~page->bitmap[word].load(std::memory_order_relaxed);
+        if (word == page->cursor / 64)
+            free &= ~0ull << (page->cursor % 64);
+        if (!free)
+            continue;
+        int index = word * 64 + std::countr_zero(free);
+        if (index >= page->slotCount)
+            break;
+        // Only the owning thread sets bits, but the collection thread may be clearing others in the same word
+        page->bitmap[word].fetch_or(1ull << (index % 64), std::memory_order_relaxed);
+        page->liveCount++;
+        page->cursor = index + 1;
+        return (jobject) (page->slots + (size_t) index * page->slotSize);
+    }
+    page->cursor = page->slotCount;
+    return nullptr;
+}
+
+/// Allocates zeroed object memory from the thread-local page for its size class, refilling as needed. Does not throw exceptions.
+static jobject allocateSlot(jcontext ctx, int size) {
+    int sizeClass = getSizeClass(size);
+    jobject object;
+
+    if (sizeClass < 0) CPP_UNLIKELY {
+        std::lock_guard lock(pagesLock);
+        auto page = createPage(-1, size);
+        object = claimSlot(page);
+    } else {
+        auto page = ctx->allocationPages[sizeClass];
+        object = page ? claimSlot(page) : nullptr;
+        if (!object) CPP_UNLIKELY {
+            std::lock_guard lock(pagesLock);
+            releaseAllocationPage(ctx, sizeClass);
+            auto &available = availablePages[sizeClass];
+            while (!object && !available.empty()) {
+                page = available.back();
+                available.pop_back();
+                page->available = false;
+                page->cursor = 0;
+                object = claimSlot(page);
+            }
+            if (!object) {
+                page = createPage(sizeClass, size);
+                object = claimSlot(page);
+            }
+            page->owned = true;
+            ctx->allocationPages[sizeClass] = page;
+        }
+    }
+
+    memset((void *) object, 0, size);
+    return object;
+}
 
-    if (!objects) CPP_UNLIKELY {
-        objects = new ankerl::unordered_dense::set<jobject>;
-        rootObjects = new ankerl::unordered_dense::set<jobject>;
+/// Returns a collected object's slot to its page. Caller must hold pagesLock. Does not throw exceptions.
+static void freeSlot(jobject object) {
+    auto page = getPage(object);
+    int index = getSlotIndex(page, object);
+    page->bitmap[index / 64].fetch_and(~(1ull << (index % 64)), std::memory_order_relaxed);
+    if (--page->liveCount == 0 && page->sizeClass < 0)
+        destroyPage(page);
+    else
+        makePageAvailable(page);
+}
+
+/// Finds the page containing an arbitrary value if it points to an allocated object slot. Caller must hold pagesLock. Does not throw exceptions.
+static bool isHeapObject(jobject object) {
+    auto page = getPage(object);
+    auto it = std::lower_bound(heapPages.begin(), heapPages.end(), page);
+    if (it == heapPages.end() || *it != page || (char *) object < page->slots)
+        return false;
+    auto offset = (char *) object - page->slots;
+    if (offset % page->slotSize)
+        return false;
+    int index = (int) (offset / page->slotSize);
+    return index < page->slotCount && page->bitmap[index / 64].load(std::memory_order_relaxed) & 1ull << (index % 64);
+}
+
+/// Calls a function for every allocated object in a page. Does not throw exceptions.
+static void forEachPageObject(jpage page, const std::function<void(jobject)> &function) {
+    for (int word = 0; word < (page->slotCount + 63) / 64; word++) {
+        uint64_t bits = page->bitmap[word].load(std::memory_order_relaxed);
+        while (bits) {
+            int index = word * 64 + std::countr_zero(bits);
+            bits &= bits - 1;
+            function((jobject) (page->slots + (size_t) index * page->slotSize));
+        }
     }
+}
+
+/// Frees fully empty pages not owned by any thread. Caller must hold pagesLock. Does not throw exceptions.
+static void trimPages() {
+    for (auto &available : availablePages)
+        std::erase_if(available, [](jpage page) {
+            if (page->liveCount > 0)
+                return false;
+            destroyPage(page);
+            return true;
+        });
+}
+
+jobject gcAllocObject(jcontext ctx, jclass clazz, int mark) {
+    thread_local bool outOfMem;
 
     // Note: Running the GC every allocation is very useful for identifying reachability bugs
 
@@ -386,23 +605,18 @@ jobject gcAllocObject(jcontext ctx, jclass clazz, int mark) {
         });
     }
 
-    auto object = (jobject) new char[clazz->size]{};
-    heapUsage += clazz->size + (int64_t) sizeof(ObjectMonitor);
+    auto object = allocateSlot(ctx, clazz->size);
+    heapUsage += getPage(object)->slotSize; // Charge the whole size class slot, matching what sweeping returns
     allocationsSinceCollection++;
 
     *object = {
         .clazz = (intptr_t) clazz,
         .gcMark = mark,
         .vtable = (intptr_t) clazz->classVtable,
-        .monitor = (intptr_t) new ObjectMonitor,
     };
 
-    objectsLock.lock();
-    if (mark == GC_MARK_START) CPP_LIKELY
-        objects->emplace(object);
-    else
-        rootObjects->emplace(object);
-    objectsLock.unlock();
+    if (mark != GC_MARK_START) CPP_UNLIKELY
+        getPage(object)->rootCount++;
 
     return object;
 }
@@ -421,29 +635,34 @@ jobject gcAllocEternal(jcontext ctx, jclass clazz) {
     return gcAllocObject(ctx, clazz, GC_MARK_ETERNAL);
 }
 
-static jobject makeRoot(jobject object, int mark) {
-    objectsLock.lock();
-    if (object->gcMark == mark) {
-        objectsLock.unlock();
+/// Allocates the shared instance of a non-capturing lambda proxy class, which is never collected. Caller must be at a safepoint. Throws exceptions.
+jobject createLambdaInstance(jcontext ctx, jclass clazz, jobject *instance) {
+    ((static_init_ptr) clazz->staticInitializer)(ctx);
+    auto object = gcAllocEternal(ctx, clazz);
+    jobject existing = nullptr;
+    if (std::atomic_ref(*instance).compare_exchange_strong(existing, object, std::memory_order_acq_rel)) CPP_LIKELY
         return object;
-    }
-    object->gcMark = mark;
-    objects->erase(object);
-    rootObjects->emplace(object);
-    objectsLock.unlock();
+    // Another thread won the race, so let this one be collected
+    makeEphemeral(object);
+    return existing;
+}
+
+static jobject makeRoot(jobject object, int mark) {
+    auto gcMark = std::atomic_ref<jint>(object->gcMark);
+    jint current = gcMark.load();
+    do {
+        if (current == mark)
+            return object;
+    } while (!gcMark.compare_exchange_weak(current, mark));
+    if (current >= GC_MARK_START)
+        getPage(object)->rootCount++;
     return object;
 }
 
 static jobject makeRegular(jobject object, int mark) {
-    objectsLock.lock();
-    if (object->gcMark != mark) {
-        objectsLock.unlock();
-        return object;
-    }
-    object->gcMark = GC_MARK_START;
-    rootObjects->erase(object);
-    objects->emplace(object);
-    objectsLock.unlock();
+    jint expected = mark;
+    if (std::atomic_ref<jint>(object->gcMark).compare_exchange_strong(expected, GC_MARK_START))
+        getPage(object)->rootCount--;
     return object;
 }
 
@@ -498,6 +717,10 @@ void destroyContext(jcontext context) {
     acquireCriticalLock();
     std::erase(threadContexts, context);
     releaseCriticalLock();
+    pagesLock.lock();
+    for (int i = 0; i < GC_SIZE_CLASS_COUNT; i++)
+        releaseAllocationPage(context, i);
+    pagesLock.unlock();
     delete context;
 }
 
@@ -529,23 +752,25 @@ static void collectionThreadFunc(jcontext ctx) {
                 }
 
                 for (jobject obj : collected) {
-                    objectsLock.lock();
-                    objects->erase(obj);
-                    objectsLock.unlock();
+                    heapUsage -= getPage(obj)->slotSize;
 
-                    heapUsage -= ((jclass) obj->clazz)->size + (int64_t) sizeof(ObjectMonitor);
-
-                    delete (ObjectMonitor *) obj->monitor;
+                    if (obj->monitor & MONITOR_INFLATED) {
+                        heapUsage -= (int64_t) sizeof(ObjectMonitor);
+                        delete (jmonitor) (obj->monitor & ~MONITOR_TAG_MASK);
+                    }
 
                     memset(obj, 0, sizeof(java_lang_Object)); // Erase collected objects to make memory bugs easier to catch
                     obj->gcMark = GC_MARK_DESTROYED;
                     obj->clazz = 1;
                     obj->vtable = 2;
                     obj->monitor = 3;
-
-                    delete[] (char *) obj;
                 }
 
+                pagesLock.lock();
+                for (jobject obj : collected)
+                    freeSlot(obj);
+                pagesLock.unlock();
+
                 collected.clear();
             }
 
@@ -559,6 +784,123 @@ static void collectionThreadFunc(jcontext ctx) {
     ctx->suspended = true;
 }
 
+struct MarkTask {
+    gc_mark_ptr function;
+    jobject object;
+    jint depth;
+};
+
+// Per-worker mark stack, popped from the back by its owner and stolen from the front by other workers
+struct MarkStack {
+    std::mutex lock;
+    std::deque<MarkTask> tasks;
+};
+
+static std::atomic_int markThreadCount = GC_MARK_THREADS;
+static std::vector<std::unique_ptr<MarkStack>> markStacks;
+static std::mutex *markWorkerLock; // Never destroyed, since workers are still waiting on it at exit
+static std::condition_variable *markWorkerCondition;
+static int markWorkerCount; // Number of spawned worker threads
+static int activeMarkWorkers; // Number of workers participating in the current mark phase
+static int finishedMarkWorkers;
+static int markEpoch;
+static jint parallelMarkValue;
+static std::atomic_int64_t pendingMarkTasks; // Tasks pushed and not yet completed, reaching zero once marking is done
+static thread_local MarkStack *currentMarkStack;
+
+static void pushMarkTask(MarkStack &stack, const MarkTask &task) {
+    pendingMarkTasks++;
+    std::lock_guard lock(stack.lock);
+    stack.tasks.push_back(task);
+}
+
+static bool popMarkTask(MarkStack &stack, MarkTask &task, bool steal) {
+    std::lock_guard lock(stack.lock);
+    if (stack.tasks.empty())
+        return false;
+    if (steal) {
+        task = stack.tasks.front();
+        stack.tasks.pop_front();
+    } else {
+        task = stack.tasks.back();
+        stack.tasks.pop_back();
+    }
+    return true;
+}
+
+/// Processes mark tasks from a worker's stack, stealing from other workers until all marking is done. Does not throw exceptions.
+static void drainMarkStacks(int index, int workers, jint mark) {
+    currentMarkStack = markStacks[index].get();
+    MarkTask task{};
+    while (true) {
+        bool found = popMarkTask(*markStacks[index], task, false);
+        for (int i = 1; !found && i < workers; i++)
+            found = popMarkTask(*markStacks[(index + i) % workers], task, true);
+        if (found) {
+            task.function(task.object, mark, task.depth);
+            pendingMarkTasks--;
+            continue;
+        }
+        if (pendingMarkTasks == 0)
+            break;
+        std::this_thread::yield();
+    }
+    currentMarkStack = nullptr;
+}
+
+static void markWorkerFunc(int index) {
+    int epoch = 0;
+    while (true) {
+        int workers;
+        jint mark;
+        {
+            std::unique_lock lock(*markWorkerLock);
+            markWorkerCondition->wait(lock, [&]{ return markEpoch != epoch && index < activeMarkWorkers; });
+            epoch = markEpoch;
+            workers = activeMarkWorkers;
+            mark = parallelMarkValue;
+        }
+        drainMarkStacks(index, workers, mark);
+        {
+            std::lock_guard lock(*markWorkerLock);
+            finishedMarkWorkers++;
+        }
+        markWorkerCondition->notify_all();
+    }
+}
+
+/// Marks from the root tasks using the collecting thread and the mark worker threads. Does not throw exceptions.
+static void parallelMark(const std::vector<MarkTask> &rootTasks, jint mark) {
+    int workers = markThreadCount;
+
+    if (!markWorkerLock) {
+        markWorkerLock = new std::mutex;
+        markWorkerCondition = new std::condition_variable;
+    }
+
+    std::unique_lock lock(*markWorkerLock);
+    while ((int)markStacks.size() < workers)
+        markStacks.emplace_back(std::make_unique<MarkStack>());
+    while (markWorkerCount < workers - 1) // Worker threads are detached, since they live for the rest of the program
+        std::thread(markWorkerFunc, ++markWorkerCount).detach();
+
+    for (int i = 0; i < (int)rootTasks.size(); i++)
+        pushMarkTask(*markStacks[i % workers], rootTasks[i]);
+
+    activeMarkWorkers = workers;
+    finishedMarkWorkers = 0;
+    parallelMarkValue = mark;
+    markEpoch++;
+    lock.unlock();
+    markWorkerCondition->notify_all();
+
+    drainMarkStacks(0, workers, mark);
+
+    lock.lock();
+    markWorkerCondition->wait(lock, [&]{ return finishedMarkWorkers == workers - 1; });
+    activeMarkWorkers = 0;
+}
+
 /// Runs the garbage collector
 void runGC(jcontext ctx) {
     static std::atomic_bool running;
@@ -592,10 +934,13 @@ void runGC(jcontext ctx) {
             break;
     }
 
-    auto copyTime = std::chrono::system_clock::now();
+    auto trimTime = std::chrono::system_clock::now();
 
     acquireCriticalLock();
     objectsLock.lock();
+    pagesLock.lock();
+
+    trimPages();
 
     static jint mark;
     if (++mark > GC_MARK_END)
@@ -605,136 +950,147 @@ void runGC(jcontext ctx) {
 
     auto nonCollectableTime = std::chrono::system_clock::now();
 
+    std::vector<MarkTask> rootTasks;
+
     // Explicitly mark children of non-collectable objects
-    for (auto object : *rootObjects)
-        ((gc_mark_ptr) ((jclass) object->clazz)->markFunction)(object, mark, GC_DEPTH_ALWAYS);
+    for (auto page : heapPages) {
+        if (page->rootCount == 0)
+            continue;
+        forEachPageObject(page, [&](jobject object) {
+            if (object->gcMark == GC_MARK_PROTECTED || object->gcMark == GC_MARK_ETERNAL)
+                rootTasks.push_back({ (gc_mark_ptr) ((jclass) object->clazz)->markFunction, object, GC_DEPTH_ALWAYS });
+        });
+    }
 
     auto markClassesTime = std::chrono::system_clock::now();
 
     // Mark class objects (Not in `objects`) // Todo: Not needed once all eternal
     for (auto &pair : *classes)
-        mark_java_lang_Class((jobject) pair.second, mark, GC_DEPTH_ALWAYS);
+        rootTasks.push_back({ mark_java_lang_Class, (jobject) pair.second, GC_DEPTH_ALWAYS });
 
     auto markStaticFieldsTime = std::chrono::system_clock::now();
 
     // Mark static fields
     for (auto &pair : *classes)
-        ((gc_mark_ptr) pair.second->markFunction)(nullptr, mark, GC_DEPTH_ALWAYS);
+        rootTasks.push_back({ (gc_mark_ptr) pair.second->markFunction, nullptr, GC_DEPTH_ALWAYS });
 
     auto markStackTime = std::chrono::system_clock::now();
 
     // Mark stack objects
     for (auto threadContext : threadContexts) {
         if (threadContext->jniException)
-            ((gc_mark_ptr) ((jclass) threadContext->jniException->parent.clazz)->markFunction)((jobject)threadContext->jniException, mark, 0);
+            rootTasks.push_back({ (gc_mark_ptr) ((jclass) threadContext->jniException->parent.clazz)->markFunction, (jobject)threadContext->jniException, 0 });
 
         if (auto exception = (jobject)threadContext->currentException)
-            ((gc_mark_ptr) ((jclass) exception->clazz)->markFunction)(exception, mark, 0);
+            rootTasks.push_back({ (gc_mark_ptr) ((jclass) exception->clazz)->markFunction, exception, 0 });
 
         for (auto global : threadContext->globalRefs)
-            ((gc_mark_ptr) ((jclass) global->clazz)->markFunction)(global, mark, 0);
+            rootTasks.push_back({ (gc_mark_ptr) ((jclass) global->clazz)->markFunction, global, 0 });
 
         for (int i = 0; i < threadContext->stackDepth; i++) {
             const auto &frame = threadContext->frames[i];
 
             for (auto &localFrame : frame.localRefs)
                 for (auto local : localFrame)
-                    ((gc_mark_ptr) ((jclass) local->clazz)->markFunction)(local, mark, 0);
+                    rootTasks.push_back({ (gc_mark_ptr) ((jclass) local->clazz)->markFunction, local, 0 });
 
             for (int j = 0; j < (int)frame.info->size; j++) {
                 const auto obj = frame.frame[j].o;
-                if (objects->contains(obj))
-                    ((gc_mark_ptr) ((jclass) obj->clazz)->markFunction)(obj, mark, 0);
+                if (isHeapObject(obj))
+                    rootTasks.push_back({ (gc_mark_ptr) ((jclass) obj->clazz)->markFunction, obj, 0 });
             }
         }
     }
 
-    auto markDeepTime = std::chrono::system_clock::now();
+    auto markTime = std::chrono::system_clock::now();
+
+    if (markThreadCount > 1 && rootTasks.size() > 1)
+        parallelMark(rootTasks, mark);
+    else {
+        for (auto &task : rootTasks)
+            task.function(task.object, mark, task.depth);
 
-    // Specially mark deep object chains to avoid stack overflows
-    while (!deepMarkedObjects.empty()) {
-        auto deep = deepMarkedObjects;
-        deepMarkedObjects.clear();
-        for (auto obj : deep)
-            ((gc_mark_ptr) ((jclass) obj->clazz)->markFunction)(obj, mark, 0);
+        // Specially mark deep object chains to avoid stack overflows
+        while (!deepMarkedObjects.empty()) {
+            auto deep = deepMarkedObjects;
+            deepMarkedObjects.clear();
+            for (auto obj : deep)
+                ((gc_mark_ptr) ((jclass) obj->clazz)->markFunction)(obj, mark, GC_DEPTH_ALWAYS);
+        }
     }
 
     auto collectTime = std::chrono::system_clock::now();
 
     // Collect unreachable objects
-    for (jobject obj : *objects) {
-        if (obj->gcMark < GC_MARK_START || obj->gcMark == mark)
-            continue;
-        if (obj->vtable < 10 || obj->gcMark <= GC_MARK_COLLECTED)
-            abort();
-        obj->gcMark = GC_MARK_COLLECTED;
-        collectedObjects.emplace_back(obj);
-
-        // Update weak references
-        for (auto[it, end] = weakReferences.equal_range(obj); it != end; ++it)
-            it->second->F_ptr = 0; // Todo: Always updating weak references here rather than at finalization may be problematic in some cases for JNI
+    for (auto page : heapPages) {
+        forEachPageObject(page, [&](jobject obj) {
+            if (obj->gcMark < GC_MARK_START || obj->gcMark == mark)
+                return;
+            if (obj->vtable < 10)
+                abort();
+            obj->gcMark = GC_MARK_COLLECTED;
+            collectedObjects.emplace_back(obj);
+
+            // Update weak references
+            for (auto[it, end] = weakReferences.equal_range(obj); it != end; ++it)
+                it->second->F_ptr = 0; // Todo: Always updating weak references here rather than at finalization may be problematic in some cases for JNI
+        });
     }
 
 #if false // Todo: Use macro
     std::map<jclass, int> usage;
     std::map<jclass, int> counts;
     std::multimap<int, jclass> usageMap;
-    for (jobject o : *objectsSet) {
+    auto countUsage = [&](jobject o) {
         auto cls = (jclass)o->clazz;
         counts[cls]++;
         usage[cls] += cls->size;
         if (cls->arrayDimensions > 0) {
             auto array = (jarray)o;
             auto component = (jclass)cls->componentClass;
-            usage[cls] += cls->size + component->primitive ? component->size * array->length : (int)sizeof(jobject) * array->length;
+            usage[cls] += (component->primitive ? component->size : (int)sizeof(jobject)) * array->length;
         } else if (isInstance(ctx, o, &class_java_nio_ByteBuffer)) {
             auto buffer = (java_nio_ByteBuffer *) o;
             if (buffer->F_isOwner && buffer->parent.F_address)
                 usage[cls] += buffer->parent.F_capacity;
         }
-    }
-    printf("GC collected %i objects after %i allocations and %i bytes (%i bytes and %i objects total)\n", (int)collectedObjects.size(), (int)allocationsSinceCollection, (int)heapUsage - (int)lastCollectionHeapUsage, (int)heapUsage, (int)objectsSet->size());
-    for (auto &pair : usage)
-        usageMap.emplace(pair.second, pair.first);
-    int loggedUsages = 0;
-    for (auto &pair : usageMap | std::views::reverse) {
-        printf("%i objects (%i bytes) of %s\n", counts[pair.second], pair.first, (char *)pair.second->nativeName);
-        if (++loggedUsages >= 10)
-            break;
-    }
-    printf("\n");
-
-    usage.clear();
-    counts.clear();
-    usageMap.clear();
-    for (jobject o : collectedObjects) {
-        auto cls = (jclass)o->clazz;
-        counts[cls]++;
-        usage[cls] += cls->size;
-        if (cls->arrayDimensions > 0) {
-            auto array = (jarray)o;
-            auto component = (jclass)cls->componentClass;
-            usage[cls] += cls->size + component->primitive ? component->size * array->length : (int)sizeof(jobject) * array->length;
-        } else if (isInstance(ctx, o, &class_java_nio_ByteBuffer)) {
-            auto buffer = (java_nio_ByteBuffer *) o;
-            if (buffer->F_isOwner && buffer->parent.F_address)
-                usage[cls] += buffer->parent.F_capacity;
+    };
+    auto printUsage = [&] {
+        for (auto &pair : usage)
+            usageMap.emplace(pair.second, pair.first);
+        int loggedUsages = 0;
+        for (auto &pair : usageMap | std::views::reverse) {
+            printf("%i objects (%i bytes) of %s\n", counts[pair.second], pair.first, (char *)pair.second->nativeName);
+            if (++loggedUsages >= 10)
+                break;
         }
+        printf("\n");
+        usage.clear();
+        counts.clear();
+        usageMap.clear();
+    };
+
+    int liveObjects = 0;
+    for (auto page : heapPages) {
+        forEachPageObject(page, [&](jobject o) {
+            if (o->gcMark == GC_MARK_COLLECTED)
+                return;
+            liveObjects++;
+            countUsage(o);
+        });
     }
+    printf("GC collected %i objects after %i allocations and %i bytes (%i bytes and %i objects total)\n", (int)collectedObjects.size(), (int)allocationsSinceCollection, (int)heapUsage - (int)lastCollectionHeapUsage, (int)heapUsage, liveObjects);
+    printUsage();
+
+    for (jobject o : collectedObjects)
+        countUsage(o);
     printf("Collection Stats:\n");
-    for (auto &pair : usage)
-        usageMap.emplace(pair.second, pair.first);
-    loggedUsages = 0;
-    for (auto &pair : usageMap | std::views::reverse) {
-        printf("%i objects (%i bytes) of %s\n", counts[pair.second], pair.first, (char *)pair.second->nativeName);
-        if (++loggedUsages >= 10)
-            break;
-    }
-    printf("\n");
+    printUsage();
 #endif
 
     allocationsSinceCollection = 0;
 
+    pagesLock.unlock();
     objectsLock.unlock();
     releaseCriticalLock();
     {
@@ -746,13 +1102,13 @@ void runGC(jcontext ctx) {
     auto finishTime = std::chrono::system_clock::now();
 
     printf("\nGC Timings:\n");
-    printf("Block Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(copyTime - blockTime).count());
-    printf("Copy Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(nonCollectableTime - copyTime).count());
+    printf("Block Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(trimTime - blockTime).count());
+    printf("Trim Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(nonCollectableTime - trimTime).count());
     printf("Non-Collectable Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(markClassesTime - nonCollectableTime).count());
     printf("Classes Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(markStaticFieldsTime - markClassesTime).count());
     printf("Fields Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(markStackTime - markStaticFieldsTime).count());
-    printf("Stack Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(markDeepTime - markStackTime).count());
-    printf("Deep Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(collectTime - markDeepTime).count());
+    printf("Stack Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(markTime - markStackTime).count());
+    printf("Mark Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(collectTime - markTime).count());
     printf("Collect Time: %i\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(finishTime - collectTime).count());
     printf("Total Time: %i\n\n", (int)std::chrono::duration_cast<std::chrono::milliseconds>(finishTime - blockTime).count());
 #endif
@@ -762,8 +1118,22 @@ void runGC(jcontext ctx) {
     running = false;
 }
 
-void markDeepObject(jobject obj) {
-    deepMarkedObjects.emplace_back(obj);
+/// Defers marking the children of a claimed object past GC_MARK_SPLIT_DEPTH, returning whether it was deferred. Parallel marking
+/// pushes it onto the current worker's mark stack where it can be stolen, while serial marking only defers objects past
+/// MAX_GC_MARK_DEPTH to avoid stack overflows. Does not throw exceptions.
+bool markDeepObject(jobject obj, jint depth) {
+    if (currentMarkStack)
+        pushMarkTask(*currentMarkStack, { (gc_mark_ptr) ((jclass) obj->clazz)->markFunction, obj, GC_DEPTH_ALWAYS });
+    else if (depth > MAX_GC_MARK_DEPTH)
+        deepMarkedObjects.emplace_back(obj);
+    else
+        return false;
+    return true;
+}
+
+/// Sets the number of threads used for the GC mark phase, including the collecting thread. Does not throw exceptions.
+void setGCMarkThreads(int count) {
+    markThreadCount = std::max(count, 1);
 }
 
 int64_t getHeapUsage() {
@@ -848,6 +1218,10 @@ void throwIndexOutOfBounds(jcontext ctx) {
     constructAndThrow<&class_java_lang_IndexOutOfBoundsException, init_java_lang_IndexOutOfBoundsException>(ctx);
 }
 
+void throwArrayIndexOutOfBounds(jcontext ctx) {
+    constructAndThrow<&class_java_lang_ArrayIndexOutOfBoundsException, init_java_lang_ArrayIndexOutOfBoundsException>(ctx);
+}
+
 void throwIllegalArgument(jcontext ctx) {
     constructAndThrow<&class_java_lang_IllegalArgumentException, init_java_lang_IllegalArgumentException>(ctx);
 }
@@ -868,15 +1242,43 @@ void throwRuntimeException(jcontext ctx, const char *message) {
     constructAndThrow<&class_java_lang_RuntimeException, init_java_lang_RuntimeException>(ctx);
 }
 
-/// Lock on a monitor. Throws exceptions.
-void monitorEnter(jcontext ctx, jobject object) {
-    NULL_CHECK(object);
-    auto monitor = (jmonitor) object->monitor;
+static inline std::atomic_ref<jref> monitorWord(jobject object) {
+    return std::atomic_ref<jref>(object->monitor);
+}
+
+static inline jmonitor inflatedMonitor(jref word) {
+    return (word & MONITOR_INFLATED) ? (jmonitor) (word & ~MONITOR_TAG_MASK) : nullptr;
+}
+
+/// Inflates an object monitor, taking over the thin lock state if held by any thread. Does not throw exceptions.
+jmonitor inflateMonitor(jcontext ctx, jobject object) {
+    auto word = monitorWord(object);
+    jref current = word.load();
+    if (auto monitor = inflatedMonitor(current))
+        return monitor;
+
+    auto monitor = new ObjectMonitor;
+    while (true) {
+        // The thin owner can't change the word without a failing CAS, so it picks up the inflated state on its next operation
+        auto owner = (jcontext) (current & ~MONITOR_TAG_MASK);
+        monitor->owner = owner;
+        monitor->depth = owner ? (int) (current >> MONITOR_THIN_COUNT_SHIFT & MONITOR_THIN_COUNT_MAX) + 1 : 0;
+        if (word.compare_exchange_weak(current, (jref) monitor | MONITOR_INFLATED)) {
+            heapUsage += (int64_t) sizeof(ObjectMonitor);
+            return monitor;
+        }
+        if (auto existing = inflatedMonitor(current)) {
+            delete monitor;
+            return existing;
+        }
+    }
+}
 
-    // Race condition here is fine, fall back to slower/blocking acquire
-    if (monitor->lock.try_lock()) {
+static void inflatedMonitorEnter(jcontext ctx, jobject object, jmonitor monitor) {
+    std::unique_lock<std::mutex> lock(monitor->lock);
+    if (!monitor->owner or monitor->owner == ctx) CPP_LIKELY {
         monitor->owner = ctx;
-        ++monitor->depth;
+        monitor->depth++;
         return;
     }
 
@@ -884,9 +1286,10 @@ void monitorEnter(jcontext ctx, jobject object) {
     ctx->blockedBy = object;
     ctx->suspended = true;
 
-    monitor->lock.lock();
+    monitor->entry.wait(lock, [&]{ return !monitor->owner; });
     monitor->owner = ctx;
-    ++monitor->depth;
+    monitor->depth = 1;
+    lock.unlock();
 
     ctx->blockedBy = nullptr;
     ctx->suspended = false;
@@ -894,23 +1297,157 @@ void monitorEnter(jcontext ctx, jobject object) {
     SAFEPOINT();
 }
 
+/// Lock on a monitor. Throws exceptions.
+void monitorEnter(jcontext ctx, jobject object) {
+    NULL_CHECK(object);
+    auto word = monitorWord(object);
+    auto self = (jref) ctx;
+
+    for (int spins = 0;; spins++) {
+        jref current = word.load(std::memory_order_relaxed);
+        if (current == 0) CPP_LIKELY {
+            if (word.compare_exchange_weak(current, self, std::memory_order_acquire))
+                return;
+            continue;
+        }
+        if (auto monitor = inflatedMonitor(current)) {
+            inflatedMonitorEnter(ctx, object, monitor);
+            return;
+        }
+        if ((current & ~MONITOR_TAG_MASK) == self) {
+            // Recursive thin acquire, inflating once the count field is exhausted
+            if ((current >> MONITOR_THIN_COUNT_SHIFT & MONITOR_THIN_COUNT_MAX) == MONITOR_THIN_COUNT_MAX) {
+                inflatedMonitorEnter(ctx, object, inflateMonitor(ctx, object));
+                return;
+            }
+            if (word.compare_exchange_weak(current, current + (1 << MONITOR_THIN_COUNT_SHIFT), std::memory_order_relaxed))
+                return;
+            continue;
+        }
+        // Held thin by another thread, spin briefly before inflating and blocking
+        if (spins < MONITOR_INFLATION_SPINS) {
+            std::this_thread::yield();
+            continue;
+        }
+        inflatedMonitorEnter(ctx, object, inflateMonitor(ctx, object));
+        return;
+    }
+}
+
 /// Unlock on a monitor. Throws exceptions.
 void monitorExit(jcontext ctx, jobject object) {
     NULL_CHECK(object);
-    auto monitor = (jmonitor) object->monitor;
-    monitorOwnerCheck(ctx, object);
-    if (--monitor->depth == 0)
+    auto word = monitorWord(object);
+    auto self = (jref) ctx;
+
+    jref current = word.load(std::memory_order_relaxed);
+    while (!(current & MONITOR_INFLATED)) {
+        if ((current & ~MONITOR_TAG_MASK) != self) CPP_UNLIKELY
+            constructAndThrow<&class_java_lang_IllegalMonitorStateException, init_java_lang_IllegalMonitorStateException>(ctx);
+        jref next = current == self ? 0 : current - (1 << MONITOR_THIN_COUNT_SHIFT);
+        if (word.compare_exchange_weak(current, next, std::memory_order_release))
+            return;
+    }
+
+    auto monitor = inflatedMonitor(current);
+    std::unique_lock<std::mutex> lock(monitor->lock);
+    if (monitor->owner != ctx) CPP_UNLIKELY {
+        lock.unlock();
+        constructAndThrow<&class_java_lang_IllegalMonitorStateException, init_java_lang_IllegalMonitorStateException>(ctx);
+    }
+    if (--monitor->depth == 0) {
         monitor->owner = nullptr;
-    monitor->lock.unlock();
+        monitor->entry.notify_one();
+    }
 }
 
 /// Checks if the current thread owns a given monitor. Throws exceptions.
 void monitorOwnerCheck(jcontext ctx, jobject object) {
-    auto monitor = (jmonitor) object->monitor;
-    if (!monitor->owner or monitor->owner != ctx) CPP_UNLIKELY
+    jref current = monitorWord(object).load();
+    auto monitor = inflatedMonitor(current);
+    if (monitor ? monitor->owner != ctx : (current & ~MONITOR_TAG_MASK) != (jref) ctx) CPP_UNLIKELY
         constructAndThrow<&class_java_lang_IllegalMonitorStateException, init_java_lang_IllegalMonitorStateException>(ctx);
 }
 
+/// Releases an owned monitor and waits for a notification, timeout, or interrupt. Zero nanos waits indefinitely. Throws exceptions.
+void monitorWait(jcontext ctx, jobject object, int64_t nanos) {
+    monitorOwnerCheck(ctx, object);
+    interruptedCheck(ctx);
+    auto monitor = inflateMonitor(ctx, object);
+
+    ctx->lock.lock();
+    ctx->blockedBy = object;
+    ctx->lock.unlock();
+
+    {
+        std::unique_lock<std::mutex> lock(monitor->lock);
+        int depth = monitor->depth;
+        monitor->owner = nullptr;
+        monitor->depth = 0;
+        monitor->entry.notify_one();
+
+        ctx->suspended = true;
+        if (nanos > 0)
+            monitor->condition.wait_for(lock, std::chrono::nanoseconds(nanos));
+        else if (nanos == 0)
+            monitor->condition.wait(lock);
+
+        monitor->entry.wait(lock, [&]{ return !monitor->owner; });
+        monitor->owner = ctx;
+        monitor->depth = depth;
+    }
+    ctx->suspended = false;
+
+    ctx->lock.lock();
+    ctx->blockedBy = nullptr;
+    ctx->lock.unlock();
+
+    SAFEPOINT();
+    interruptedCheck(ctx);
+}
+
+/// Wakes all threads blocked on an object monitor so they can recheck for interrupts or shutdown. Does not throw exceptions.
+void wakeMonitor(jobject object) {
+    auto monitor = inflatedMonitor(monitorWord(object).load());
+    if (!monitor)
+        return;
+    std::lock_guard<std::mutex> lock(monitor->lock);
+    monitor->condition.notify_all();
+    monitor->entry.notify_all();
+}
+
+/// Blocks the current thread until its park permit is available, it's interrupted, or the time elapses. Time is a deadline
+/// in milliseconds since the epoch when absolute, otherwise a duration in nanoseconds, with zero waiting indefinitely. Does not throw exceptions.
+void parkThread(jcontext ctx, bool absolute, int64_t time) {
+    bool parked = false;
+    {
+        std::unique_lock<std::mutex> lock(ctx->parkLock);
+        if (!ctx->parkPermit && !ctx->thread->F_interrupted) {
+            // Parked threads are at a safepoint, so the GC doesn't need to wait on idle threads
+            parked = true;
+            ctx->suspended = true;
+            if (absolute)
+                ctx->parkCondition.wait_until(lock, std::chrono::system_clock::time_point(std::chrono::milliseconds(time)));
+            else if (time > 0)
+                ctx->parkCondition.wait_for(lock, std::chrono::nanoseconds(time));
+            else
+                ctx->parkCondition.wait(lock);
+        }
+        ctx->parkPermit = false;
+    }
+    if (parked) {
+        ctx->suspended = false;
+        SAFEPOINT();
+    }
+}
+
+/// Makes the park permit available for a thread, waking it if parked. Does not throw exceptions.
+void unparkThread(jcontext ctx) {
+    std::lock_guard<std::mutex> lock(ctx->parkLock);
+    ctx->parkPermit = true;
+    ctx->parkCondition.notify_one();
+}
+
 /// Checks if the current thread is interrupted. Throws exceptions.
 void interruptedCheck(jcontext ctx) {
     if (ctx->thread->F_interrupted) CPP_UNLIKELY {
@@ -43,6 +43,26 @@ extern "C" {
 #define MAX_GC_MARK_DEPTH 1000
 #endif
 
+// Recursion depth past which parallel marking pushes claimed objects onto the worker's mark stack, so other workers can steal
+// the subtrees below them
+#ifndef GC_MARK_SPLIT_DEPTH
+#define GC_MARK_SPLIT_DEPTH 8
+#endif
+
+// Size of heap pages, which must be a power of two. Objects are allocated from pages segregated by size class.
+#ifndef GC_PAGE_SIZE
+#define GC_PAGE_SIZE 65536
+#endif
+
+// Number of small object size classes, larger objects get a dedicated page
+#define GC_SIZE_CLASS_COUNT 23
+
+// Number of threads used to mark objects during collection. Can be changed at runtime with `setGCMarkThreads` or the
+// CLEARWING_GC_THREADS environment variable.
+#ifndef GC_MARK_THREADS
+#define GC_MARK_THREADS 1
+#endif
+
 // Max number of object allocations between collections
 #ifndef GC_OBJECT_THRESHOLD
 #define GC_OBJECT_THRESHOLD 1000000
@@ -85,6 +105,7 @@ typedef struct Array *jarray;
 typedef struct Context *jcontext;
 typedef struct StackFrame *jframe;
 typedef struct ObjectMonitor *jmonitor;
+typedef struct HeapPage *jpage;
 typedef struct Class *jclass;
 
 typedef struct java_lang_Object *jobject;
@@ -140,6 +161,11 @@ typedef struct VtableEntry {
     const char *desc;
 } VtableEntry;
 
+typedef struct ItableEntry {
+    jclass interface;
+    void **methods;
+} ItableEntry;
+
 typedef struct FieldMetadata {
     const char *name;
     jclass type;
@@ -218,6 +244,9 @@ typedef struct Class {
     jbool synthetic;
     jlong instanceOfCache;
     jlong interfaceCache;
+    jint itableIndex;
+    jint itableSize;
+    jlong itable;
     // Lazy-init fields start here
     jbool initialized;
     jref name;
@@ -271,6 +300,7 @@ bool isInstance(jcontext ctx, jobject object, jclass type);
 jobject gcAlloc(jcontext ctx, jclass clazz);
 jobject gcAllocProtected(jcontext ctx, jclass clazz);
 jobject gcAllocEternal(jcontext ctx, jclass clazz);
+jobject createLambdaInstance(jcontext ctx, jclass clazz, jobject *instance);
 jobject makeEternal(jobject object);
 jobject makeEphemeral(jobject object);
 jobject protectObject(jobject object);
@@ -278,7 +308,8 @@ jobject unprotectObject(jobject object);
 void registerWeak(jweak reference);
 void deregisterWeak(jweak reference);
 void runGC(jcontext ctx);
-void markDeepObject(jobject obj);
+bool markDeepObject(jobject obj, jint depth);
+void setGCMarkThreads(int count);
 jcontext createContext();
 void destroyContext(jcontext ctx);
 
@@ -292,7 +323,12 @@ jstring stringFromNativeProtected(jcontext ctx, const char *string);
 jstring stringFromNativeEternal(jcontext ctx, const char *string);
 jstring createStringLiteral(jcontext ctx, StringLiteral string);
 const char *stringToNative(jcontext ctx, jstring string);
-jstring concatStringsRecipe(jcontext ctx, const char *recipe, int argCount, ...);
+jstring concatObjectToString(jcontext ctx, jobject object);
+jstring concatFloatToString(jcontext ctx, jfloat value);
+jstring concatDoubleToString(jcontext ctx, jdouble value);
+jstring allocateConcatString(jcontext ctx, jint length, jchar **chars);
+jint concatStringLength(jstring string);
+jchar *concatWriteString(jchar *chars, jstring string);
 
 void acquireCriticalLock();
 void releaseCriticalLock();
@@ -303,6 +339,11 @@ jobject clearCurrentException(jcontext ctx);
 void monitorEnter(jcontext ctx, jobject object);
 void monitorExit(jcontext ctx, jobject object);
 void monitorOwnerCheck(jcontext ctx, jobject object);
+jmonitor inflateMonitor(jcontext ctx, jobject object);
+void monitorWait(jcontext ctx, jobject object, int64_t nanos);
+void wakeMonitor(jobject object);
+void parkThread(jcontext ctx, bool absolute, int64_t time);
+void unparkThread(jcontext ctx);
 void interruptedCheck(jcontext ctx);
 int64_t getHeapUsage();
 void adjustHeapUsage(int64_t amount);
@@ -316,6 +357,7 @@ NORETURN void throwClassCast(jcontext ctx);
 NORETURN void throwNullPointer(jcontext ctx);
 NORETURN void throwStackOverflow(jcontext ctx);
 NORETURN void throwIndexOutOfBounds(jcontext ctx);
+NORETURN void throwArrayIndexOutOfBounds(jcontext ctx);
 NORETURN void throwIllegalArgument(jcontext ctx);
 NORETURN void throwNoSuchMethod(jcontext ctx);
 NORETURN void throwIOException(jcontext ctx, const char *message);
@@ -342,11 +384,15 @@ void instMultiANewArray(jcontext ctx, jtype * &sp, jclass type, int dimensions);
 jint floatCompare(jfloat value1, jfloat value2, jint nanValue);
 jint doubleCompare(jdouble value1, jdouble value2, jint nanValue);
 jint longCompare(jlong value1, jlong value2);
+void arrayCopy(jcontext ctx, jobject src, jint srcOffset, jobject dst, jint dstOffset, jint length);
 
 #define SEMICOLON_RECEPTOR 0
 
 #define CLINIT(clazz) if (!initialized_##clazz) CPP_UNLIKELY clinit_##clazz(ctx)
 
+// Number of frame words needed to hold an object allocated on the stack
+#define OBJECT_WORDS(type) ((sizeof(type) + sizeof(jtype) - 1) / sizeof(jtype))
+
 #define CONSTRUCT_OBJECT(clazz, constructor, ...) \
     ({ jobject object = gcAllocNative(ctx, clazz); \
     constructor(ctx, object __VA_OPT__(,) __VA_ARGS__); \
@@ -856,6 +902,10 @@ jint longCompare(jlong value1, jlong value2);
 #include <condition_variable>
 #include <bit>
 #include <functional>
+#include <cstring>
+#include <tuple>
+#include <charconv>
+#include <concepts>
 
 using std::bit_cast;
 
@@ -873,10 +923,18 @@ using std::bit_cast;
 
 #ifdef USE_VALUE_CHECKS
 #define ARRAY_ACCESS(type, obj, index) (((type *) arrayBoundsCheck(ctx, (jarray) obj, index)->data)[index])
+#define ARRAY_ACCESS_NON_NULL(type, obj, index) (((type *) arrayIndexCheck(ctx, (jarray) obj, index)->data)[index])
 #else
 #define ARRAY_ACCESS(type, obj, index) (((type *) ((jarray) obj)->data)[index])
+#define ARRAY_ACCESS_NON_NULL(type, obj, index) (((type *) ((jarray) obj)->data)[index])
 #endif
 
+// An array access with an index that the transpiler proved to be in bounds
+#define ARRAY_ACCESS_IN_BOUNDS(type, obj, index) (((type *) ((jarray) NULL_CHECK(obj))->data)[index])
+
+// An array access with an index that the transpiler proved to be in bounds of an array that can't be null
+#define ARRAY_ACCESS_UNCHECKED(type, obj, index) (((type *) ((jarray) obj)->data)[index])
+
 #ifdef USE_LINE_NUMBERS
 #define LINE_NUMBER(line, loc) frameRef->location = loc
 #else
@@ -914,12 +972,23 @@ public:
     JavaException() : std::runtime_error("JavaException") { }
 };
 
+// Object monitor words start out null and are thin locked by storing the owning context with a recursion count in the low
+// bits. On contention, recursion overflow, or wait/notify, the word is inflated to a tagged ObjectMonitor pointer for good.
+#define MONITOR_INFLATED 1
+#define MONITOR_THIN_COUNT_SHIFT 1
+#define MONITOR_THIN_COUNT_MAX 3
+#define MONITOR_TAG_MASK 7
+
+#ifndef MONITOR_INFLATION_SPINS
+#define MONITOR_INFLATION_SPINS 64
+#endif
+
 struct ObjectMonitor {
-    std::recursive_mutex lock;
-    std::atomic_int32_t depth;
+    std::mutex lock; // Protects owner and depth, never held while running Java code
     std::atomic<jcontext> owner;
-    std::condition_variable condition;
-    std::mutex conditionMutex;
+    int depth;
+    std::condition_variable entry; // Signaled when ownership is released
+    std::condition_variable condition; // Object wait set
 };
 
 struct StackFrame {
@@ -930,7 +999,7 @@ struct StackFrame {
     std::vector<std::vector<jobject>> localRefs{}; // Local reference frames for JNI
 };
 
-struct Context {
+struct alignas(MONITOR_TAG_MASK + 1) Context { // Aligned so the low bits of thin lock words are free for tagging
     jni jniEnv{}; // This must be the first field
     jthrowable jniException{};
     jthrowable currentException{};
@@ -941,8 +1010,12 @@ struct Context {
     volatile bool suspended{}; // Considered at safepoint, must check for suspendVM flag when un-suspending
     std::recursive_mutex lock; // Lock on changing the stack or blocking monitor
     std::atomic<jobject> blockedBy; // Object monitor blocking the current thread, or null
+    std::mutex parkLock; // Guards the park permit
+    std::condition_variable parkCondition;
+    bool parkPermit{}; // LockSupport permit, at most one is available at a time
     bool dead{};
     std::vector<jobject> globalRefs{}; // Global JNI references
+    jpage allocationPages[GC_SIZE_CLASS_COUNT]{}; // Thread-local allocation pages for each size class
 };
 
 /// Checks if an object is null. Throws exceptions.
@@ -953,9 +1026,41 @@ T *nullCheck(jcontext ctx, T *object) {
     return object;
 }
 
-/// Resolves an interface in an object vtable. Method index must be an index into the method metadata array of this exact interface (Not a super class). Throws exceptions.
+/// Claims an object for marking, returning whether its children should be marked. Objects marked with GC_DEPTH_ALWAYS are
+/// always traversed, otherwise only the first thread to set the current mark on a collectable object traverses it.
+inline bool gcMarkClaim(jobject object, jint mark, jint depth) {
+    auto gcMark = std::atomic_ref<jint>(object->gcMark);
+    jint current = gcMark.load(std::memory_order_relaxed);
+    while (current >= GC_MARK_START && current != mark)
+        if (gcMark.compare_exchange_weak(current, mark, std::memory_order_relaxed))
+            return true;
+    return depth == GC_DEPTH_ALWAYS;
+}
+
+/// Initializes an object the transpiler placed in a stack frame before its constructor runs. The object is never collected and
+/// its reference fields are scanned as part of the frame. Does not throw exceptions.
+inline void initStackObject(jobject object, jclass clazz) {
+    memset((void *) object, 0, clazz->size);
+    *object = {
+        .clazz = (intptr_t) clazz,
+        .gcMark = GC_MARK_ETERNAL,
+        .vtable = (intptr_t) clazz->classVtable,
+    };
+}
+
+/// Resolves an interface method using the object class itable, falling back to the vtable. Method index must be an index into the method metadata array of this exact interface (Not a super class). Throws exceptions.
 inline void *resolveInterfaceMethod(jcontext ctx, jclass interface, int method, jobject object) {
     auto objectClass = NULL_CHECK((jclass) object->clazz);
+    if (interface->itableIndex < objectClass->itableSize) CPP_LIKELY {
+        auto &entry = ((ItableEntry *) objectClass->itable)[interface->itableIndex];
+        if (entry.interface == interface) CPP_LIKELY {
+            auto function = entry.methods[method];
+            if (!function) CPP_UNLIKELY
+                throwNoSuchMethod(ctx);
+            return function;
+        }
+    }
+    // Classes created at runtime and interfaces without itable slots use the cache built on registration
     auto cache = (std::unordered_map<jclass, std::vector<int>> *)objectClass->interfaceCache;
     auto it = cache->find(interface);
     if (it == cache->end()) CPP_UNLIKELY
@@ -966,23 +1071,33 @@ inline void *resolveInterfaceMethod(jcontext ctx, jclass interface, int method,
     return ((void **) object->vtable)[offset];
 }
 
+/// Returns the shared instance of a non-capturing lambda proxy class, creating it on first use. Throws exceptions.
+inline jobject getLambdaInstance(jcontext ctx, jclass clazz, jobject *instance) {
+    if (auto existing = std::atomic_ref(*instance).load(std::memory_order_acquire)) CPP_LIKELY
+        return existing;
+    return createLambdaInstance(ctx, clazz, instance);
+}
+
 inline jobject checkCast(jcontext ctx, jclass type, jobject object) {
     if (object && !isInstance(ctx, object, type)) CPP_UNLIKELY
         throwClassCast(ctx);
     return object;
 }
 
+inline jarray arrayIndexCheck(jcontext ctx, jarray array, int index) {
+    if ((uint32_t) index >= (uint32_t) array->length) CPP_UNLIKELY
+        throwArrayIndexOutOfBounds(ctx);
+    return array;
+}
+
 inline jarray arrayBoundsCheck(jcontext ctx, jarray array, int index) {
     nullCheck(ctx, (jobject)array);
-    if (index >= array->length) CPP_UNLIKELY
-        throwIndexOutOfBounds(ctx);
-    return array;
+    return arrayIndexCheck(ctx, array, index);
 }
 
 class FrameGuard {
 public:
     FrameGuard(jcontext ctx, const FrameInfo *info, jtype *stack) : ctx(ctx) {
-        SAFEPOINT();
         frame = &ctx->frames[ctx->stackDepth++];
         frame->frame = stack;
         frame->info = info;
@@ -1163,6 +1278,157 @@ inline jstring stringFromNative(jcontext ctx, const std::string_view &string) {
     return stringFromNativeLength(ctx, string.data(), (int)string.length());
 }
 
+// String concatenation parts, converted in order before the result is allocated so that its length is known up front
+struct ConcatChars {
+    const char16_t *chars;
+    jint length;
+};
+
+struct ConcatNumber {
+    char chars[20];
+    jint length;
+};
+
+template<size_t N>
+inline ConcatChars concatPart(jcontext ctx, jtype *&root, const char16_t (&literal)[N]) {
+    return { literal, (jint) N - 1 };
+}
+
+inline ConcatNumber concatPart(jcontext ctx, jtype *&root, jlong value) {
+    ConcatNumber number;
+    number.length = (jint) (std::to_chars(number.chars, number.chars + sizeof(number.chars), value).ptr - number.chars);
+    return number;
+}
+
+inline ConcatNumber concatPart(jcontext ctx, jtype *&root, jint value) {
+    return concatPart(ctx, root, (jlong) value);
+}
+
+inline jchar concatPart(jcontext ctx, jtype *&root, jchar value) {
+    return value;
+}
+
+inline ConcatChars concatPart(jcontext ctx, jtype *&root, jbool value) {
+    return value ? ConcatChars{ u"true", 4 } : ConcatChars{ u"false", 5 };
+}
+
+/// Strings are used as is, since the caller's frame keeps them reachable
+inline jstring concatPart(jcontext ctx, jtype *&root, jstring value) {
+    return value;
+}
+
+/// Other values are converted to new strings, which are kept reachable in the concatenation's frame
+template<typename T> requires std::same_as<T, jobject> or std::floating_point<T>
+inline jstring concatPart(jcontext ctx, jtype *&root, T value) {
+    jstring string;
+    if constexpr (std::same_as<T, jobject>)
+        string = concatObjectToString(ctx, value);
+    else if constexpr (std::same_as<T, jfloat>)
+        string = concatFloatToString(ctx, value);
+    else
+        string = concatDoubleToString(ctx, value);
+    (root++)->o = (jobject) string;
+    return string;
+}
+
+inline jint concatLength(jstring part) {
+    return concatStringLength(part);
+}
+
+inline jint concatLength(const ConcatChars &part) {
+    return part.length;
+}
+
+inline jint concatLength(const ConcatNumber &part) {
+    return part.length;
+}
+
+inline jint concatLength(jchar part) {
+    return 1;
+}
+
+inline void concatWrite(jchar *&chars, jstring part) {
+    chars = concatWriteString(chars, part);
+}
+
+inline void concatWrite(jchar *&chars, const ConcatChars &part) {
+    memcpy(chars, part.chars, part.length * sizeof(jchar));
+    chars += part.length;
+}
+
+inline void concatWrite(jchar *&chars, const ConcatNumber &part) {
+    for (int i = 0; i < part.length; i++)
+        *chars++ = (jchar) part.chars[i];
+}
+
+inline void concatWrite(jchar *&chars, jchar part) {
+    *chars++ = part;
+}
+
+/// Concatenates the parts of a string concatenation recipe, allocating only the resulting string and its chars. Throws exceptions.
+template<typename ...Parts>
+jstring concatStrings(jcontext ctx, Parts &&...parts) {
+    constexpr int rootCount = (0 + ... + (std::same_as<std::decay_t<Parts>, jobject> or std::floating_point<std::decay_t<Parts>>));
+    jtype roots[rootCount + 1]{};
+    auto concat = [&] {
+        jtype *root = roots;
+        std::tuple converted{ concatPart(ctx, root, std::forward<Parts>(parts))... };
+        jint length = std::apply([](const auto &...part) { return (0 + ... + concatLength(part)); }, converted);
+        jchar *chars;
+        auto string = allocateConcatString(ctx, length, &chars);
+        root->o = (jobject) string;
+        std::apply([&](const auto &...part) { (concatWrite(chars, part), ...); }, converted);
+        return string;
+    };
+    // Without converted parts, nothing can be collected before the result is returned
+    if constexpr (rootCount == 0)
+        return concat();
+    else {
+        static constexpr FrameLocation location{};
+        static constexpr FrameInfo frameInfo { "java/lang/invoke/StringConcatFactory:makeConcatWithConstants", rootCount + 1, 1, &location, 0, nullptr };
+        FrameGuard frameRef { ctx, &frameInfo, roots };
+        return concat();
+    }
+}
+
+/// Math.min for floating point values, where NaN is returned if either value is NaN and -0.0 is less than 0.0
+template<std::floating_point T>
+inline T mathMin(T value1, T value2) {
+    if (std::isnan(value1)) CPP_UNLIKELY
+        return value1;
+    if (value1 == value2)
+        return std::signbit(value1) ? value1 : value2;
+    return value1 < value2 ? value1 : value2;
+}
+
+/// Math.max for floating point values, where NaN is returned if either value is NaN and 0.0 is greater than -0.0
+template<std::floating_point T>
+inline T mathMax(T value1, T value2) {
+    if (std::isnan(value1)) CPP_UNLIKELY
+        return value1;
+    if (value1 == value2)
+        return std::signbit(value1) ? value2 : value1;
+    return value1 > value2 ? value1 : value2;
+}
+
+/// Math.abs for integer values, where the minimum value is returned unchanged instead of overflowing
+template<std::integral T>
+inline T mathAbs(T value) {
+    return value < 0 ? T(-std::make_unsigned_t<T>(value)) : value;
+}
+
+/// System.arraycopy, copying directly between arrays of the same type and leaving any other case to the full checks. Throws exceptions.
+inline void fastArrayCopy(jcontext ctx, jobject src, jint srcOffset, jobject dst, jint dstOffset, jint length) {
+    if (!src or !dst or src->clazz != dst->clazz or jclass(src->clazz)->arrayDimensions == 0 or srcOffset < 0 or dstOffset < 0 or length < 0
+        or srcOffset > ((jarray) src)->length - length or dstOffset > ((jarray) dst)->length - length) CPP_UNLIKELY {
+        arrayCopy(ctx, src, srcOffset, dst, dstOffset, length);
+        return;
+    }
+    auto type = (jclass) jclass(src->clazz)->componentClass;
+    auto size = type->primitive ? (size_t) type->size : sizeof(jobject);
+    memmove((char *) ((jarray) dst)->data + dstOffset * size, (char *) ((jarray) src)->data + srcOffset * size, length * size);
+}
+
 template<typename T>
 jint floatingCompare(T t1, T t2, jint nanVal) {
     if (std::isnan(t1) or std::isnan(t2)) CPP_UNLIKELY
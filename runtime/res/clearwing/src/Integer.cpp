@@ -4,6 +4,10 @@
 
 extern "C" {
 
+jint SM_java_lang_Integer_getCacheHigh_R_int(jcontext ctx) {
+    return INTEGER_CACHE_HIGH;
+}
+
 jobject SM_java_lang_Integer_toString_int_int_R_java_lang_String(jcontext ctx, jint value, jint radix) {
     std::string str;
     str.resize(20);
@@ -0,0 +1,26 @@
+#include "Clearwing.h"
+
+#include "java/lang/Thread.h"
+#include "java/util/concurrent/locks/LockSupport.h"
+
+extern "C" {
+
+void SM_java_util_concurrent_locks_LockSupport_setBlocker_java_lang_Thread_java_lang_Object(jcontext ctx, jobject thread, jobject blocker) {
+    ((jthread) NULL_CHECK(thread))->F_parkBlocker = (jref) blocker;
+}
+
+jobject SM_java_util_concurrent_locks_LockSupport_getBlockerImpl_java_lang_Thread_R_java_lang_Object(jcontext ctx, jobject thread) {
+    return (jobject) ((jthread) NULL_CHECK(thread))->F_parkBlocker;
+}
+
+void SM_java_util_concurrent_locks_LockSupport_parkImpl_boolean_long(jcontext ctx, jbool absolute, jlong time) {
+    parkThread(ctx, absolute, time);
+}
+
+void SM_java_util_concurrent_locks_LockSupport_unparkImpl_java_lang_Thread(jcontext ctx, jobject thread) {
+    // Threads that haven't been started yet don't have a context to unpark
+    if (auto threadCtx = (jcontext) ((jthread) NULL_CHECK(thread))->F_nativeContext)
+        unparkThread(threadCtx);
+}
+
+}
@@ -13,11 +13,11 @@ jfloat SM_java_lang_Math_abs_float_R_float(jcontext ctx, jfloat value) {
 }
 
 jint SM_java_lang_Math_abs_int_R_int(jcontext ctx, jint value) {
-    return std::abs(value);
+    return mathAbs(value);
 }
 
 jlong SM_java_lang_Math_abs_long_R_long(jcontext ctx, jlong value) {
-    return std::abs(value);
+    return mathAbs(value);
 }
 
 jdouble SM_java_lang_Math_ceil_double_R_double(jcontext ctx, jdouble value) {
@@ -28,14 +28,11 @@ jdouble SM_java_lang_Math_ceil_double_R_double(jcontext ctx, jdouble value) {
 }
 
 jdouble SM_java_lang_Math_floor_double_R_double(jcontext ctx, jdouble value) {
-    auto l = jlong(value);
-    if (jdouble(l) == value || value >= 0)
-        return jdouble(l);
-    return jdouble(l - 1);
+    return std::floor(value);
 }
 
 jdouble SM_java_lang_Math_max_double_double_R_double(jcontext ctx, jdouble value1, jdouble value2) {
-    return std::max(value1, value2);
+    return mathMax(value1, value2);
 }
 
 jdouble SM_java_lang_Math_pow_double_double_R_double(jcontext ctx, jdouble value1, jdouble value2) {
@@ -43,7 +40,7 @@ jdouble SM_java_lang_Math_pow_double_double_R_double(jcontext ctx, jdouble value
 }
 
 jfloat SM_java_lang_Math_max_float_float_R_float(jcontext ctx, jfloat value1, jfloat value2) {
-    return std::max(value1, value2);
+    return mathMax(value1, value2);
 }
 
 jint SM_java_lang_Math_max_int_int_R_int(jcontext ctx, jint value1, jint value2) {
@@ -55,11 +52,11 @@ jlong SM_java_lang_Math_max_long_long_R_long(jcontext ctx, jlong value1, jlong v
 }
 
 jdouble SM_java_lang_Math_min_double_double_R_double(jcontext ctx, jdouble value1, jdouble value2) {
-    return std::min(value1, value2);
+    return mathMin(value1, value2);
 }
 
 jfloat SM_java_lang_Math_min_float_float_R_float(jcontext ctx, jfloat value1, jfloat value2) {
-    return std::min(value1, value2);
+    return mathMin(value1, value2);
 }
 
 jint SM_java_lang_Math_min_int_int_R_int(jcontext ctx, jint value1, jint value2) {
@@ -15,8 +15,8 @@ void clinit_java_lang_Object(jcontext ctx) {
 }
 
 void mark_java_lang_Object(jobject object, jint mark, jint depth) {
-    if (object and object->gcMark >= GC_MARK_START)
-        object->gcMark = mark;
+    if (object)
+        gcMarkClaim(object, mark, depth);
 }
 
 void init_java_lang_Object(jcontext ctx, jobject self) {
@@ -52,36 +52,20 @@ void M_java_lang_Object_finalize(jcontext ctx, jobject self) {
 
 void M_java_lang_Object_notify(jcontext ctx, jobject self) {
     monitorOwnerCheck(ctx, self);
-    ((jmonitor) self->monitor)->condition.notify_one();
+    auto monitor = inflateMonitor(ctx, self);
+    std::lock_guard<std::mutex> lock(monitor->lock);
+    monitor->condition.notify_one();
 }
 
 void M_java_lang_Object_notifyAll(jcontext ctx, jobject self) {
     monitorOwnerCheck(ctx, self);
-    ((jmonitor) self->monitor)->condition.notify_all();
+    auto monitor = inflateMonitor(ctx, self);
+    std::lock_guard<std::mutex> lock(monitor->lock);
+    monitor->condition.notify_all();
 }
 
 void M_java_lang_Object_wait(jcontext ctx, jobject self) {
-    monitorOwnerCheck(ctx, self);
-    interruptedCheck(ctx);
-    ctx->lock.lock();
-    ctx->blockedBy = self;
-    ctx->lock.unlock();
-    monitorExit(ctx, self);
-
-    ctx->suspended = true;
-    auto monitor = (jmonitor) self->monitor;
-    {
-        std::unique_lock<std::mutex> lock(monitor->conditionMutex);
-        monitor->condition.wait(lock);
-    }
-    ctx->suspended = false;
-    SAFEPOINT();
-
-    monitorEnter(ctx, self);
-    ctx->lock.lock();
-    ctx->blockedBy = nullptr;
-    ctx->lock.unlock();
-    interruptedCheck(ctx);
+    monitorWait(ctx, self, 0);
 }
 
 void M_java_lang_Object_wait_long(jcontext ctx, jobject self, jlong millis) {
@@ -89,27 +73,7 @@ void M_java_lang_Object_wait_long(jcontext ctx, jobject self, jlong millis) {
 }
 
 void M_java_lang_Object_wait_long_int(jcontext ctx, jobject self, jlong millis, jint nanos) {
-    monitorOwnerCheck(ctx, self);
-    interruptedCheck(ctx);
-    ctx->lock.lock();
-    ctx->blockedBy = self;
-    ctx->lock.unlock();
-    monitorExit(ctx, self);
-
-    ctx->suspended = true;
-    auto monitor = (jmonitor) self->monitor;
-    {
-        std::unique_lock<std::mutex> lock(monitor->conditionMutex);
-        monitor->condition.wait_for(lock, std::chrono::milliseconds(millis) + std::chrono::nanoseconds(nanos));
-    }
-    ctx->suspended = false;
-    SAFEPOINT();
-
-    monitorEnter(ctx, self);
-    ctx->lock.lock();
-    ctx->blockedBy = nullptr;
-    ctx->lock.unlock();
-    interruptedCheck(ctx);
+    monitorWait(ctx, self, millis * 1000000 + nanos);
 }
 
 static void *vtable_java_lang_Object[] {
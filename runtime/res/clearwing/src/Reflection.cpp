@@ -142,6 +142,16 @@ jobject M_java_lang_reflect_Method_invoke_java_lang_Object_Array1_java_lang_Obje
     else
         NULL_CHECK(object);
 
+    void *func;
+    if (isInterface)
+        func = resolveInterfaceMethod(ctx, owner, (int) method->F_offset, object);
+    else if (isStatic or isConstructor)
+        func = (void *) method->F_address;
+    else
+        func = ((void **) object->vtable)[method->F_offset];
+    if (!func) // Trimmed by the transpiler, thrown directly rather than as an InvocationTargetException
+        throwNoSuchMethod(ctx);
+
     auto argTypes = new ffi_type*[2 + paramTypesArray->length];
     auto argValues = new jtype[paramTypesArray->length]{};
     auto args = new void*[2 + paramTypesArray->length]; // List of pointers to actual values
@@ -178,13 +188,6 @@ jobject M_java_lang_reflect_Method_invoke_java_lang_Object_Array1_java_lang_Obje
     jtype returnValue;
     ffi_status result;
     tryCatch(ctx, [&]{
-        void *func;
-        if (isInterface)
-            func = resolveInterfaceMethod(ctx, owner, (int) method->F_offset, object);
-        else if (isStatic or isConstructor)
-            func = (void *) method->F_address;
-        else
-            func = ((void **) object->vtable)[method->F_offset];
         ffi_cif cif;
         result = ffi_prep_cif(&cif, FFI_DEFAULT_ABI, paramTypesArray->length + argOffset, typeToFFI(returnType), argTypes);
         if (result == FFI_OK)
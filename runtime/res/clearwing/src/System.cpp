@@ -7,7 +7,7 @@
 
 extern "C" {
 
-void SM_java_lang_System_arraycopy_java_lang_Object_int_java_lang_Object_int_int(jcontext ctx, jobject src, jint srcOffset, jobject dst, jint dstOffset, jint length) {
+void arrayCopy(jcontext ctx, jobject src, jint srcOffset, jobject dst, jint dstOffset, jint length) {
     if (jclass(NULL_CHECK(src)->clazz)->arrayDimensions == 0 or jclass(NULL_CHECK(dst)->clazz)->arrayDimensions == 0)
         constructAndThrow<&class_java_lang_IllegalArgumentException, init_java_lang_IllegalArgumentException>(ctx);
     auto srcArray = (jarray) src;
@@ -16,7 +16,7 @@ void SM_java_lang_System_arraycopy_java_lang_Object_int_java_lang_Object_int_int
     auto dstType = (jclass) jclass(dst->clazz)->componentClass;
     if (srcType->primitive != dstType->primitive or (srcType->primitive and srcType->nativeName != dstType->nativeName))
         constructAndThrow<&class_java_lang_ArrayStoreException, init_java_lang_ArrayStoreException>(ctx);
-    if (srcOffset < 0 or dstOffset < 0 or length < 0 or srcOffset + length > srcArray->length or dstOffset + length > dstArray->length)
+    if (srcOffset < 0 or dstOffset < 0 or length < 0 or srcOffset > srcArray->length - length or dstOffset > dstArray->length - length)
         throwIndexOutOfBounds(ctx);
     auto size = srcType->primitive ? srcType->size : sizeof(jobject);
     if (src == dst)
@@ -25,6 +25,10 @@ void SM_java_lang_System_arraycopy_java_lang_Object_int_java_lang_Object_int_int
         memcpy((char *) dstArray->data + dstOffset * size, (char *) srcArray->data + srcOffset * size, length * size);
 }
 
+void SM_java_lang_System_arraycopy_java_lang_Object_int_java_lang_Object_int_int(jcontext ctx, jobject src, jint srcOffset, jobject dst, jint dstOffset, jint length) {
+    arrayCopy(ctx, src, srcOffset, dst, dstOffset, length);
+}
+
 jlong SM_java_lang_System_currentTimeMillis_R_long(jcontext ctx) {
     return std::chrono::duration_cast<std::chrono::milliseconds>(std::chrono::system_clock::now().time_since_epoch()).count();
 }
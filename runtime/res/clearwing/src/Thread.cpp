@@ -82,8 +82,9 @@ void M_java_lang_Thread_interrupt(jcontext ctx, jobject self) {
     threadCtx->lock.lock();
     threadCtx->thread->F_interrupted = true;
     if (threadCtx->blockedBy)
-        ((jmonitor) ((jobject) threadCtx->blockedBy)->monitor)->condition.notify_all();
+        wakeMonitor(threadCtx->blockedBy);
     threadCtx->lock.unlock();
+    unparkThread(threadCtx);
 }
 
 void M_java_lang_Thread_finalize(jcontext ctx, jobject selfObj) {
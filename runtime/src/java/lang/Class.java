@@ -65,6 +65,9 @@ public final class Class<T> implements java.lang.reflect.Type {
     private boolean synthetic;
     private long instanceOfCache;
     private long interfaceCache;
+    private int itableIndex;
+    private int itableSize;
+    private long itable;
 
     // Lazy-init fields start here
     private boolean initialized;
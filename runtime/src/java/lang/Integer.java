@@ -50,6 +50,13 @@ public final class Integer extends Number implements Comparable<Integer> {
 
 	public static final int SIZE = 32;
 
+	private static final Integer[] CACHE = new Integer[getCacheHigh() + 129];
+
+	static {
+		for (int i = 0; i < CACHE.length; i++)
+			CACHE[i] = new Integer(i - 128);
+	}
+
 	private int value;
 
 	/**
@@ -476,15 +483,24 @@ public final class Integer extends Number implements Comparable<Integer> {
 	}
 
 	/**
-	 * Returns the object instance of i
+	 * Returns the object instance of i, which is a shared instance for values from -128 up to the configured
+	 * {@code integerCacheHigh} (At least 127)
 	 *
 	 * @param i the primitive
 	 * @return object instance
 	 */
 	public static Integer valueOf (int i) {
+		if (i >= -128 && i < CACHE.length - 128)
+			return CACHE[i + 128];
 		return new Integer(i);
 	}
 
+	/**
+	 * Returns the INTEGER_CACHE_HIGH value from the transpiler config, which transpiled reference comparisons between
+	 * eliminated boxes depend on
+	 */
+	private static native int getCacheHigh ();
+
 	/**
 	 * Returns the value of the {@code signum} function for the specified
 	 * integer.
@@ -49,6 +49,13 @@ public final class Long extends Number implements Comparable<Long> {
 
 	public static final int SIZE = 64;
 
+	private static final Long[] CACHE = new Long[256];
+
+	static {
+		for (int i = 0; i < CACHE.length; i++)
+			CACHE[i] = new Long(i - 128);
+	}
+
 	private long value;
 
 	/**
@@ -382,12 +389,14 @@ public final class Long extends Number implements Comparable<Long> {
 	}
 
 	/**
-	 * Returns the object instance of i
+	 * Returns the object instance of i, which is a shared instance for values from -128 to 127
 	 *
 	 * @param i the primitive
 	 * @return object instance
 	 */
 	public static Long valueOf (long i) {
+		if (i >= -128 && i <= 127)
+			return CACHE[(int) i + 128];
 		return new Long(i);
 	}
 
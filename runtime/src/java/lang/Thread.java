@@ -61,6 +61,7 @@ public class Thread implements java.lang.Runnable{
     private long id;
     private volatile boolean started;
     private long nativeContext;
+    private volatile Object parkBlocker;
 
     private volatile UncaughtExceptionHandler uncaughtExceptionHandler;
     private static volatile UncaughtExceptionHandler defaultUncaughtExceptionHandler;
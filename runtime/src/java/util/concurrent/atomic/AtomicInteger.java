@@ -10,59 +10,40 @@ public class AtomicInteger extends Number implements java.io.Serializable {
     public AtomicInteger () {
     }
 
-    public synchronized final int get() {
-        return value;
-    }
+    public final native int get();
 
-    public synchronized final void set(int newValue) {
-        value = newValue;
-    }
+    public final native void set(int newValue);
 
-    public final void lazySet(int newValue) {
-        set(newValue);
-    }
+    public final native void lazySet(int newValue);
 
-    public synchronized final int getAndSet(int newValue) {
-        int old = value;
-        value = newValue;
-        return old;
-    }
+    public final native int getAndSet(int newValue);
 
-    public synchronized final boolean compareAndSet(int expect, int update) {
-        if (value == expect) {
-            value = update;
-            return true;
-        }
-        return false;
-    }
+    public final native boolean compareAndSet(int expect, int update);
 
     public final boolean weakCompareAndSet(int expect, int update) {
         return compareAndSet(expect, update);
     }
 
-    public synchronized final int getAndIncrement() {
-        return value++;
+    public final int getAndIncrement() {
+        return getAndAdd(1);
     }
 
-    public synchronized final int getAndDecrement() {
-        return value--;
+    public final int getAndDecrement() {
+        return getAndAdd(-1);
     }
 
-    public synchronized final int getAndAdd(int delta) {
-        value += delta;
-        return value - delta;
-    }
+    public final native int getAndAdd(int delta);
 
-    public synchronized final int incrementAndGet() {
-        return ++value;
+    public final int incrementAndGet() {
+        return getAndAdd(1) + 1;
     }
 
-    public synchronized final int decrementAndGet() {
-        return --value;
+    public final int decrementAndGet() {
+        return getAndAdd(-1) - 1;
     }
 
-    public synchronized final int addAndGet(int delta) {
-        return value += delta;
+    public final int addAndGet(int delta) {
+        return getAndAdd(delta) + delta;
     }
 
     public String toString() {
@@ -364,8 +364,22 @@ public abstract class AtomicIntegerFieldUpdater<T> {
         return next;
     }
 
+    static native long objectFieldOffset(Field field);
+
+    static native int getIntVolatile(Object obj, long offset);
+
+    static native void putIntVolatile(Object obj, long offset, int value);
+
+    static native void putOrderedInt(Object obj, long offset, int value);
+
+    static native boolean compareAndSwapInt(Object obj, long offset, int expect, int update);
+
+    static native int getAndAddInt(Object obj, long offset, int delta);
+
+    static native int getAndSetInt(Object obj, long offset, int newValue);
+
     /**
-     * Standard hotspot implementation using intrinsics.
+     * Implementation using runtime atomic intrinsics on the field offset.
      */
     private static final class AtomicIntegerFieldUpdaterImpl<T>
             extends AtomicIntegerFieldUpdater<T> {
@@ -376,10 +390,12 @@ public abstract class AtomicIntegerFieldUpdater<T> {
         private final Class<?> cclass;
         /** class holding the field */
         private final Class<T> tclass;
-        private final Field field;
+        /** field offset from the object base, as used by the runtime */
+        private final long offset;
 
         AtomicIntegerFieldUpdaterImpl(final Class<T> tclass,
                                       final String fieldName) {
+            final Field field;
             final int modifiers;
             try {
                 field = tclass.getDeclaredField(fieldName);
@@ -403,6 +419,7 @@ public abstract class AtomicIntegerFieldUpdater<T> {
             // narrowed to the type of the accessing class.
             this.cclass = tclass;
             this.tclass = tclass;
+            this.offset = objectFieldOffset(field);
         }
 
         /**
@@ -448,55 +465,39 @@ public abstract class AtomicIntegerFieldUpdater<T> {
                                         obj.getClass().getName()));
         }
 
-        public synchronized final boolean compareAndSet(T obj, int expect, int update) {
+        public final boolean compareAndSet(T obj, int expect, int update) {
             accessCheck(obj);
-            int value = get(obj);
-            if (value != expect)
-                return false;
-            set(obj, update);
-            return true;
+            return compareAndSwapInt(obj, offset, expect, update);
         }
 
         public final boolean weakCompareAndSet(T obj, int expect, int update) {
             accessCheck(obj);
-            return compareAndSet(obj, expect, update);
+            return compareAndSwapInt(obj, offset, expect, update);
         }
 
-        public synchronized final void set(T obj, int newValue) {
+        public final void set(T obj, int newValue) {
             accessCheck(obj);
-            try {
-                field.set(obj, newValue);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            putIntVolatile(obj, offset, newValue);
         }
 
         public final void lazySet(T obj, int newValue) {
             accessCheck(obj);
-            set(obj, newValue);
+            putOrderedInt(obj, offset, newValue);
         }
 
-        public synchronized final int get(T obj) {
+        public final int get(T obj) {
             accessCheck(obj);
-            try {
-                return (int)field.get(obj);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            return getIntVolatile(obj, offset);
         }
 
-        public synchronized final int getAndSet(T obj, int newValue) {
+        public final int getAndSet(T obj, int newValue) {
             accessCheck(obj);
-            int value = get(obj);
-            set(obj, newValue);
-            return value;
+            return getAndSetInt(obj, offset, newValue);
         }
 
-        public synchronized final int getAndAdd(T obj, int delta) {
+        public final int getAndAdd(T obj, int delta) {
             accessCheck(obj);
-            int value = get(obj);
-            set(obj, value + delta);
-            return value;
+            return getAndAddInt(obj, offset, delta);
         }
 
         public final int getAndIncrement(T obj) {
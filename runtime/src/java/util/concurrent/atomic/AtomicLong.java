@@ -11,59 +11,40 @@ public class AtomicLong implements java.io.Serializable {
 	public AtomicLong () {
 	}
 
-	public synchronized final long get() {
-		return value;
-	}
+	public final native long get();
 
-	public synchronized final boolean compareAndSet(long expect, long update) {
-		if (value == expect) {
-			value = update;
-			return true;
-		}
-		return false;
-	}
+	public final native boolean compareAndSet(long expect, long update);
 
 	public boolean weakCompareAndSet(long expect, long update) {
 		return compareAndSet(expect, update);
 	}
 
-	public synchronized final void set(long newValue) {
-		value = newValue;
-	}
+	public final native void set(long newValue);
 
-	public final void lazySet(long newValue) {
-		set(newValue);
-	}
+	public final native void lazySet(long newValue);
 
-	public synchronized final long getAndSet(long newValue) {
-		long got = value;
-		value = newValue;
-		return got;
-	}
+	public final native long getAndSet(long newValue);
 
-	public synchronized final long getAndIncrement() {
-		return value++;
+	public final long getAndIncrement() {
+		return getAndAdd(1);
 	}
 
-	public synchronized final long getAndDecrement() {
-		return value--;
+	public final long getAndDecrement() {
+		return getAndAdd(-1);
 	}
 
-	public synchronized final long getAndAdd(int delta) {
-		value += delta;
-		return value - delta;
-	}
+	public final native long getAndAdd(long delta);
 
-	public synchronized final long incrementAndGet() {
-		return ++value;
+	public final long incrementAndGet() {
+		return getAndAdd(1) + 1;
 	}
 
-	public synchronized final long decrementAndGet() {
-		return --value;
+	public final long decrementAndGet() {
+		return getAndAdd(-1) - 1;
 	}
 
-	public synchronized final long addAndGet(int delta) {
-		return value += delta;
+	public final long addAndGet(long delta) {
+		return getAndAdd(delta) + delta;
 	}
 
 	public String toString() {
@@ -83,7 +83,7 @@ public abstract class AtomicLongFieldUpdater<T> {
      */
     public static <U> AtomicLongFieldUpdater<U> newUpdater(Class<U> tclass,
                                                            String fieldName) {
-        return new LockedUpdater<U>(tclass, fieldName);
+        return new CASUpdater<U>(tclass, fieldName);
     }
 
     /**
@@ -363,8 +363,23 @@ public abstract class AtomicLongFieldUpdater<T> {
         return next;
     }
 
-    private static final class LockedUpdater<T> extends AtomicLongFieldUpdater<T> {
-        private final Field field;
+    static native long objectFieldOffset(Field field);
+
+    static native long getLongVolatile(Object obj, long offset);
+
+    static native void putLongVolatile(Object obj, long offset, long value);
+
+    static native void putOrderedLong(Object obj, long offset, long value);
+
+    static native boolean compareAndSwapLong(Object obj, long offset, long expect, long update);
+
+    static native long getAndAddLong(Object obj, long offset, long delta);
+
+    static native long getAndSetLong(Object obj, long offset, long newValue);
+
+    private static final class CASUpdater<T> extends AtomicLongFieldUpdater<T> {
+        /** field offset from the object base, as used by the runtime */
+        private final long offset;
         /**
          * if field is protected, the subclass constructing updater, else
          * the same as tclass
@@ -373,10 +388,11 @@ public abstract class AtomicLongFieldUpdater<T> {
         /** class holding the field */
         private final Class<T> tclass;
 
-        LockedUpdater(final Class<T> tclass, final String fieldName) {
+        CASUpdater(final Class<T> tclass, final String fieldName) {
+            final Field field;
             final int modifiers;
             try {
-                field = tclass.getDeclaredField(fieldName);;
+                field = tclass.getDeclaredField(fieldName);
                 modifiers = field.getModifiers();
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
@@ -396,7 +412,8 @@ public abstract class AtomicLongFieldUpdater<T> {
             // outside the current package, the receiver argument will be
             // narrowed to the type of the accessing class.
             this.cclass = tclass;
-            this.tclass = tclass;;
+            this.tclass = tclass;
+            this.offset = objectFieldOffset(field);
         }
 
         /**
@@ -428,13 +445,7 @@ public abstract class AtomicLongFieldUpdater<T> {
 
         public final boolean compareAndSet(T obj, long expect, long update) {
             accessCheck(obj);
-            synchronized (this) {
-                long v = get(obj);
-                if (v != expect)
-                    return false;
-                set(obj, update);
-                return true;
-            }
+            return compareAndSwapLong(obj, offset, expect, update);
         }
 
         public final boolean weakCompareAndSet(T obj, long expect, long update) {
@@ -443,28 +454,27 @@ public abstract class AtomicLongFieldUpdater<T> {
 
         public final void set(T obj, long newValue) {
             accessCheck(obj);
-            synchronized (this) {
-                try {
-                    field.set(obj, newValue);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
-            }
+            putLongVolatile(obj, offset, newValue);
         }
 
         public final void lazySet(T obj, long newValue) {
-            set(obj, newValue);
+            accessCheck(obj);
+            putOrderedLong(obj, offset, newValue);
         }
 
         public final long get(T obj) {
             accessCheck(obj);
-            synchronized (this) {
-                try {
-                    return field.getLong(obj);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
-            }
+            return getLongVolatile(obj, offset);
+        }
+
+        public final long getAndSet(T obj, long newValue) {
+            accessCheck(obj);
+            return getAndSetLong(obj, offset, newValue);
+        }
+
+        public final long getAndAdd(T obj, long delta) {
+            accessCheck(obj);
+            return getAndAddLong(obj, offset, delta);
         }
     }
-}
\ No newline at end of file
+}
@@ -10,8 +10,7 @@ package java.util.concurrent.atomic;
  * @author shannah
  */
 public class AtomicReference<V> {
-    private Object lock = new Object();
-    V ref;
+    private volatile V ref;
     
     public AtomicReference() {
         
@@ -21,51 +20,21 @@ public class AtomicReference<V> {
         ref = initialValue;
     }
     
-    public final boolean compareAndSet(V expect, V update) {
-        synchronized(lock) {
-            if (expect == ref) {
-                ref = update;
-                return true;
-            }
-            return false;
-        }
-        
-    }
+    public final native boolean compareAndSet(V expect, V update);
     
-    public V get() {
-        synchronized(lock) {
-            return ref;
-        }
-    }
+    public final native V get();
     
-    public final V getAndSet(V newValue) {
-        synchronized(lock) {
-            V old = ref;
-            ref = newValue;
-            return old;
-        }
-    }
+    public final native V getAndSet(V newValue);
     
-    public final  void lazySet(V newValue) {
-        synchronized(lock) {
-            ref = newValue;
-        }
-    }
+    public final native void lazySet(V newValue);
     
     public String toString() {
-        synchronized(lock) {
-            return String.valueOf(ref);
-        }
+        return String.valueOf(get());
     }
     
     public final boolean weakCompareAndSet(V expect, V update) {
         return compareAndSet(expect, update);
     }
     
-    public final void set(V newValue) {
-        synchronized(lock) {
-            ref = newValue;
-        }
-        
-    }
+    public final native void set(V newValue);
 }
@@ -273,6 +273,18 @@ public abstract class AtomicReferenceFieldUpdater<T,V> {
 //		return next;
 //	}
 
+	static native long objectFieldOffset(Field field);
+
+	static native Object getObjectVolatile(Object obj, long offset);
+
+	static native void putObjectVolatile(Object obj, long offset, Object value);
+
+	static native void putOrderedObject(Object obj, long offset, Object value);
+
+	static native boolean compareAndSwapObject(Object obj, long offset, Object expect, Object update);
+
+	static native Object getAndSetObject(Object obj, long offset, Object newValue);
+
 	private static final class AtomicReferenceFieldUpdaterImpl<T,V>
 		extends AtomicReferenceFieldUpdater<T,V> {
 		/**
@@ -285,7 +297,8 @@ public abstract class AtomicReferenceFieldUpdater<T,V> {
 		/** field value type */
 		private final Class<V> vclass;
 
-		private final Field field;
+		/** field offset from the object base, as used by the runtime */
+		private final long offset;
 
 		/*
 		 * Internal type checks within all update methods contain
@@ -300,11 +313,11 @@ public abstract class AtomicReferenceFieldUpdater<T,V> {
 		 */
 
 		AtomicReferenceFieldUpdaterImpl(final Class<T> tclass, final Class<V> vclass, final String fieldName) {
+			final Field field;
 			final Class<?> fieldClass;
 			final int modifiers;
 			try {
 				field = tclass.getDeclaredField(fieldName);
-				field.setAccessible(true);
 				modifiers = field.getModifiers();
 				fieldClass = field.getType();
 			} catch (Exception ex) {
@@ -329,6 +342,7 @@ public abstract class AtomicReferenceFieldUpdater<T,V> {
 			this.cclass = tclass;
 			this.tclass = tclass;
 			this.vclass = vclass;
+			this.offset = objectFieldOffset(field);
 		}
 
 		/**
@@ -367,66 +381,42 @@ public abstract class AtomicReferenceFieldUpdater<T,V> {
 			throw new ClassCastException();
 		}
 
-		public synchronized boolean compareAndSet(T obj, V expect, V update) {
+		public boolean compareAndSet(T obj, V expect, V update) {
 			accessCheck(obj);
 			valueCheck(update);
-			try {
-				if (field.get(obj) == expect) {
-					field.set(obj, update);
-					return true;
-				}
-//				return U.compareAndSwapObject(obj, offset, expect, update);
-			} catch (IllegalAccessException ignored) {}
-			return false;
+			return compareAndSwapObject(obj, offset, expect, update);
 		}
 
-		public synchronized boolean weakCompareAndSet(T obj, V expect, V update) {
+		public boolean weakCompareAndSet(T obj, V expect, V update) {
 			// same implementation as strong form for now
 			accessCheck(obj);
 			valueCheck(update);
-			return compareAndSet(obj, expect, update);
-//			return U.compareAndSwapObject(obj, offset, expect, update);
+			return compareAndSwapObject(obj, offset, expect, update);
 		}
 
-		public synchronized void set(T obj, V newValue) {
+		public void set(T obj, V newValue) {
 			accessCheck(obj);
 			valueCheck(newValue);
-			try {
-				field.set(obj, newValue);
-			} catch (IllegalAccessException ignored) {}
-//			U.putObjectVolatile(obj, offset, newValue);
+			putObjectVolatile(obj, offset, newValue);
 		}
 
-		public synchronized void lazySet(T obj, V newValue) {
+		public void lazySet(T obj, V newValue) {
 			accessCheck(obj);
 			valueCheck(newValue);
-//			U.putOrderedObject(obj, offset, newValue);
-			set(obj, newValue);
+			putOrderedObject(obj, offset, newValue);
 		}
 
 		@SuppressWarnings("unchecked")
-		public synchronized V get(T obj) {
+		public V get(T obj) {
 			accessCheck(obj);
-//			return (V)U.getObjectVolatile(obj, offset);
-			try {
-				return (V)field.get(obj);
-			} catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
-			}
+			return (V)getObjectVolatile(obj, offset);
 		}
 
 		@SuppressWarnings("unchecked")
-		public synchronized V getAndSet(T obj, V newValue) {
+		public V getAndSet(T obj, V newValue) {
 			accessCheck(obj);
 			valueCheck(newValue);
-			try {
-				V old = (V)field.get(obj);
-				field.set(obj, newValue);
-				return old;
-			} catch (IllegalAccessException e) {
-				throw new RuntimeException(e);
-			}
-//			return (V)U.getAndSetObject(obj, offset, newValue);
+			return (V)getAndSetObject(obj, offset, newValue);
 		}
 	}
 }
@@ -562,16 +562,7 @@ public abstract class AbstractQueuedSynchronizer
      * @return {@code true} if successful. False return indicates that the actual
      *         value was not equal to the expected value.
      */
-    protected final boolean compareAndSetState(int expect, int update) {
-        // See below for intrinsics setup to support this
-//        return unsafe.compareAndSwapInt(this, stateOffset, expect, update);
-        synchronized (this) {
-            if (state != expect)
-                return false;
-            state = update;
-            return true;
-        }
-    }
+    protected final native boolean compareAndSetState(int expect, int update);
 
     // Queuing utilities
 
@@ -2290,32 +2281,20 @@ public abstract class AbstractQueuedSynchronizer
     /**
      * CAS head field. Used only by enq.
      */
-    private final synchronized boolean compareAndSetHead(Node update) {
-        head = update;
-        return true;//unsafe.compareAndSwapObject(this, headOffset, null, update);
-    }
+    private final native boolean compareAndSetHead(Node update);
 
     /**
      * CAS tail field. Used only by enq.
      */
-    private final synchronized boolean compareAndSetTail(Node expect, Node update) {
-        tail = update;
-        return true;//unsafe.compareAndSwapObject(this, tailOffset, expect, update);
-    }
+    private final native boolean compareAndSetTail(Node expect, Node update);
 
     /**
      * CAS waitStatus field of a node.
      */
-    private static final synchronized boolean compareAndSetWaitStatus(Node node, int expect, int update) {
-        node.waitStatus = update;
-        return true;//unsafe.compareAndSwapInt(node, waitStatusOffset, expect, update);
-    }
+    private static final native boolean compareAndSetWaitStatus(Node node, int expect, int update);
 
     /**
      * CAS next field of a node.
      */
-    private static final synchronized boolean compareAndSetNext(Node node, Node expect, Node update) {
-        node.next = update;
-        return true;//unsafe.compareAndSwapObject(node, nextOffset, expect, update);
-    }
+    private static final native boolean compareAndSetNext(Node node, Node expect, Node update);
 }
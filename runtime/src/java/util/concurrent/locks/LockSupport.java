@@ -119,10 +119,19 @@ package java.util.concurrent.locks;
 public class LockSupport {
     private LockSupport () {} // Cannot be instantiated.
 
-    private static void setBlocker(Thread t, Object arg) {
-        // Even though volatile, hotspot doesn't need a write barrier here.
-//        UNSAFE.putObject(t, parkBlockerOffset, arg);
-    }
+    private static native void setBlocker(Thread t, Object arg);
+
+    private static native Object getBlockerImpl(Thread t);
+
+    /**
+     * Blocks the current thread until the permit is available, it's interrupted, or the time elapses.
+     *
+     * @param absolute whether time is a deadline in milliseconds from the Epoch rather than a duration in nanoseconds
+     * @param time the deadline or duration, where a zero duration waits indefinitely
+     */
+    private static native void parkImpl(boolean absolute, long time);
+
+    private static native void unparkImpl(Thread thread);
 
     /**
      * Makes available the permit for the given thread, if it
@@ -136,8 +145,8 @@ public class LockSupport {
      *        this operation has no effect
      */
     public static void unpark(Thread thread) {
-//        if (thread != null)
-//            UNSAFE.unpark(thread);
+        if (thread != null)
+            unparkImpl(thread);
     }
 
     /**
@@ -171,7 +180,7 @@ public class LockSupport {
     public static void park(Object blocker) {
         Thread t = Thread.currentThread();
         setBlocker(t, blocker);
-//        UNSAFE.park(false, 0L);
+        parkImpl(false, 0L);
         setBlocker(t, null);
     }
 
@@ -211,7 +220,7 @@ public class LockSupport {
         if (nanos > 0) {
             Thread t = Thread.currentThread();
             setBlocker(t, blocker);
-//            UNSAFE.park(false, nanos);
+            parkImpl(false, nanos);
             setBlocker(t, null);
         }
     }
@@ -252,7 +261,7 @@ public class LockSupport {
     public static void parkUntil(Object blocker, long deadline) {
         Thread t = Thread.currentThread();
         setBlocker(t, blocker);
-//        UNSAFE.park(true, deadline);
+        parkImpl(true, deadline);
         setBlocker(t, null);
     }
 
@@ -271,8 +280,7 @@ public class LockSupport {
     public static Object getBlocker(Thread t) {
         if (t == null)
             throw new NullPointerException();
-//        return UNSAFE.getObjectVolatile(t, parkBlockerOffset);
-		return null;
+        return getBlockerImpl(t);
     }
 
     /**
@@ -301,7 +309,7 @@ public class LockSupport {
      * for example, the interrupt status of the thread upon return.
      */
     public static void park() {
-//        UNSAFE.park(false, 0L);
+        parkImpl(false, 0L);
     }
 
     /**
@@ -334,8 +342,8 @@ public class LockSupport {
      * @param nanos the maximum number of nanoseconds to wait
      */
     public static void parkNanos(long nanos) {
-//        if (nanos > 0)
-//            UNSAFE.park(false, nanos);
+        if (nanos > 0)
+            parkImpl(false, nanos);
     }
 
     /**
@@ -369,11 +377,11 @@ public class LockSupport {
      *        to wait until
      */
     public static void parkUntil(long deadline) {
-//        UNSAFE.park(true, deadline);
+        parkImpl(true, deadline);
     }
 
     static final long getThreadId(Thread thread) {
-        return 0;
+        return thread.getId();
     }
 
     /**
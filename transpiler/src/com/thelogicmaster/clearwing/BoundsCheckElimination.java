@@ -0,0 +1,223 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+
+/**
+ * Removes the bounds checks of array accesses in counted loops where the index is proven to be in range. A loop
+ * qualifies when it has the shape javac emits for {@code for (int i = start; i < a.length; i++)}, or for a bound
+ * captured with {@code int n = a.length} right before the loop. The index starts at a non-negative constant, is only
+ * incremented by one at the end of the body, and neither the index, the array, nor the bound is assigned in the loop,
+ * so every access to {@code a[i]} between the loop condition and the increment is in bounds. The loop can only be
+ * entered by falling into its header, so the values before the header are the ones the loop starts with. Null checks
+ * are kept. Only accesses in instruction groups are rewritten, since the stack macros always check bounds.
+ */
+public class BoundsCheckElimination {
+
+	private final BytecodeMethod method;
+	private final List<Instruction> instructions;
+	private final IdentityHashMap<Instruction, Integer> indices = new IdentityHashMap<>();
+	private final HashMap<Integer, Integer> labels = new HashMap<>();
+	private final HashSet<Integer> targets = new HashSet<>();
+	private final Set<Instruction> grouped = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private BoundsCheckElimination(BytecodeMethod method) {
+		this.method = method;
+		instructions = new ArrayList<>();
+		for (Instruction instruction: method.getInstructions())
+			if (instruction instanceof InstructionGroup group) {
+				instructions.addAll(group.getInstructions());
+				grouped.addAll(group.getInstructions());
+			} else
+				instructions.add(instruction);
+		for (int i = 0; i < instructions.size(); i++) {
+			indices.put(instructions.get(i), i);
+			if (instructions.get(i) instanceof LabelInstruction label)
+				labels.put(label.getLabel(), i);
+			if (instructions.get(i) instanceof JumpingInstruction jumping)
+				targets.addAll(jumping.getJumpLabels());
+		}
+		for (BytecodeMethod.ExceptionFrame frame: method.getExceptionFrames())
+			targets.add(frame.getHandlerLabel());
+	}
+
+	/**
+	 * Eliminate the bounds checks of array accesses in counted loops, returning the number of accesses without checks
+	 */
+	public static int eliminateBoundsChecks(BytecodeMethod method) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated())
+			return 0;
+		return new BoundsCheckElimination(method).run();
+	}
+
+	private int run() {
+		int eliminated = 0;
+		for (int i = 0; i < instructions.size(); i++) {
+			if (instructions.get(i).getOpcode() != Opcodes.GOTO)
+				continue;
+			Integer header = labels.get(((JumpInstruction) instructions.get(i)).getJumpLabels().get(0));
+			if (header != null && header < i)
+				eliminated += eliminateLoop(header, i);
+		}
+		return eliminated;
+	}
+
+	/**
+	 * Eliminate the checks in a loop from its header label to its back edge
+	 */
+	private int eliminateLoop(int header, int backEdge) {
+		// The header loads the index and bound, then exits the loop once the index reaches the bound
+		int condition = header + 1;
+		while (condition < backEdge && isHeaderLoad(instructions.get(condition)))
+			condition++;
+		Instruction exit = instructions.get(condition);
+		if (exit.getOpcode() != Opcodes.IF_ICMPGE || exit.getInputs() == null)
+			return 0;
+		Integer exitLabel = labels.get(((JumpInstruction) exit).getJumpLabels().get(0));
+		if (exitLabel == null || exitLabel <= backEdge)
+			return 0;
+		int index = getLoadedLocal(exit.getInputs().get(0), Opcodes.ILOAD);
+		if (index < 0)
+			return 0;
+		Instruction boundSource = exit.getInputs().get(1).getSource();
+		int array;
+		int bound = -1;
+		if (boundSource == null)
+			return 0;
+		if (boundSource.getOpcode() == Opcodes.ARRAYLENGTH && boundSource.getInputs() != null)
+			array = getLoadedLocal(boundSource.getInputs().get(0), Opcodes.ALOAD);
+		else {
+			bound = getLoadedLocal(exit.getInputs().get(1), Opcodes.ILOAD);
+			array = bound < 0 ? -1 : findCapturedArray(header, bound);
+		}
+		if (array < 0)
+			return 0;
+
+		if (!(instructions.get(backEdge - 1) instanceof IncrementInstruction increment) || increment.getLocal() != index || increment.getAmount() != 1)
+			return 0;
+		for (int i = header + 1; i < backEdge - 1; i++)
+			if (isWrite(instructions.get(i), index) || isWrite(instructions.get(i), array) || (bound >= 0 && isWrite(instructions.get(i), bound)))
+				return 0;
+		if (!hasNonNegativeStart(header, index) || !isOnlyEnteredByHeader(header, backEdge))
+			return 0;
+
+		int eliminated = 0;
+		for (int i = condition + 1; i < backEdge - 1; i++) {
+			Instruction instruction = instructions.get(i);
+			if (!(instruction instanceof ZeroOperandInstruction access) || !isArrayAccess(access) || !grouped.contains(access) || access.getInputs() == null)
+				continue;
+			if (isLoadedInLoop(access.getInputs().get(0), Opcodes.ALOAD, array, condition) && isLoadedInLoop(access.getInputs().get(1), Opcodes.ILOAD, index, condition)) {
+				access.eliminateBoundsCheck();
+				eliminated++;
+			}
+		}
+		return eliminated;
+	}
+
+	/**
+	 * Whether an instruction is a label that can be jumped to, rather than one that only marks a position
+	 */
+	private boolean isJumpTarget(Instruction instruction) {
+		return instruction instanceof LabelInstruction label && targets.contains(label.getLabel());
+	}
+
+	private static boolean isHeaderLoad(Instruction instruction) {
+		return instruction instanceof LineNumberInstruction || instruction.getOpcode() == Opcodes.ILOAD
+				|| instruction.getOpcode() == Opcodes.ALOAD || instruction.getOpcode() == Opcodes.ARRAYLENGTH;
+	}
+
+	private static boolean isArrayAccess(Instruction instruction) {
+		return (instruction.getOpcode() >= Opcodes.IALOAD && instruction.getOpcode() <= Opcodes.SALOAD)
+				|| (instruction.getOpcode() >= Opcodes.IASTORE && instruction.getOpcode() <= Opcodes.SASTORE);
+	}
+
+	/**
+	 * Get the local a value was loaded from with the given opcode, or -1
+	 */
+	private static int getLoadedLocal(StackEntry entry, int opcode) {
+		if (entry.getSource() instanceof VariableInstruction load && load.getOpcode() == opcode)
+			return load.getLocal();
+		return -1;
+	}
+
+	private boolean isLoadedInLoop(StackEntry entry, int opcode, int local, int condition) {
+		return getLoadedLocal(entry, opcode) == local && indices.get(entry.getSource()) > condition;
+	}
+
+	private static boolean isWrite(Instruction instruction, int local) {
+		if (instruction instanceof IncrementInstruction increment)
+			return increment.getLocal() == local;
+		return instruction instanceof VariableInstruction variable && variable.getLocal() == local
+				&& variable.getOpcode() >= Opcodes.ISTORE && variable.getOpcode() <= Opcodes.ASTORE;
+	}
+
+	/**
+	 * Find the array local that a bound was last assigned the length of before the loop, or -1
+	 */
+	private int findCapturedArray(int header, int bound) {
+		// The array can't be reassigned between capturing its length and the loop
+		HashSet<Integer> reassigned = new HashSet<>();
+		for (int i = header - 1; i >= 0 && !isJumpTarget(instructions.get(i)); i--) {
+			Instruction instruction = instructions.get(i);
+			if (instruction.getOpcode() == Opcodes.ASTORE)
+				reassigned.add(((VariableInstruction) instruction).getLocal());
+			if (!isWrite(instruction, bound))
+				continue;
+			if (instruction.getOpcode() != Opcodes.ISTORE || instruction.getInputs() == null)
+				return -1;
+			Instruction source = instruction.getInputs().get(0).getSource();
+			if (source == null || source.getOpcode() != Opcodes.ARRAYLENGTH || source.getInputs() == null)
+				return -1;
+			int array = getLoadedLocal(source.getInputs().get(0), Opcodes.ALOAD);
+			return reassigned.contains(array) ? -1 : array;
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the index is last assigned a non-negative constant before the loop
+	 */
+	private boolean hasNonNegativeStart(int header, int index) {
+		for (int i = header - 1; i >= 0 && !isJumpTarget(instructions.get(i)); i--) {
+			Instruction instruction = instructions.get(i);
+			if (!isWrite(instruction, index))
+				continue;
+			if (instruction.getOpcode() != Opcodes.ISTORE || instruction.getInputs() == null)
+				return false;
+			Instruction source = instruction.getInputs().get(0).getSource();
+			if (source instanceof ZeroOperandInstruction)
+				return source.getOpcode() >= Opcodes.ICONST_0 && source.getOpcode() <= Opcodes.ICONST_5;
+			if (source instanceof IntegerInstruction constant)
+				return source.getOpcode() != Opcodes.NEWARRAY && constant.getOperand() >= 0;
+			if (source instanceof LoadConstantInstruction constant)
+				return constant.getValue() instanceof Integer value && value >= 0;
+			return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the only jumps into the loop come from inside it, so it is only entered by falling into the header
+	 */
+	private boolean isOnlyEnteredByHeader(int header, int backEdge) {
+		for (int i = 0; i < instructions.size(); i++) {
+			if (i >= header && i <= backEdge || !(instructions.get(i) instanceof JumpingInstruction jumping))
+				continue;
+			for (int label: jumping.getJumpLabels()) {
+				Integer target = labels.get(label);
+				if (target == null || (target >= header && target <= backEdge))
+					return false;
+			}
+		}
+		for (BytecodeMethod.ExceptionFrame frame: method.getExceptionFrames()) {
+			int handler = labels.getOrDefault(frame.getHandlerLabel(), -1);
+			if (handler < header || handler > backEdge)
+				continue;
+			if (labels.getOrDefault(frame.getStartLabel(), -1) <= header || labels.getOrDefault(frame.getEndLabel(), -1) > backEdge)
+				return false;
+		}
+		return true;
+	}
+}
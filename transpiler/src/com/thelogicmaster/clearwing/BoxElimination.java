@@ -0,0 +1,243 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+
+/**
+ * Replaces Integer, Long, and Double boxes from valueOf calls with their primitive values when the boxes are only
+ * unboxed, hashed, compared with equals or compareTo, or compared by reference against other eliminated boxes. Boxes
+ * are followed through locals that never hold anything else. Instruction groups keep stack values in C++ temporaries
+ * and access locals by type, so every instruction that touches an eliminated box has to be in a group.
+ */
+public class BoxElimination {
+
+	private static final Map<String, TypeVariants> BOX_TYPES = Map.of(
+			"java/lang/Integer", TypeVariants.INT,
+			"java/lang/Long", TypeVariants.LONG,
+			"java/lang/Double", TypeVariants.DOUBLE
+	);
+
+	private static final Set<String> UNBOX_METHODS = Set.of("intValue", "longValue", "floatValue", "doubleValue", "shortValue", "byteValue");
+
+	private final BytecodeMethod method;
+	private final IdentityHashMap<Instruction, InstructionGroup> groups = new IdentityHashMap<>();
+	private final ArrayList<VariableInstruction> variables = new ArrayList<>();
+	private final IdentityHashMap<MethodInstruction, TypeVariants> boxes = new IdentityHashMap<>();
+	private final HashMap<Integer, TypeVariants> locals = new HashMap<>();
+
+	private BoxElimination(BytecodeMethod method) {
+		this.method = method;
+	}
+
+	/**
+	 * Eliminate the boxes in a method that never need to exist as objects, returning the number of valueOf calls removed
+	 */
+	public static int eliminateBoxing(BytecodeMethod method) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated())
+			return 0;
+		return new BoxElimination(method).run();
+	}
+
+	private int run() {
+		for (Instruction instruction: method.getInstructions())
+			if (instruction instanceof InstructionGroup group)
+				for (Instruction grouped: group.getInstructions()) {
+					groups.put(grouped, group);
+					if (grouped instanceof MethodInstruction call && getBoxType(call) != null)
+						boxes.put(call, getBoxType(call));
+				}
+		if (boxes.isEmpty())
+			return 0;
+
+		findLocals();
+
+		// Drop boxes and locals with uses that need an object until the remaining ones only depend on each other
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (MethodInstruction box: new ArrayList<>(boxes.keySet()))
+				if (!isEliminable(box.getOutputs().get(0), boxes.get(box))) {
+					boxes.remove(box);
+					changed = true;
+				}
+			for (Iterator<Map.Entry<Integer, TypeVariants>> iterator = locals.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry<Integer, TypeVariants> local = iterator.next();
+				if (!isLocalEliminable(local.getKey(), local.getValue())) {
+					iterator.remove();
+					changed = true;
+				}
+			}
+		}
+
+		for (Map.Entry<MethodInstruction, TypeVariants> box: boxes.entrySet())
+			eliminate(box.getKey(), box.getValue());
+		for (VariableInstruction variable: variables)
+			if (locals.containsKey(variable.getLocal()))
+				eliminate(variable, locals.get(variable.getLocal()));
+		return boxes.size();
+	}
+
+	/**
+	 * Get the primitive type boxed by a valueOf call, or null if it isn't one
+	 */
+	private static TypeVariants getBoxType(MethodInstruction call) {
+		TypeVariants type = BOX_TYPES.get(call.getOwner());
+		if (type == null || call.getOpcode() != Opcodes.INVOKESTATIC || !"valueOf".equals(call.getOriginalName()))
+			return null;
+		JavaType[] params = call.getSignature().getParamTypes();
+		return params.length == 1 && params[0].isPrimitive() && params[0].getBasicType() == type ? type : null;
+	}
+
+	/**
+	 * Find the candidate locals, which are only ever assigned boxes of a single type and aren't parameters
+	 */
+	private void findLocals() {
+		for (Instruction instruction: groups.keySet())
+			if (instruction instanceof VariableInstruction variable && (variable.getOpcode() == Opcodes.ALOAD || variable.getOpcode() == Opcodes.ASTORE))
+				variables.add(variable);
+
+		int parameterSlots = method.isStatic() ? 0 : 1;
+		for (JavaType type: method.getSignature().getParamTypes())
+			parameterSlots += type.getBasicType().isWide() ? 2 : 1;
+
+		HashSet<Integer> rejected = new HashSet<>();
+		for (int i = 0; i < parameterSlots; i++)
+			rejected.add(i);
+		// Accesses outside of groups use the stack macros, which always treat locals as objects
+		for (Instruction instruction: flatten())
+			if (instruction instanceof LocalInstruction local && !groups.containsKey(instruction))
+				rejected.add(local.getLocal());
+		for (VariableInstruction variable: variables) {
+			if (variable.getOpcode() != Opcodes.ASTORE)
+				continue;
+			TypeVariants type = variable.getInputs().get(0).getSource() instanceof MethodInstruction call ? boxes.get(call) : null;
+			if (type == null || (locals.containsKey(variable.getLocal()) && locals.get(variable.getLocal()) != type))
+				rejected.add(variable.getLocal());
+			else
+				locals.put(variable.getLocal(), type);
+		}
+		locals.keySet().removeAll(rejected);
+	}
+
+	private boolean isLocalEliminable(int local, TypeVariants type) {
+		for (VariableInstruction variable: variables) {
+			if (variable.getLocal() != local)
+				continue;
+			if (variable.getOpcode() == Opcodes.ASTORE) {
+				if (!(variable.getInputs().get(0).getSource() instanceof MethodInstruction call) || !boxes.containsKey(call))
+					return false;
+			} else if (!isEliminable(variable.getOutputs().get(0), type))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Whether a value produced by a box or a box local can be replaced with its primitive
+	 */
+	private boolean isEliminable(StackEntry entry, TypeVariants type) {
+		InstructionGroup group = groups.get(entry.getSource());
+		if (entry.getConsumers().isEmpty())
+			return false;
+		for (Instruction consumer: entry.getConsumers()) {
+			if (groups.get(consumer) != group || consumer.isRoutingInstruction())
+				return false;
+			switch (consumer.getOpcode()) {
+				case Opcodes.ASTORE -> {
+					// Copies between locals would let two locals hold the same box, which reference comparisons can't tell apart
+					if (!(entry.getSource() instanceof MethodInstruction) || !locals.containsKey(((VariableInstruction) consumer).getLocal()))
+						return false;
+				}
+				case Opcodes.IF_ACMPEQ, Opcodes.IF_ACMPNE -> {
+					if (type == TypeVariants.DOUBLE || !isPair(consumer, type) || isSameLocal(consumer.getInputs().get(0), consumer.getInputs().get(1)))
+						return false;
+				}
+				case Opcodes.INVOKEVIRTUAL -> {
+					if (!isEliminableCall((MethodInstruction) consumer, entry, type))
+						return false;
+				}
+				default -> {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private boolean isEliminableCall(MethodInstruction call, StackEntry entry, TypeVariants type) {
+		String owner = call.getOwner();
+		if (!BOX_TYPES.containsKey(owner) && !"java/lang/Number".equals(owner) && !"java/lang/Object".equals(owner))
+			return false;
+		boolean receiver = call.getInputs().get(0) == entry;
+		String desc = call.getDesc();
+		return switch (call.getOriginalName()) {
+			case "hashCode" -> receiver && "()I".equals(desc) && type != TypeVariants.DOUBLE;
+			case "equals" -> "(Ljava/lang/Object;)Z".equals(desc) && type != TypeVariants.DOUBLE && isPair(call, type);
+			case "compareTo" -> call.getSignature().getParamTypes().length == 1 && type != TypeVariants.DOUBLE && isPair(call, type);
+			default -> receiver && UNBOX_METHODS.contains(call.getOriginalName()) && call.getSignature().getParamTypes().length == 0;
+		};
+	}
+
+	/**
+	 * Whether both inputs of a comparison are eliminated boxes of the same type
+	 */
+	private boolean isPair(Instruction instruction, TypeVariants type) {
+		for (StackEntry input: instruction.getInputs())
+			if (getEliminatedType(input) != type)
+				return false;
+		return true;
+	}
+
+	private TypeVariants getEliminatedType(StackEntry entry) {
+		if (entry.getSource() instanceof MethodInstruction call)
+			return boxes.get(call);
+		if (entry.getSource() instanceof VariableInstruction variable && variable.getOpcode() == Opcodes.ALOAD)
+			return locals.get(variable.getLocal());
+		return null;
+	}
+
+	/**
+	 * Whether two values are loaded from the same local, so they may be the same box regardless of the cache
+	 */
+	private static boolean isSameLocal(StackEntry first, StackEntry second) {
+		return first.getSource() instanceof VariableInstruction firstLoad && second.getSource() instanceof VariableInstruction secondLoad
+				&& firstLoad.getLocal() == secondLoad.getLocal();
+	}
+
+	private static void eliminate(MethodInstruction box, TypeVariants type) {
+		StackEntry output = box.getOutputs().get(0);
+		box.eliminateBoxing(type);
+		output.setType(new JavaType(type));
+		for (Instruction consumer: output.getConsumers())
+			eliminateConsumer(consumer, type);
+	}
+
+	private static void eliminate(VariableInstruction variable, TypeVariants type) {
+		variable.eliminateBoxing(type);
+		if (variable.getOpcode() != Opcodes.ALOAD)
+			return;
+		StackEntry output = variable.getOutputs().get(0);
+		output.setType(new JavaType(type));
+		for (Instruction consumer: output.getConsumers())
+			eliminateConsumer(consumer, type);
+	}
+
+	private static void eliminateConsumer(Instruction consumer, TypeVariants type) {
+		if (consumer instanceof MethodInstruction call)
+			call.eliminateBoxing(type);
+		else if (consumer instanceof JumpInstruction jump)
+			jump.eliminateBoxing(type);
+	}
+
+	private List<Instruction> flatten() {
+		ArrayList<Instruction> flattened = new ArrayList<>();
+		for (Instruction instruction: method.getInstructions())
+			if (instruction instanceof InstructionGroup group)
+				flattened.addAll(group.getInstructions());
+			else
+				flattened.add(instruction);
+		return flattened;
+	}
+}
@@ -2,6 +2,7 @@ package com.thelogicmaster.clearwing;
 
 import org.objectweb.asm.Type;
 
+import java.io.Serializable;
 import java.util.*;
 
 // Todo: Make created objects eternal
@@ -109,7 +110,7 @@ public class BytecodeAnnotation extends AnnotationValue {
 	}
 }
 
-abstract class AnnotationValue {
+abstract class AnnotationValue implements Serializable {
 
 	protected final String name;
 
@@ -3,10 +3,13 @@ package com.thelogicmaster.clearwing;
 import com.thelogicmaster.clearwing.bytecode.Instruction;
 import org.objectweb.asm.Opcodes;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
 
-public class BytecodeClass {
+public class BytecodeClass implements Serializable {
 
 	public final static BytecodeClass OBJECT_CLASS = new BytecodeClass("java/lang/Object", null, null, Opcodes.ACC_PUBLIC);
 	public final static BytecodeMethod[] OBJECT_METHODS = {
@@ -41,7 +44,8 @@ public class BytecodeClass {
 
 	private final ArrayList<BytecodeMethod> methods = new ArrayList<>();
 	private final ArrayList<BytecodeField> fields = new ArrayList<>();
-	private final HashSet<String> dependencies = new HashSet<>();
+	private transient HashSet<String> dependencies = new HashSet<>();
+	private transient HashSet<String> layoutDependencies = new HashSet<>();
 	private final ArrayList<BytecodeAnnotation> annotations = new ArrayList<>();
 	private final BytecodeAnnotation defaultAnnotation;
 	private final List<String> innerClassNames = new ArrayList<>();
@@ -51,6 +55,8 @@ public class BytecodeClass {
 	private final ArrayList<BytecodeMethod> vtable = new ArrayList<>();
 	private BytecodeClass superClass;
 	private BytecodeClass[] interfaceClasses;
+	private int itableIndex;
+	private BytecodeClass[] itable;
 	private boolean jni;
 
 	public BytecodeClass (String name, String superName, String[] interfaces, int access) {
@@ -73,6 +79,16 @@ public class BytecodeClass {
 			methods.add(new BytecodeMethod(this, "annotationType", Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "()Ljava/lang/Class;", null, null));
 	}
 
+	/**
+	 * Dependencies are collected after hierarchy processing, so classes loaded from the parse cache start without them,
+	 * like freshly parsed ones. Deserialized sets could be sized differently, which would change the include order.
+	 */
+	private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+		input.defaultReadObject();
+		dependencies = new HashSet<>();
+		layoutDependencies = new HashSet<>();
+	}
+
 	public void addMethod(BytecodeMethod method) {
 		methods.add(method);
 	}
@@ -133,6 +149,22 @@ public class BytecodeClass {
 		return false;
 	}
 
+	/**
+	 * Whether initializing the class or a parent class runs code, so accesses have to check for initialization first.
+	 * Primitive constant values are assigned with the static field definitions instead.
+	 */
+	public boolean needsInitialization() {
+		if (superClass != null && superClass.needsInitialization())
+			return true;
+		for (BytecodeMethod method: methods)
+			if (method.isStaticInitializer() && !method.isTrivial())
+				return true;
+		for (BytecodeField field: fields)
+			if (field.isStatic() && field.isFinal() && field.getInitialValue() instanceof String)
+				return true;
+		return false;
+	}
+
 	/**
 	 * Returns if any annotation data is present
 	 */
@@ -183,6 +215,21 @@ public class BytecodeClass {
 			annotation.collectDependencies(dependencies, classMap);
 		for (BytecodeMethod method : vtable)
 			dependencies.add(method.getOwner().name);
+
+		layoutDependencies.clear();
+		for (BytecodeMethod method: methods)
+			method.collectLayoutDependencies(layoutDependencies);
+		// Annotation initializers populate annotation instances and reflection objects directly
+		if (hasAnnotations()) {
+			for (BytecodeAnnotation annotation: annotations)
+				annotation.collectDependencies(layoutDependencies, classMap);
+			for (BytecodeMethod method: methods)
+				for (BytecodeAnnotation annotation: method.getAnnotations())
+					annotation.collectDependencies(layoutDependencies, classMap);
+			for (BytecodeField field: fields)
+				for (BytecodeAnnotation annotation: field.getAnnotations())
+					annotation.collectDependencies(layoutDependencies, classMap);
+		}
 	}
 
 	/**
@@ -192,6 +239,13 @@ public class BytecodeClass {
 		return dependencies;
 	}
 
+	/**
+	 * Returns the cached dependencies that need the full class header for struct layouts, a subset of the dependencies
+	 */
+	public Set<String> getLayoutDependencies() {
+		return layoutDependencies;
+	}
+
 	/**
 	 *
 	 */
@@ -266,40 +320,62 @@ public class BytecodeClass {
 			method.resolveSymbols();
 	}
 
-	public void generateHeader(StringBuilder builder, TranspilerConfig config, HashMap<String, BytecodeClass> classMap) {
-		builder.append("#ifndef HEADER_").append(qualifiedName).append("\n");
-		builder.append("#define HEADER_").append(qualifiedName).append("\n\n");
+	/**
+	 * Devirtualize call sites using whole-program hierarchy information, then recollect dependencies for new call targets
+	 */
+	public void devirtualize(ClassHierarchy hierarchy, Map<String, BytecodeClass> classMap) {
+		if ("java/lang/Object".equals(name) || hierarchyError)
+			return;
 
-		builder.append("#include \"Clearwing.h\"\n");
-		builder.append("#include \"").append(Utils.getClassFilename(superName)).append(".h\"\n");
-		for (String iName : interfaces)
-			builder.append("#include \"").append(Utils.getClassFilename(iName)).append(".h\"\n");
-		builder.append("\n");
+		for (BytecodeMethod method : methods)
+			method.devirtualize(hierarchy);
+		collectDependencies(classMap);
+	}
 
-		builder.append("#ifdef __cplusplus\n");
-		builder.append("extern \"C\" {\n");
-		builder.append("#endif\n\n");
+	/**
+	 * Omit redundant class initialization checks from methods
+	 */
+	public void elideInitializationChecks() {
+		if ("java/lang/Object".equals(name) || hierarchyError)
+			return;
 
-		builder.append("typedef struct ").append(qualifiedName).append(" {\n");
-		builder.append("\t").append(qualifiedSuperName).append(" parent;\n");
+		for (BytecodeMethod method : methods)
+			method.elideInitializationChecks();
+	}
 
-		for (BytecodeField field : fields) {
-			if (field.isStatic())
-				continue;
-			builder.append("\t");
-			if (field.isVolatile())
-				builder.append("volatile ");
-			builder.append(field.getType().getCppMemberType()).append(" ").append(field.getName()).append(";\n");
+	/**
+	 * Get the headers of dependencies that the class source includes. Full headers are only included for struct layouts
+	 * that are accessed, since those pull in whole class hierarchies.
+	 */
+	public Set<String> getIncludes(Map<String, BytecodeClass> classMap) {
+		LinkedHashSet<String> classes = new LinkedHashSet<>(dependencies);
+		if (itable != null)
+			for (BytecodeClass interfaceClass : itable)
+				if (interfaceClass != null)
+					classes.add(interfaceClass.name);
+		LinkedHashSet<String> includes = new LinkedHashSet<>();
+		for (String clazz : classes) {
+			boolean layout = layoutDependencies.contains(clazz) || !classMap.containsKey(clazz);
+			includes.add(Utils.getClassFilename(clazz) + (layout ? ".h" : ".decl.h"));
 		}
+		return includes;
+	}
 
-		if (isAnnotationImpl())
-			for (BytecodeMethod method : methods) {
-				if (method.isStatic() || method.getOriginalName().equals("annotationType"))
-					continue;
-				builder.append("\t").append(method.getSignature().getReturnType().getCppMemberType()).append(" F_").append(method.getOriginalName()).append(";\n");
-			}
+	/**
+	 * Generate the lightweight declarations header, which has no includes beyond the runtime so that code only calling
+	 * methods or accessing static fields doesn't depend on the struct layouts of whole class hierarchies
+	 */
+	public void generateDeclarationHeader(StringBuilder builder, TranspilerConfig config, HashMap<String, BytecodeClass> classMap) {
+		builder.append("#ifndef DECLARATIONS_").append(qualifiedName).append("\n");
+		builder.append("#define DECLARATIONS_").append(qualifiedName).append("\n\n");
 
-		builder.append("} ").append(qualifiedName).append(";\n\n");
+		builder.append("#include \"Clearwing.h\"\n\n");
+
+		builder.append("#ifdef __cplusplus\n");
+		builder.append("extern \"C\" {\n");
+		builder.append("#endif\n\n");
+
+		builder.append("typedef struct ").append(qualifiedName).append(" ").append(qualifiedName).append(";\n\n");
 
 		builder.append("extern Class class_").append(qualifiedName).append(";\n\n");
 
@@ -333,6 +409,7 @@ public class BytecodeClass {
 		builder.append("\n");
 
 		builder.append("void mark_").append(qualifiedName).append("(jobject object, jint mark, jint depth);\n");
+		builder.append("void markFields_").append(qualifiedName).append("(jobject object, jint mark, jint depth);\n");
 		builder.append("void clinit_").append(qualifiedName).append("(jcontext ctx);\n");
 
 		for (BytecodeMethod method : methods)
@@ -349,10 +426,53 @@ public class BytecodeClass {
 		builder.append("#endif\n");
 	}
 
+	/**
+	 * Generate the full class header, adding the struct layout to the declarations
+	 */
+	public void generateHeader(StringBuilder builder, TranspilerConfig config, HashMap<String, BytecodeClass> classMap) {
+		builder.append("#ifndef HEADER_").append(qualifiedName).append("\n");
+		builder.append("#define HEADER_").append(qualifiedName).append("\n\n");
+
+		builder.append("#include \"").append(Utils.getClassFilename(name)).append(".decl.h\"\n");
+		builder.append("#include \"").append(Utils.getClassFilename(superName)).append(".h\"\n");
+		builder.append("\n");
+
+		builder.append("#ifdef __cplusplus\n");
+		builder.append("extern \"C\" {\n");
+		builder.append("#endif\n\n");
+
+		builder.append("typedef struct ").append(qualifiedName).append(" {\n");
+		builder.append("\t").append(qualifiedSuperName).append(" parent;\n");
+
+		for (BytecodeField field : fields) {
+			if (field.isStatic())
+				continue;
+			builder.append("\t");
+			if (field.isVolatile())
+				builder.append("volatile ");
+			builder.append(field.getType().getCppMemberType()).append(" ").append(field.getName()).append(";\n");
+		}
+
+		if (isAnnotationImpl())
+			for (BytecodeMethod method : methods) {
+				if (method.isStatic() || method.getOriginalName().equals("annotationType"))
+					continue;
+				builder.append("\t").append(method.getSignature().getReturnType().getCppMemberType()).append(" F_").append(method.getOriginalName()).append(";\n");
+			}
+
+		builder.append("} ").append(qualifiedName).append(";\n\n");
+
+		builder.append("#ifdef __cplusplus\n");
+		builder.append("}\n");
+		builder.append("#endif\n\n");
+
+		builder.append("#endif\n");
+	}
+
 	public void generateCpp(StringBuilder builder, TranspilerConfig config, HashMap<String, BytecodeClass> classMap) {
 		builder.append("#include \"").append(Utils.getClassFilename(name)).append(".h\"\n");
-		for (String clazz : dependencies)
-			builder.append("#include \"").append(Utils.getClassFilename(clazz)).append(".h\"\n");
+		for (String include : getIncludes(classMap))
+			builder.append("#include \"").append(include).append("\"\n");
 		builder.append("\n");
 
 		builder.append("extern \"C\" {\n\n");
@@ -365,10 +485,24 @@ public class BytecodeClass {
 				continue;
 			if (field.isVolatile())
 				builder.append("volatile ");
-			builder.append(field.getType().getCppType()).append(" ").append(field.getName()).append(";\n");
+			builder.append(field.getType().getCppType()).append(" ").append(field.getName());
+			if (field.isFinal() && field.getInitialValue() != null && !(field.getInitialValue() instanceof String))
+				builder.append(" = ").append(Utils.getObjectValue(field.getInitialValue()));
+			builder.append(";\n");
 		}
 		builder.append("\n");
 
+		// Mark instance fields, including those of super classes, after the object has been claimed
+		builder.append("void markFields_").append(qualifiedName).append("(jobject object, jint mark, jint depth) {\n");
+		if (superClass != null && superClass != OBJECT_CLASS)
+			builder.append("\tmarkFields_").append(qualifiedSuperName).append("(object, mark, depth);\n");
+		builder.append("\tauto self = (").append(qualifiedName).append(" *) object;\n");
+		for (BytecodeField field : fields)
+			if (!field.isStatic() && !field.getType().isPrimitive())
+				builder.append("\tif (self->").append(field.getName()).append(")\n")
+						.append("\t\t((gc_mark_ptr) ((jclass) ((jobject) self->").append(field.getName()).append(")->clazz)->markFunction)((jobject) self->").append(field.getName()).append(", mark, depth + 1);\n");
+		builder.append("}\n\n");
+
 		// Mark function
 		builder.append("void mark_").append(qualifiedName).append("(jobject object, jint mark, jint depth) {\n");
 		builder.append("\tif (!object) {\n");
@@ -378,21 +512,11 @@ public class BytecodeClass {
 						.append("\t\t\t((gc_mark_ptr) ((jclass) ((jobject) ").append(field.getName()).append(")->clazz)->markFunction)((jobject) ").append(field.getName()).append(", mark, depth + 1);\n");
 		builder.append("\t\treturn;\n");
 		builder.append("\t}\n");
-		builder.append("\tif (depth > GC_DEPTH_ALWAYS && (object->gcMark < GC_MARK_START || object->gcMark == mark))\n");
+		builder.append("\tif (!gcMarkClaim(object, mark, depth))\n");
 		builder.append("\t\treturn;\n");
-		builder.append("\tif (depth > MAX_GC_MARK_DEPTH) {\n");
-		builder.append("\t\tmarkDeepObject(object);\n");
+		builder.append("\tif (depth > GC_MARK_SPLIT_DEPTH && markDeepObject(object, depth))\n");
 		builder.append("\t\treturn;\n");
-		builder.append("\t}\n");
-		if (superClass != null && superClass != OBJECT_CLASS)
-			builder.append("\tmark_").append(qualifiedSuperName).append("(object, mark, depth);\n");
-		builder.append("\tif (object->gcMark >= GC_MARK_START)\n");
-		builder.append("\t\tobject->gcMark = mark;\n");
-		builder.append("\tauto self = (").append(qualifiedName).append(" *) object;\n");
-		for (BytecodeField field : fields)
-			if (!field.isStatic() && !field.getType().isPrimitive())
-				builder.append("\tif (self->").append(field.getName()).append(")\n")
-						.append("\t\t((gc_mark_ptr) ((jclass) ((jobject) self->").append(field.getName()).append(")->clazz)->markFunction)((jobject) self->").append(field.getName()).append(", mark, depth + 1);\n");
+		builder.append("\tmarkFields_").append(qualifiedName).append("(object, mark, depth);\n");
 		builder.append("}\n\n");
 
 		// Default static initializer
@@ -429,7 +553,7 @@ public class BytecodeClass {
 				continue;
 			}
 			
-			if (method.isNative() || method.isAbstract() || method.isIntrinsic())
+			if (method.isNative() || method.isAbstract() || method.isIntrinsic() || method.isTrimmed())
 				continue;
 
 			appendMethodDeclaration(builder, method);
@@ -442,12 +566,14 @@ public class BytecodeClass {
 
 			int stackSize = method.getStackSize() + method.getLocalCount();
 			if (stackSize > 0) {
-				builder.append("\tjtype frame[").append(stackSize).append("];\n");
+				builder.append("\tjtype frame[").append(method.getFrameSize()).append("];\n");
 				builder.append("\tauto stack = &frame[").append(method.getLocalCount()).append("];\n");
 				builder.append("\tjtype *sp = stack;\n");
 			}
+			for (Map.Entry<Integer, TypeVariants> local: method.getTypedLocals().entrySet())
+				builder.append("\t").append(local.getValue().getArithmeticType()).append(" local").append(local.getKey()).append("{};\n");
 			
-			if (!method.getLocations().isEmpty()) {
+			if (!method.isFrameless() && !method.getLocations().isEmpty()) {
 				builder.append("\tstatic constexpr FrameLocation frameLocations[] { ");
 				for (int i = 0; i < method.getLocations().size(); i++) {
 					method.getLocations().get(i).build(builder);
@@ -465,14 +591,16 @@ public class BytecodeClass {
 				builder.append("};\n");
 			}
 			
-			builder.append("\tFrameInfo frameInfo { ").append("\"").append(name).append(":")
-					.append(method.getOriginalName()).append("\", ").append(stackSize)
-					.append(", ").append(method.getLocations().size()).append(", ").append(method.getLocations().isEmpty() ? "nullptr" : "frameLocations")
-					.append(", ").append(method.getExceptionFrames().size()).append(", ").append(method.getExceptionFrames().isEmpty() ? "nullptr" : "exceptionScopes")
-					.append(" };\n");
-			
-			builder.append("\tFrameGuard frameRef{ ctx, &frameInfo, ")
-					.append(stackSize > 0 ? "frame" : "nullptr").append(" };\n");
+			if (!method.isFrameless()) {
+				builder.append("\tFrameInfo frameInfo { ").append("\"").append(name).append(":")
+						.append(method.getOriginalName()).append("\", ").append(method.getFrameSize())
+						.append(", ").append(method.getLocations().size()).append(", ").append(method.getLocations().isEmpty() ? "nullptr" : "frameLocations")
+						.append(", ").append(method.getExceptionFrames().size()).append(", ").append(method.getExceptionFrames().isEmpty() ? "nullptr" : "exceptionScopes")
+						.append(" };\n");
+
+				builder.append("\tFrameGuard frameRef{ ctx, &frameInfo, ")
+						.append(stackSize > 0 ? "frame" : "nullptr").append(" };\n");
+			}
 
 			if (method.isSynchronized()) {
 				builder.append("\tMonitorGuard monitorGuard{ ctx, ");
@@ -486,7 +614,7 @@ public class BytecodeClass {
 			builder.append("\n");
 
 			// Todo: Macros to check for class initialization before calling
-			if (method.isStatic() || method.isConstructor())
+			if ((method.isStatic() || method.isConstructor()) && needsInitialization())
 				builder.append("\tCLINIT(").append(qualifiedName).append(");\n");
 
 			if (!method.getExceptionFrames().isEmpty()) {
@@ -504,7 +632,7 @@ public class BytecodeClass {
 					builder.append("\tframe[0].o = self;\n");
 				for (int i = 0, j = method.isStatic() ? 0 : 1; i < method.getSignature().getParamTypes().length; i++, j++) {
 					TypeVariants paramType = method.getSignature().getParamTypes()[i].getBasicType();
-					builder.append("\tframe[").append(j).append("].").append(paramType.getStackName()).append(" = param").append(i).append(";\n");
+					builder.append("\t").append(method.getLocalReference(j, paramType)).append(" = param").append(i).append(";\n");
 					if (paramType.isWide())
 						j++;
 				}
@@ -536,7 +664,7 @@ public class BytecodeClass {
 		}
 
 		if (hasAnnotations()) {
-			builder.append("static void initAnnotations(jcontext ctx) {\n");
+			builder.append("static void initAnnotations_").append(qualifiedName).append("(jcontext ctx) {\n");
 			builder.append("\tauto &clazz = class_").append(qualifiedName).append(";\n");
 			builder.append("\tauto fields = (java_lang_reflect_Field **) ((jarray) clazz.fields)->data;\n");
 			builder.append("\tauto methods = (java_lang_reflect_Method **) ((jarray) clazz.methods)->data;\n");
@@ -599,22 +727,51 @@ public class BytecodeClass {
 		if (!vtable.isEmpty()) {
 			builder.append("void *vtable_").append(qualifiedName).append("[] {\n");
 			for (BytecodeMethod method : vtable) {
-				boolean isNull = method.isAbstract() && !method.getOwner().isAnnotationImpl();
+				boolean isNull = method.isAbstract() && !method.getOwner().isAnnotationImpl() || method.isTrimmed();
 				builder.append("\t(void *) ").append(isNull ? "nullptr" : Utils.sanitizeMethod(method.getOwner().qualifiedName, method.getSignature(), false)).append(",\n");
 			}
 			builder.append("};\n\n");
 		}
 
 		if (!vtable.isEmpty()) {
-			builder.append("static VtableEntry vtableEntries[] {\n");
+			builder.append("static VtableEntry vtableEntries_").append(qualifiedName).append("[] {\n");
 			for (BytecodeMethod method : vtable)
 				builder.append("\t{ \"").append(method.getOriginalName()).append("\", \"").append(method.getDesc()).append("\" },\n");
 			builder.append("};\n\n");
 		}
 
+		// Interface method tables, in interface method metadata order
+		if (itable != null) {
+			for (BytecodeClass interfaceClass : itable) {
+				if (interfaceClass == null)
+					continue;
+				builder.append("static void *itable_").append(qualifiedName).append("_").append(interfaceClass.qualifiedName).append("[] {\n");
+				for (BytecodeMethod interfaceMethod : interfaceClass.methods) {
+					BytecodeMethod method = null;
+					if (!interfaceMethod.isStatic())
+						for (BytecodeMethod vtableMethod : vtable)
+							if (vtableMethod.getSignature().equals(interfaceMethod.getSignature())) {
+								method = vtableMethod;
+								break;
+							}
+					boolean isNull = method == null || method.isAbstract() && !method.getOwner().isAnnotationImpl() || method.isTrimmed();
+					builder.append("\t(void *) ").append(isNull ? "nullptr" : Utils.sanitizeMethod(method.getOwner().qualifiedName, method.getSignature(), false)).append(",\n");
+				}
+				builder.append("};\n\n");
+			}
+
+			builder.append("static ItableEntry itable_").append(qualifiedName).append("[] {\n");
+			for (BytecodeClass interfaceClass : itable)
+				if (interfaceClass == null)
+					builder.append("\t{ nullptr, nullptr },\n");
+				else
+					builder.append("\t{ &class_").append(interfaceClass.qualifiedName).append(", itable_").append(qualifiedName).append("_").append(interfaceClass.qualifiedName).append(" },\n");
+			builder.append("};\n\n");
+		}
+
 		// Interfaces list
 		if (interfaces.length > 0) {
-			builder.append("static jclass interfaces").append("[] { ");
+			builder.append("static jclass interfaces_").append(qualifiedName).append("[] { ");
 			for (String interfaceName : interfaces)
 				builder.append("&class_").append(Utils.getQualifiedClassName(interfaceName)).append(", ");
 			builder.append("};\n\n");
@@ -622,7 +779,7 @@ public class BytecodeClass {
 
 		// Inner class list
 		if (!innerClassNames.isEmpty()) {
-			builder.append("static jclass innerClasses").append("[] {\n");
+			builder.append("static jclass innerClasses_").append(qualifiedName).append("[] {\n");
 			for (String innerName : innerClassNames)
 				builder.append("\t&class_").append(Utils.getQualifiedClassName(innerName)).append(",\n");
 			builder.append("};\n\n");
@@ -630,7 +787,7 @@ public class BytecodeClass {
 
 		// Field metadata
 		if (!fields.isEmpty()) {
-			builder.append("static FieldMetadata fields").append("[] {\n");
+			builder.append("static FieldMetadata fields_").append(qualifiedName).append("[] {\n");
 			for (BytecodeField field : fields) {
 				builder.append("\t{ \"").append(field.getOriginalName()).append("\", ").append(field.getType().generateClassFetch());
 				if (field.isStatic())
@@ -644,10 +801,10 @@ public class BytecodeClass {
 
 		// Method metadata
 		if (!methods.isEmpty()) {
-			builder.append("static MethodMetadata methods").append("[] {\n");
+			builder.append("static MethodMetadata methods_").append(qualifiedName).append("[] {\n");
 			for (BytecodeMethod method : methods) {
 				builder.append("\t{ \"").append(method.getOriginalName()).append("\"");
-				if (method.isAbstract())
+				if (method.isAbstract() || method.isTrimmed())
 					builder.append(", 0");
 				else
 					builder.append(", (intptr_t) ").append(method.getName());
@@ -667,25 +824,28 @@ public class BytecodeClass {
 		builder.append("\t\t.size = sizeof(").append(qualifiedName).append("),\n");
 		builder.append("\t\t.classVtable = (intptr_t) vtable_").append(qualifiedName).append(",\n");
 		builder.append("\t\t.staticInitializer = (intptr_t) clinit_").append(qualifiedName).append(",\n");
-		builder.append("\t\t.annotationInitializer = (intptr_t) ").append(hasAnnotations() ? "initAnnotations" : "nullptr").append(",\n");
+		builder.append("\t\t.annotationInitializer = (intptr_t) ").append(hasAnnotations() ? "initAnnotations_" + qualifiedName : "nullptr").append(",\n");
 		builder.append("\t\t.markFunction = (intptr_t) mark_").append(qualifiedName).append(",\n");
 		builder.append("\t\t.primitive = false,\n");
 		builder.append("\t\t.arrayDimensions = 0,\n");
 		builder.append("\t\t.componentClass = (intptr_t) nullptr,\n");
 		builder.append("\t\t.outerClass = (intptr_t) ").append(outerClassName == null ? "nullptr" : "&class_" + Utils.getQualifiedClassName(outerClassName)).append(",\n");
 		builder.append("\t\t.innerClassCount = ").append(innerClassNames.size()).append(",\n");
-		builder.append("\t\t.nativeInnerClasses = (intptr_t) ").append(innerClassNames.isEmpty() ? "nullptr" : "innerClasses").append(",\n");
+		builder.append("\t\t.nativeInnerClasses = (intptr_t) ").append(innerClassNames.isEmpty() ? "nullptr" : "innerClasses_" + qualifiedName).append(",\n");
 		builder.append("\t\t.access = ").append(access).append(",\n");
 		builder.append("\t\t.interfaceCount = ").append(interfaces.length).append(",\n");
-		builder.append("\t\t.nativeInterfaces = (intptr_t) ").append(interfaces.length == 0 ? "nullptr" : "interfaces").append(",\n");
+		builder.append("\t\t.nativeInterfaces = (intptr_t) ").append(interfaces.length == 0 ? "nullptr" : "interfaces_" + qualifiedName).append(",\n");
 		builder.append("\t\t.fieldCount = ").append(fields.size()).append(",\n");
-		builder.append("\t\t.nativeFields = (intptr_t) ").append(fields.isEmpty() ? "nullptr" : "fields").append(",\n");
+		builder.append("\t\t.nativeFields = (intptr_t) ").append(fields.isEmpty() ? "nullptr" : "fields_" + qualifiedName).append(",\n");
 		builder.append("\t\t.methodCount = ").append(methods.size()).append(",\n");
-		builder.append("\t\t.nativeMethods = (intptr_t) ").append(methods.isEmpty() ? "nullptr" : "methods").append(",\n");
+		builder.append("\t\t.nativeMethods = (intptr_t) ").append(methods.isEmpty() ? "nullptr" : "methods_" + qualifiedName).append(",\n");
 		builder.append("\t\t.vtableSize = ").append(vtable.size()).append(",\n");
-		builder.append("\t\t.vtableEntries = (intptr_t) ").append(vtable.isEmpty() ? "nullptr" : "vtableEntries").append(",\n");
+		builder.append("\t\t.vtableEntries = (intptr_t) ").append(vtable.isEmpty() ? "nullptr" : "vtableEntries_" + qualifiedName).append(",\n");
 		builder.append("\t\t.anonymous = ").append(isAnonymous()).append(",\n");
 		builder.append("\t\t.synthetic = ").append(isSynthetic()).append(",\n");
+		builder.append("\t\t.itableIndex = ").append(itableIndex).append(",\n");
+		builder.append("\t\t.itableSize = ").append(itable == null ? 0 : itable.length).append(",\n");
+		builder.append("\t\t.itable = (intptr_t) ").append(itable == null ? "nullptr" : "itable_" + qualifiedName).append(",\n");
 		builder.append("};\n");
 		builder.append("static bool registered_").append(qualifiedName).append(" = registerClass(&class_").append(qualifiedName).append(");\n\n");
 
@@ -715,14 +875,13 @@ public class BytecodeClass {
 
 	private void appendStaticInitializerCode(StringBuilder builder) {
 		// Todo: Some form of locking to prevent race condition, not sure about partial initialization while avoiding recursive stack overflows
-		builder.append("\tstatic bool initialized;\n");
-		builder.append("\tif (initialized) return;\n");
-		builder.append("\tinitialized = true;\n");
-		if (superClass != null)
+		builder.append("\tif (initialized_").append(qualifiedName).append(") return;\n");
+		builder.append("\tinitialized_").append(qualifiedName).append(" = true;\n");
+		if (superClass != null && superClass.needsInitialization())
 			builder.append("\tCLINIT(").append(superClass.qualifiedName).append(");\n");
 		// Todo: Try-catch to rethrow with initializer exception?
 		for (BytecodeField field: fields)
-			if (field.isStatic() && field.isFinal() && field.getInitialValue() != null)
+			if (field.isStatic() && field.isFinal() && field.getInitialValue() instanceof String)
 				builder.append("\t").append(field.getName()).append(" = ").append(Utils.getObjectValue(field.getInitialValue())).append(";\n");
 	}
 
@@ -810,6 +969,13 @@ public class BytecodeClass {
 		return qualifiedName;
 	}
 
+	/**
+	 * Whether the parent class or an interface couldn't be found, in which case the hierarchy isn't processed
+	 */
+	public boolean hasHierarchyError() {
+		return hierarchyError;
+	}
+
 	public ArrayList<BytecodeMethod> getVtable() {
 		return vtable;
 	}
@@ -825,6 +991,28 @@ public class BytecodeClass {
 	public BytecodeClass[] getInterfaceClasses() {
 		return interfaceClasses;
 	}
+
+	/**
+	 * The itable slot assigned to this interface
+	 */
+	public int getItableIndex() {
+		return itableIndex;
+	}
+
+	public void setItableIndex(int itableIndex) {
+		this.itableIndex = itableIndex;
+	}
+
+	/**
+	 * The interfaces implemented by this class, indexed by itable slot with null for unused slots
+	 */
+	public BytecodeClass[] getItable() {
+		return itable;
+	}
+
+	public void setItable(BytecodeClass[] itable) {
+		this.itable = itable;
+	}
 	
 	public void markJni() {
 		access |= Opcodes.ACC_NATIVE;
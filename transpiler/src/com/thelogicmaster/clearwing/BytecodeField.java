@@ -2,12 +2,13 @@ package com.thelogicmaster.clearwing;
 
 import org.objectweb.asm.Opcodes;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
-public class BytecodeField {
+public class BytecodeField implements Serializable {
 
 	private final BytecodeClass owner;
 	private final String name;
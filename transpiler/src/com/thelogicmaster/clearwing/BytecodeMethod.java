@@ -1,16 +1,18 @@
 package com.thelogicmaster.clearwing;
 
 import com.thelogicmaster.clearwing.bytecode.Instruction;
+import com.thelogicmaster.clearwing.bytecode.JumpingInstruction;
 import com.thelogicmaster.clearwing.bytecode.LabelInstruction;
 import com.thelogicmaster.clearwing.bytecode.LineNumberInstruction;
 import com.thelogicmaster.clearwing.bytecode.TryInstruction;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.function.Function;
 
-public class BytecodeMethod {
+public class BytecodeMethod implements Serializable {
 
 	private final BytecodeClass clazz;
 	private final String name;
@@ -29,8 +31,12 @@ public class BytecodeMethod {
 	private int labelCount;
 	private final ArrayList<Location> locations = new ArrayList<>();
 	private final ArrayList<ExceptionFrame> exceptionFrames = new ArrayList<>();
+	private final ArrayList<BytecodeClass> stackObjects = new ArrayList<>();
+	private Map<Integer, TypeVariants> typedLocals = Collections.emptyMap();
 	private boolean intrinsic;
 	private boolean generated;
+	private boolean trimmed;
+	private boolean frameless;
 
 	public BytecodeMethod (BytecodeClass clazz, String name, int access, String desc, String signature, String[] exceptions) {
 		this.clazz = clazz;
@@ -71,6 +77,16 @@ public class BytecodeMethod {
 		return !isNative() && !isAbstract();
 	}
 
+	/**
+	 * Whether the method does nothing but return
+	 */
+	public boolean isTrivial() {
+		for (Instruction instruction: instructions)
+			if (!(instruction instanceof LabelInstruction || instruction instanceof LineNumberInstruction || instruction.getOpcode() == Opcodes.RETURN))
+				return false;
+		return true;
+	}
+
 	public boolean isAnnotationType() {
 		return originalName.equals("annotationType") && clazz.isAnnotation();
 	}
@@ -79,8 +95,9 @@ public class BytecodeMethod {
 	 * Collects and returns all class dependencies (Sanitized class names)
 	 */
 	public void collectDependencies(Set<String> dependencies, Map<String, BytecodeClass> classMap) {
-		for (Instruction instruction: instructions)
-			instruction.collectDependencies(dependencies);
+		if (!trimmed)
+			for (Instruction instruction: instructions)
+				instruction.collectDependencies(dependencies);
 		if (methodType.getReturnType().getComponentType() == TypeVariants.OBJECT)
 			dependencies.add(methodType.getReturnType().getRegistryTypeName());
 		for (JavaType type: methodType.getParamTypes())
@@ -90,6 +107,16 @@ public class BytecodeMethod {
 			annotation.collectDependencies(dependencies, classMap);
 	}
 
+	/**
+	 * Collects classes whose struct layout is accessed by instructions (Sanitized class names)
+	 */
+	public void collectLayoutDependencies(Set<String> dependencies) {
+		if (trimmed)
+			return;
+		for (Instruction instruction: instructions)
+			instruction.collectLayoutDependencies(dependencies);
+	}
+
 	public void processHierarchy(HashMap<String, BytecodeClass> classMap) {
 		for (Instruction instruction: instructions)
 			instruction.processHierarchy(classMap);
@@ -102,6 +129,91 @@ public class BytecodeMethod {
 		for (Instruction instruction: instructions)
 			instruction.resolveSymbols();
 	}
+
+	public void devirtualize(ClassHierarchy hierarchy) {
+		for (Instruction instruction: instructions)
+			instruction.devirtualize(hierarchy);
+	}
+
+	/**
+	 * Omit class initialization checks for classes that have nothing to initialize or are already initialized on every
+	 * path to the check, which includes the method's own class and its parents for static methods and constructors
+	 * since those check on entry. Exception handlers only assume what is known on entry.
+	 */
+	public void elideInitializationChecks() {
+		if (!hasBody() || intrinsic || trimmed || instructions.isEmpty())
+			return;
+
+		HashSet<BytecodeClass> entry = new HashSet<>();
+		if (isStatic() || isConstructor() || isStaticInitializer())
+			addInitialized(entry, clazz);
+
+		HashMap<Integer, Integer> labels = new HashMap<>();
+		for (int i = 0; i < instructions.size(); i++)
+			if (instructions.get(i) instanceof LabelInstruction label)
+				labels.put(label.getLabel(), i);
+
+		// Find the classes initialized on every path to each instruction, where null means not reached yet
+		ArrayList<HashSet<BytecodeClass>> states = new ArrayList<>(Collections.nCopies(instructions.size(), null));
+		ArrayDeque<Integer> pending = new ArrayDeque<>();
+		states.set(0, entry);
+		pending.add(0);
+		while (!pending.isEmpty()) {
+			int index = pending.poll();
+			Instruction instruction = instructions.get(index);
+			HashSet<BytecodeClass> state = new HashSet<>(states.get(index));
+			applyInitialization(instruction, state, false);
+
+			Instruction last = instruction instanceof InstructionGroup group ? group.getInstructions().get(group.getInstructions().size() - 1) : instruction;
+			if (last instanceof JumpingInstruction jumping)
+				for (int label: jumping.getJumpLabels())
+					mergeInitialized(states, pending, labels.get(label), last instanceof TryInstruction ? entry : state);
+			if (last.getOutputs() != null && index + 1 < instructions.size())
+				mergeInitialized(states, pending, index + 1, state);
+		}
+
+		for (int i = 0; i < instructions.size(); i++)
+			if (states.get(i) != null)
+				applyInitialization(instructions.get(i), new HashSet<>(states.get(i)), true);
+	}
+
+	private static void applyInitialization(Instruction instruction, HashSet<BytecodeClass> initialized, boolean elide) {
+		if (instruction instanceof InstructionGroup group) {
+			for (Instruction grouped: group.getInstructions())
+				applyInitialization(grouped, initialized, elide);
+			return;
+		}
+		BytecodeClass initializedClass = instruction.getInitializedClass();
+		if (initializedClass == null)
+			return;
+		if (elide && (initialized.contains(initializedClass) || !initializedClass.needsInitialization()))
+			instruction.elideInitialization();
+		// Inlined instructions are evaluated later by their consumer, so they don't initialize anything for the instructions in between
+		if (!instruction.inlineable())
+			addInitialized(initialized, initializedClass);
+	}
+
+	private static void addInitialized(HashSet<BytecodeClass> initialized, BytecodeClass clazz) {
+		for (; clazz != null; clazz = clazz.getSuperClass())
+			initialized.add(clazz);
+	}
+
+	private static void mergeInitialized(ArrayList<HashSet<BytecodeClass>> states, ArrayDeque<Integer> pending, int index, HashSet<BytecodeClass> initialized) {
+		HashSet<BytecodeClass> state = states.get(index);
+		if (state == null) {
+			states.set(index, new HashSet<>(initialized));
+			pending.add(index);
+		} else if (state.retainAll(initialized))
+			pending.add(index);
+	}
+
+	/**
+	 * Mark the methods that the instructions can call as reachable
+	 */
+	public void markReachable(MethodReachability reachability) {
+		for (Instruction instruction: instructions)
+			instruction.markReachable(reachability);
+	}
 	
 	public int getLabelId(Label label) {
 		if (label == null)
@@ -137,6 +249,28 @@ public class BytecodeMethod {
 		return generated;
 	}
 
+	/**
+	 * Mark this method as unreachable so that it will not generate the function body
+	 */
+	public void markTrimmed() {
+		trimmed = true;
+	}
+
+	public boolean isTrimmed() {
+		return trimmed;
+	}
+
+	/**
+	 * Mark this method as not needing a frame on the shadow stack, so it is generated as a plain function
+	 */
+	public void markFrameless() {
+		frameless = true;
+	}
+
+	public boolean isFrameless() {
+		return frameless;
+	}
+
 	/**
 	 * Finds the first instruction of a given type and returns the index, throwing an exception if one isn't found
 	 */
@@ -251,6 +385,49 @@ public class BytecodeMethod {
 		return localCount;
 	}
 
+	/**
+	 * Reserve frame space for an object allocated on the stack, returning its index
+	 */
+	public int addStackObject(BytecodeClass clazz) {
+		stackObjects.add(clazz);
+		return stackObjects.size() - 1;
+	}
+
+	/**
+	 * Get the frame offset expression of a stack allocated object, which are placed after the locals and operand stack
+	 */
+	public String getStackObjectOffset(int index) {
+		StringBuilder builder = new StringBuilder().append(stackSize + localCount);
+		for (int i = 0; i < index; i++)
+			builder.append(" + OBJECT_WORDS(").append(stackObjects.get(i).getQualifiedName()).append(")");
+		return builder.toString();
+	}
+
+	/**
+	 * Set the primitive locals that are stored in typed C++ variables instead of the frame, by slot
+	 */
+	public void setTypedLocals(Map<Integer, TypeVariants> typedLocals) {
+		this.typedLocals = typedLocals;
+	}
+
+	public Map<Integer, TypeVariants> getTypedLocals() {
+		return typedLocals;
+	}
+
+	/**
+	 * Get the C++ expression for a primitive local, whether it is a typed variable or a frame slot
+	 */
+	public String getLocalReference(int local, TypeVariants type) {
+		return typedLocals.containsKey(local) ? "local" + local : "frame[" + local + "]." + type.getStackName();
+	}
+
+	/**
+	 * Get the frame size expression, including stack allocated objects
+	 */
+	public String getFrameSize() {
+		return getStackObjectOffset(stackObjects.size());
+	}
+
 	public void addTryCatch(Label start, Label end, Label handler, String type) {
 		exceptionFrames.add(new ExceptionFrame(type, getLabelId(start), getLabelId(end), getLabelId(handler), exceptionFrames.size()));
 	}
@@ -290,7 +467,7 @@ public class BytecodeMethod {
 		return ((BytecodeMethod) obj).methodType.equals(methodType);
 	}
 
-	public static class ExceptionFrame {
+	public static class ExceptionFrame implements Serializable {
 		private final String type;
 		private final String qualifiedType;
 		private final int startLabel;
@@ -355,7 +532,7 @@ public class BytecodeMethod {
 		}
 	}
 	
-	public static class Location {
+	public static class Location implements Serializable {
 		private final int line;
 		private final int index;
 
@@ -0,0 +1,106 @@
+package com.thelogicmaster.clearwing;
+
+import java.util.*;
+
+/**
+ * Closed-world class hierarchy analysis over the classes being transpiled, used for devirtualizing call sites
+ */
+public class ClassHierarchy {
+
+	private final HashMap<BytecodeClass, ArrayList<BytecodeClass>> implementations = new HashMap<>();
+
+	public ClassHierarchy (Collection<BytecodeClass> classes) {
+		for (BytecodeClass clazz: classes)
+			if (clazz.isInstantiatable() || clazz.isAnnotationImpl())
+				addImplementation(clazz, clazz, new HashSet<>());
+	}
+
+	private void addImplementation(BytecodeClass type, BytecodeClass clazz, HashSet<BytecodeClass> visited) {
+		if (type == null || !visited.add(type))
+			return;
+		implementations.computeIfAbsent(type, key -> new ArrayList<>()).add(clazz);
+		addImplementation(type.getSuperClass(), clazz, visited);
+		if (type.getInterfaceClasses() != null)
+			for (BytecodeClass interfaceClass: type.getInterfaceClasses())
+				addImplementation(interfaceClass, clazz, visited);
+	}
+
+	/**
+	 * Assign itable slots to interfaces with instance methods such that no two interfaces implemented by the same class
+	 * share a slot, then build the itables of instantiatable classes. Interfaces are colored greedily in name order to
+	 * keep the output stable between runs.
+	 */
+	public void buildItables() {
+		TreeMap<String, BytecodeClass> interfaces = new TreeMap<>();
+		HashMap<BytecodeClass, ArrayList<BytecodeClass>> classInterfaces = new HashMap<>();
+		for (Map.Entry<BytecodeClass, ArrayList<BytecodeClass>> entry: implementations.entrySet()) {
+			BytecodeClass type = entry.getKey();
+			if (!type.isInterface() || type.getMethods().stream().allMatch(BytecodeMethod::isStatic))
+				continue;
+			interfaces.put(type.getName(), type);
+			for (BytecodeClass clazz: entry.getValue())
+				classInterfaces.computeIfAbsent(clazz, key -> new ArrayList<>()).add(type);
+		}
+
+		HashMap<BytecodeClass, Integer> slots = new HashMap<>();
+		for (BytecodeClass interfaceClass: interfaces.values()) {
+			BitSet used = new BitSet();
+			for (BytecodeClass clazz: implementations.get(interfaceClass))
+				for (BytecodeClass other: classInterfaces.get(clazz)) {
+					Integer slot = slots.get(other);
+					if (slot != null)
+						used.set(slot);
+				}
+			int slot = used.nextClearBit(0);
+			slots.put(interfaceClass, slot);
+			interfaceClass.setItableIndex(slot);
+		}
+
+		for (Map.Entry<BytecodeClass, ArrayList<BytecodeClass>> entry: classInterfaces.entrySet()) {
+			int size = 0;
+			for (BytecodeClass interfaceClass: entry.getValue())
+				size = Math.max(size, interfaceClass.getItableIndex() + 1);
+			BytecodeClass[] itable = new BytecodeClass[size];
+			for (BytecodeClass interfaceClass: entry.getValue())
+				itable[interfaceClass.getItableIndex()] = interfaceClass;
+			entry.getKey().setItable(itable);
+		}
+	}
+
+	/**
+	 * Get the instantiatable classes that are assignable to the given type, including itself
+	 */
+	public List<BytecodeClass> getImplementations(BytecodeClass type) {
+		return implementations.getOrDefault(type, new ArrayList<>());
+	}
+
+	/**
+	 * Whether instances of the type can be created at runtime without a corresponding transpiled class
+	 */
+	public boolean isOpen(BytecodeClass type) {
+		// Reflection proxies are runtime subclasses of Proxy implementing arbitrary interfaces
+		return type.isInterface() || "java/lang/reflect/Proxy".equals(type.getName());
+	}
+
+	/**
+	 * Find the only method implementation that a virtual call on the given type can dispatch to, or null if there is
+	 * not exactly one
+	 */
+	public BytecodeMethod findImplementation(BytecodeClass type, MethodSignature signature) {
+		BytecodeMethod target = null;
+		for (BytecodeClass clazz: getImplementations(type)) {
+			BytecodeMethod implementation = null;
+			for (BytecodeMethod method: clazz.getVtable())
+				if (method.getSignature().equals(signature)) {
+					implementation = method;
+					break;
+				}
+			if (implementation == null || implementation.isAbstract() && !implementation.getOwner().isAnnotationImpl())
+				return null;
+			if (target != null && target != implementation)
+				return null;
+			target = implementation;
+		}
+		return target;
+	}
+}
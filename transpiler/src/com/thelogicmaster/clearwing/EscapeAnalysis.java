@@ -0,0 +1,326 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+
+/**
+ * Intraprocedural escape analysis for placing objects that never outlive the method allocating them in its stack frame.
+ * An allocation qualifies when the object is only accessed through its fields, compared, stored in locals, and used as
+ * the receiver of methods that don't let it escape. Constructors and other methods called on the object are summarized
+ * for the exact allocated class, so calls are resolved the same way dispatch would. Stack objects live in extra frame
+ * words past the operand stack, where the GC scans their reference fields along with the rest of the frame.
+ */
+public class EscapeAnalysis {
+
+	private static final int MAX_FIELDS = 16;
+	private static final int MAX_OBJECTS = 8;
+
+	private enum Escape {
+		NONE, // Only used locally
+		RETURNED, // Only escapes by being returned
+		ESCAPES
+	}
+
+	private final HashMap<BytecodeClass, IdentityHashMap<BytecodeMethod, Escape>> summaries = new HashMap<>();
+
+	/**
+	 * Allocate the objects created by a method that don't escape it on the stack, returning the count
+	 */
+	public int allocateOnStack(BytecodeMethod method) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated())
+			return 0;
+		MethodGraph graph = null;
+		int allocated = 0;
+		for (Instruction instruction: flatten(method.getInstructions())) {
+			if (allocated >= MAX_OBJECTS)
+				break;
+			if (!(instruction instanceof TypeInstruction site) || site.getOpcode() != Opcodes.NEW || site.getInputs() == null || !canAllocateOnStack(site.getTypeClass()))
+				continue;
+			if (graph == null)
+				graph = new MethodGraph(method);
+			Tracker tracker = new Tracker(graph, site.getTypeClass(), site);
+			tracker.addEntry(site.getOutputs().get(0));
+			if (tracker.run() != Escape.NONE || tracker.constructor == null || !isReinitializationSafe(graph, tracker))
+				continue;
+			site.allocateOnStack();
+			tracker.constructor.initializeStackObject(site.getTypeClass());
+			allocated++;
+		}
+		return allocated;
+	}
+
+	/**
+	 * Whether instances of a class are small and plain enough to live in a stack frame
+	 */
+	private static boolean canAllocateOnStack(BytecodeClass clazz) {
+		if (clazz == null || clazz.isAbstract() || clazz.isInterface() || clazz.hasHierarchyError())
+			return false;
+		int fields = 0;
+		for (BytecodeClass c = clazz; c != null; c = c.getSuperClass()) {
+			if (c.hasFinalizer())
+				return false;
+			for (BytecodeField field: c.getFields())
+				if (!field.isStatic())
+					fields++;
+		}
+		return fields <= MAX_FIELDS;
+	}
+
+	/**
+	 * Whether reusing the frame storage each time the constructor runs can't clobber a previous instance that is still
+	 * in use, such as when allocating in a loop. No stack value or local that may hold an instance can be read after
+	 * the constructor call without being reassigned first.
+	 */
+	private static boolean isReinitializationSafe(MethodGraph graph, Tracker tracker) {
+		int constructor = graph.indexOf(tracker.constructor);
+		StackEntry allocation = tracker.site.getOutputs().get(0);
+		for (StackEntry entry: tracker.visited) {
+			if (entry.getOriginal() == allocation)
+				continue;
+			int source = graph.indexOf(entry.getSource());
+			for (Instruction consumer: entry.getConsumers())
+				if (source < constructor && constructor < graph.indexOf(consumer))
+					return false;
+		}
+		BitSet live = graph.getLiveOut(constructor);
+		return !live.intersects(tracker.locals);
+	}
+
+	/**
+	 * Find how the receiver of a method escapes when called on an instance of the given class
+	 */
+	private Escape summarize(BytecodeMethod method, BytecodeClass type) {
+		if (method == null)
+			return Escape.ESCAPES;
+		if (method == BytecodeClass.OBJECT_METHODS[0])
+			return Escape.NONE;
+		if (!method.hasBody() || method.isStatic() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated() || method.isSynchronized())
+			return Escape.ESCAPES;
+		IdentityHashMap<BytecodeMethod, Escape> classSummaries = summaries.computeIfAbsent(type, key -> new IdentityHashMap<>());
+		Escape summary = classSummaries.get(method);
+		if (summary != null)
+			return summary;
+		// Recursive calls conservatively escape
+		classSummaries.put(method, Escape.ESCAPES);
+		Tracker tracker = new Tracker(new MethodGraph(method), type, null);
+		tracker.addLocal(0);
+		summary = tracker.run();
+		classSummaries.put(method, summary);
+		return summary;
+	}
+
+	private static List<Instruction> flatten(List<Instruction> instructions) {
+		ArrayList<Instruction> flattened = new ArrayList<>();
+		for (Instruction instruction: instructions)
+			if (instruction instanceof InstructionGroup group)
+				flattened.addAll(group.getInstructions());
+			else
+				flattened.add(instruction);
+		return flattened;
+	}
+
+	/**
+	 * Follows the stack values and locals that may hold an object through a method, where the site is null when
+	 * summarizing a method for its receiver
+	 */
+	private class Tracker {
+		private final MethodGraph graph;
+		private final BytecodeClass type;
+		private final TypeInstruction site;
+		private final Set<StackEntry> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final ArrayDeque<StackEntry> pending = new ArrayDeque<>();
+		private final BitSet locals = new BitSet();
+		private MethodInstruction constructor;
+		private boolean returned;
+
+		private Tracker(MethodGraph graph, BytecodeClass type, TypeInstruction site) {
+			this.graph = graph;
+			this.type = type;
+			this.site = site;
+		}
+
+		private void addEntry(StackEntry entry) {
+			if (visited.add(entry))
+				pending.add(entry);
+		}
+
+		private void addLocal(int local) {
+			if (locals.get(local))
+				return;
+			locals.set(local);
+			for (Instruction instruction: graph.instructions)
+				if (instruction.getOpcode() == Opcodes.ALOAD && instruction.getInputs() != null && ((VariableInstruction) instruction).getLocal() == local)
+					addEntry(instruction.getOutputs().get(0));
+		}
+
+		private Escape run() {
+			while (!pending.isEmpty()) {
+				StackEntry entry = pending.poll();
+				// Stack values that cross a branch don't have all of their consumers linked, so only follow them within a block
+				if (entry.getConsumers().isEmpty())
+					return Escape.ESCAPES;
+				int source = graph.indexOf(entry.getSource());
+				for (Instruction consumer: entry.getConsumers())
+					if (!graph.isSameBlock(source, graph.indexOf(consumer)) || !follow(entry, consumer))
+						return Escape.ESCAPES;
+			}
+			return returned ? Escape.RETURNED : Escape.NONE;
+		}
+
+		/**
+		 * Follow a use of the object, returning false if it escapes
+		 */
+		private boolean follow(StackEntry entry, Instruction consumer) {
+			int input = 0;
+			while (consumer.getInputs().get(input) != entry)
+				input++;
+			if (consumer.isRoutingInstruction()) {
+				for (StackEntry output: consumer.getOutputs())
+					if (output.getOriginal() == entry.getOriginal())
+						addEntry(output);
+				return true;
+			}
+			switch (consumer.getOpcode()) {
+				case Opcodes.ASTORE -> addLocal(((VariableInstruction) consumer).getLocal());
+				case Opcodes.GETFIELD, Opcodes.INSTANCEOF, Opcodes.IFNULL, Opcodes.IFNONNULL, Opcodes.IF_ACMPEQ, Opcodes.IF_ACMPNE -> {}
+				case Opcodes.PUTFIELD -> {
+					return input == 0;
+				}
+				case Opcodes.CHECKCAST -> addEntry(consumer.getOutputs().get(0));
+				case Opcodes.ARETURN -> {
+					returned = true;
+					return site == null;
+				}
+				case Opcodes.INVOKEVIRTUAL, Opcodes.INVOKEINTERFACE, Opcodes.INVOKESPECIAL -> {
+					if (input != 0)
+						return false;
+					MethodInstruction call = (MethodInstruction) consumer;
+					if ("<init>".equals(call.getOriginalName()) && site != null) {
+						if (entry.getOriginal() != site.getOutputs().get(0) || constructor != null)
+							return false;
+						constructor = call;
+					}
+					Escape summary = summarize(resolveTarget(call), type);
+					if (summary == Escape.RETURNED)
+						addEntry(call.getOutputs().get(0));
+					return summary != Escape.ESCAPES;
+				}
+				default -> {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Find the method a call on the object invokes, using the exact class for virtual dispatch
+		 */
+		private BytecodeMethod resolveTarget(MethodInstruction call) {
+			if (call.getOpcode() == Opcodes.INVOKESPECIAL)
+				return call.getResolvedMethod();
+			for (BytecodeMethod method: type.getVtable())
+				if (method.getSignature().equals(call.getSignature()))
+					return method;
+			return null;
+		}
+	}
+
+	/**
+	 * The flattened control flow graph of a method, with local variable liveness computed on demand
+	 */
+	private static class MethodGraph {
+		private final List<Instruction> instructions;
+		private final IdentityHashMap<Instruction, Integer> indices = new IdentityHashMap<>();
+		private final int[] blocks;
+		private final HashMap<Integer, Integer> labels = new HashMap<>();
+		private final ArrayList<int[]> handlers = new ArrayList<>();
+		private BitSet[] liveIn;
+
+		private MethodGraph(BytecodeMethod method) {
+			instructions = flatten(method.getInstructions());
+			blocks = new int[instructions.size()];
+			int block = 0;
+			for (int i = 0; i < instructions.size(); i++) {
+				Instruction instruction = instructions.get(i);
+				indices.put(instruction, i);
+				if (instruction instanceof LabelInstruction label) {
+					labels.put(label.getLabel(), i);
+					block++;
+				} else if (i > 0 && (instructions.get(i - 1).getOutputs() == null || instructions.get(i - 1) instanceof JumpingInstruction))
+					block++;
+				blocks[i] = block;
+			}
+			for (int i = 0; i < instructions.size(); i++)
+				if (instructions.get(i) instanceof TryInstruction tryInstruction)
+					handlers.add(new int[] { i, indices.get(tryInstruction.getCatchInstruction()), labels.get(tryInstruction.getFrame().getHandlerLabel()) });
+		}
+
+		private int indexOf(Instruction instruction) {
+			Integer index = indices.get(instruction);
+			if (index == null)
+				throw new TranspilerException("Instruction not found in method: " + instruction);
+			return index;
+		}
+
+		private boolean isSameBlock(int source, int consumer) {
+			return source < consumer && blocks[source] == blocks[consumer];
+		}
+
+		private List<Integer> getSuccessors(int index) {
+			ArrayList<Integer> successors = new ArrayList<>();
+			Instruction instruction = instructions.get(index);
+			if (instruction instanceof JumpingInstruction jumping)
+				for (int label: jumping.getJumpLabels())
+					successors.add(labels.get(label));
+			if (instruction.getOutputs() != null && index + 1 < instructions.size())
+				successors.add(index + 1);
+			for (int[] handler: handlers)
+				if (handler[0] < index && index < handler[1])
+					successors.add(handler[2]);
+			return successors;
+		}
+
+		/**
+		 * Get the locals that may be read after an instruction before being assigned
+		 */
+		private BitSet getLiveOut(int index) {
+			if (liveIn == null)
+				computeLiveness();
+			BitSet live = new BitSet();
+			for (int successor: getSuccessors(index))
+				live.or(liveIn[successor]);
+			return live;
+		}
+
+		private void computeLiveness() {
+			ArrayList<List<Integer>> successors = new ArrayList<>();
+			liveIn = new BitSet[instructions.size()];
+			for (int i = 0; i < instructions.size(); i++) {
+				successors.add(getSuccessors(i));
+				liveIn[i] = new BitSet();
+			}
+			boolean changed = true;
+			while (changed) {
+				changed = false;
+				for (int i = instructions.size() - 1; i >= 0; i--) {
+					BitSet live = new BitSet();
+					for (int successor: successors.get(i))
+						live.or(liveIn[successor]);
+					Instruction instruction = instructions.get(i);
+					if (instruction instanceof VariableInstruction variable && variable.getInputs() != null) {
+						if (variable.getOutputs().isEmpty())
+							live.clear(variable.getLocal());
+						else
+							live.set(variable.getLocal());
+					}
+					if (!live.equals(liveIn[i])) {
+						liveIn[i] = live;
+						changed = true;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+
+import java.util.*;
+
+/**
+ * Finds methods that can run without a frame on the shadow stack, so they become plain C++ functions that the C++ compiler
+ * can inline. A frameless method can't throw, allocate, reach a safepoint, or call a method that has a frame, so the GC
+ * never needs to scan its locals and no stack trace or exception handler needs its frame. The only exception is the null
+ * check of the receiver on entry, which throws as if from the call site. Methods are only marked once every method they
+ * call is frameless, so recursive methods keep their frames and can still overflow the stack safely.
+ */
+public class FramelessMethods {
+
+	/**
+	 * Mark the methods that don't need frames, returning the number marked
+	 */
+	public static int markFramelessMethods(Collection<BytecodeClass> classes) {
+		// The Object constructor is implemented by the runtime and does nothing
+		for (BytecodeMethod method: BytecodeClass.OBJECT_METHODS)
+			if (method.isConstructor())
+				method.markFrameless();
+
+		ArrayList<Candidate> candidates = new ArrayList<>();
+		for (BytecodeClass clazz: classes)
+			for (BytecodeMethod method: clazz.getMethods())
+				if (isCandidate(method))
+					candidates.add(new Candidate(method, flatten(method.getInstructions())));
+
+		// Marking a method can only make its callers frameless, so repeat until no more methods are marked
+		int marked = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Iterator<Candidate> iterator = candidates.iterator(); iterator.hasNext();) {
+				Candidate candidate = iterator.next();
+				if (candidate.instructions.stream().anyMatch(Instruction::needsFrame))
+					continue;
+				candidate.method.markFrameless();
+				iterator.remove();
+				marked++;
+				changed = true;
+			}
+		}
+		return marked;
+	}
+
+	private record Candidate(BytecodeMethod method, List<Instruction> instructions) {
+	}
+
+	private static boolean isCandidate(BytecodeMethod method) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated())
+			return false;
+		if (method.isStaticInitializer() || method.isSynchronized() || !method.getExceptionFrames().isEmpty())
+			return false;
+		// Static methods and constructors may need to initialize their class on entry
+		return !(method.isStatic() || method.isConstructor()) || !method.getOwner().needsInitialization();
+	}
+
+	private static List<Instruction> flatten(List<Instruction> instructions) {
+		ArrayList<Instruction> flattened = new ArrayList<>();
+		for (Instruction instruction: instructions)
+			if (instruction instanceof InstructionGroup group)
+				flattened.addAll(group.getInstructions());
+			else
+				flattened.add(instruction);
+		return flattened;
+	}
+}
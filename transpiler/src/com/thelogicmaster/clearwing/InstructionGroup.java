@@ -255,12 +255,30 @@ public class InstructionGroup extends Instruction {
             instruction.resolveSymbols();
     }
 
+    @Override
+    public void devirtualize(ClassHierarchy hierarchy) {
+        for (Instruction instruction: instructions)
+            instruction.devirtualize(hierarchy);
+    }
+
+    @Override
+    public void markReachable(MethodReachability reachability) {
+        for (Instruction instruction: instructions)
+            instruction.markReachable(reachability);
+    }
+
     @Override
     public void collectDependencies(Set<String> dependencies) {
         for (Instruction instruction: instructions)
             instruction.collectDependencies(dependencies);
     }
 
+    @Override
+    public void collectLayoutDependencies(Set<String> dependencies) {
+        for (Instruction instruction: instructions)
+            instruction.collectLayoutDependencies(dependencies);
+    }
+
     public List<Instruction> getInstructions() {
         return instructions;
     }
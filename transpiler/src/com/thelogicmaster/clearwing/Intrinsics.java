@@ -0,0 +1,110 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+
+import java.util.*;
+
+/**
+ * Replaces calls to hot JDK methods with inline C++ expressions, so they compile down to single instructions or compiler
+ * builtins instead of calls through frames. Each intrinsic is an expression where {@code $0} and up are replaced with
+ * the call's arguments, starting with the receiver for instance methods. Instance methods are only included when they
+ * can't be overridden. Inlined calls no longer initialize the class declaring the method, so only methods that don't
+ * depend on their class being initialized are included. Methods marked as intrinsics in the config keep the user's
+ * implementation.
+ */
+public class Intrinsics {
+
+	private static final HashMap<String, Intrinsic> INTRINSICS = new HashMap<>();
+
+	static {
+		add("java/lang/Math", "min", "(II)I", "std::min<jint>($0, $1)");
+		add("java/lang/Math", "min", "(JJ)J", "std::min<jlong>($0, $1)");
+		add("java/lang/Math", "min", "(FF)F", "mathMin<jfloat>($0, $1)");
+		add("java/lang/Math", "min", "(DD)D", "mathMin<jdouble>($0, $1)");
+		add("java/lang/Math", "max", "(II)I", "std::max<jint>($0, $1)");
+		add("java/lang/Math", "max", "(JJ)J", "std::max<jlong>($0, $1)");
+		add("java/lang/Math", "max", "(FF)F", "mathMax<jfloat>($0, $1)");
+		add("java/lang/Math", "max", "(DD)D", "mathMax<jdouble>($0, $1)");
+		add("java/lang/Math", "abs", "(I)I", "mathAbs<jint>($0)");
+		add("java/lang/Math", "abs", "(J)J", "mathAbs<jlong>($0)");
+		add("java/lang/Math", "abs", "(F)F", "std::fabs(jfloat($0))");
+		add("java/lang/Math", "abs", "(D)D", "std::fabs(jdouble($0))");
+		add("java/lang/Math", "sqrt", "(D)D", "std::sqrt(jdouble($0))");
+		add("java/lang/Math", "floor", "(D)D", "std::floor(jdouble($0))");
+
+		add("java/lang/Integer", "bitCount", "(I)I", "jint(std::popcount(uint32_t($0)))");
+		add("java/lang/Integer", "numberOfLeadingZeros", "(I)I", "jint(std::countl_zero(uint32_t($0)))");
+		add("java/lang/Integer", "numberOfTrailingZeros", "(I)I", "jint(std::countr_zero(uint32_t($0)))");
+		add("java/lang/Long", "bitCount", "(J)I", "jint(std::popcount(uint64_t($0)))");
+		add("java/lang/Long", "numberOfLeadingZeros", "(J)I", "jint(std::countl_zero(uint64_t($0)))");
+		add("java/lang/Long", "numberOfTrailingZeros", "(J)I", "jint(std::countr_zero(uint64_t($0)))");
+		add("java/lang/Float", "floatToRawIntBits", "(F)I", "bit_cast<jint>(jfloat($0))");
+		add("java/lang/Double", "doubleToRawLongBits", "(D)J", "bit_cast<jlong>(jdouble($0))");
+
+		add("java/lang/String", "length", "()I", "((java_lang_String *) ($0))->F_count", false, true);
+		add("java/lang/String", "charAt", "(I)C", "ARRAY_ACCESS_NON_NULL(jchar, ((java_lang_String *) ($0))->F_value, $1)", true, true);
+		add("java/lang/Object", "getClass", "()Ljava/lang/Class;", "((jobject) ($0)->clazz)");
+		add("java/lang/System", "arraycopy", "(Ljava/lang/Object;ILjava/lang/Object;II)V", "fastArrayCopy(ctx, $0, $1, $2, $3, $4)", true, false);
+	}
+
+	/**
+	 * An inline C++ expression replacing calls to a method, which may throw exceptions if it checks its arguments, and may
+	 * access the struct layout of the class declaring the method
+	 */
+	public record Intrinsic(String expression, boolean throwing, boolean accessesLayout) {
+
+		/**
+		 * Expand the expression for the given argument expressions, starting with the receiver for instance methods
+		 */
+		public String expand(List<String> args) {
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < expression.length(); i++)
+				if (expression.charAt(i) == '$')
+					builder.append(args.get(expression.charAt(++i) - '0'));
+				else
+					builder.append(expression.charAt(i));
+			return builder.toString();
+		}
+	}
+
+	private static void add(String owner, String name, String desc, String expression) {
+		add(owner, name, desc, expression, false, false);
+	}
+
+	private static void add(String owner, String name, String desc, String expression, boolean throwing, boolean accessesLayout) {
+		INTRINSICS.put(owner + "." + name + desc, new Intrinsic(expression, throwing, accessesLayout));
+	}
+
+	/**
+	 * Get the built-in intrinsic for a method, or null
+	 */
+	public static Intrinsic getIntrinsic(BytecodeMethod method) {
+		return INTRINSICS.get(method.getOwner().getName() + "." + method.getOriginalName() + method.getDesc());
+	}
+
+	/**
+	 * Replace the calls in a method to methods with built-in intrinsics, returning the number of calls replaced
+	 */
+	public static int inlineIntrinsics(BytecodeMethod method) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated())
+			return 0;
+		int inlined = 0;
+		for (Instruction instruction: method.getInstructions())
+			if (instruction instanceof InstructionGroup group) {
+				for (Instruction grouped: group.getInstructions())
+					inlined += inlineIntrinsic(grouped);
+			} else
+				inlined += inlineIntrinsic(instruction);
+		return inlined;
+	}
+
+	private static int inlineIntrinsic(Instruction instruction) {
+		if (!(instruction instanceof MethodInstruction call) || call.getResolvedMethod() == null || call.getResolvedMethod().isIntrinsic())
+			return 0;
+		Intrinsic intrinsic = getIntrinsic(call.getResolvedMethod());
+		if (intrinsic == null)
+			return 0;
+		call.inlineIntrinsic(intrinsic);
+		return 1;
+	}
+}
@@ -1,9 +1,11 @@
 package com.thelogicmaster.clearwing;
 
+import java.io.Serializable;
+
 /**
  * Represents a Java type with object and array info
  */
-public class JavaType {
+public class JavaType implements Serializable {
 
 	private final String desc;
 	private final TypeVariants type;
@@ -0,0 +1,136 @@
+package com.thelogicmaster.clearwing;
+
+import java.util.*;
+
+/**
+ * Closed-world method reachability analysis over the classes being transpiled, used for trimming unused method bodies.
+ * Virtual calls are resolved with class hierarchy analysis, so every implementation of a called method in an
+ * instantiatable class is treated as reachable.
+ */
+public class MethodReachability {
+
+	private final HashMap<String, BytecodeClass> classMap;
+	private final Collection<BytecodeClass> classes;
+	private final ClassHierarchy hierarchy;
+	private final ArrayList<BytecodeClass> instantiatable = new ArrayList<>();
+	private final Set<BytecodeMethod> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final HashMap<BytecodeClass, HashSet<MethodSignature>> virtualCalls = new HashMap<>();
+	private final ArrayDeque<BytecodeMethod> pending = new ArrayDeque<>();
+
+	public MethodReachability (Collection<BytecodeClass> classes, HashMap<String, BytecodeClass> classMap) {
+		this.classes = classes;
+		this.classMap = classMap;
+		hierarchy = new ClassHierarchy(classes);
+		for (BytecodeClass clazz: classes) {
+			if (clazz.isInstantiatable() || clazz.isAnnotationImpl())
+				instantiatable.add(clazz);
+			// JNI bindings and annotation implementations are called from native code
+			if (clazz.usesJni() || clazz.isAnnotation())
+				markClass(clazz);
+			for (BytecodeMethod method: clazz.getMethods())
+				if (method.isStaticInitializer())
+					markMethod(method);
+		}
+	}
+
+	/**
+	 * Mark a method as reachable
+	 */
+	public void markMethod(BytecodeMethod method) {
+		if (reachable.add(method))
+			pending.add(method);
+	}
+
+	/**
+	 * Mark the method with the given signature declared by a class or its nearest parent as reachable
+	 */
+	public void markMethod(String owner, MethodSignature signature) {
+		for (BytecodeClass clazz = classMap.get(owner); clazz != null; clazz = clazz.getSuperClass())
+			for (BytecodeMethod method: clazz.getMethods())
+				if (method.getSignature().equals(signature)) {
+					markMethod(method);
+					return;
+				}
+	}
+
+	/**
+	 * Mark every implementation a virtual call on the given type can dispatch to as reachable, where a null type is
+	 * used for Object and array receivers
+	 */
+	public void markVirtual(BytecodeClass type, MethodSignature signature) {
+		if (!virtualCalls.computeIfAbsent(type, key -> new HashSet<>()).add(signature))
+			return;
+		for (BytecodeClass clazz: type == null ? instantiatable : hierarchy.getImplementations(type))
+			for (BytecodeMethod method: clazz.getVtable())
+				if (method.getSignature().equals(signature)) {
+					markMethod(method);
+					break;
+				}
+	}
+
+	/**
+	 * Mark every implementation a virtual call on the named type can dispatch to as reachable
+	 */
+	public void markVirtual(String owner, MethodSignature signature) {
+		markVirtual(classMap.get(owner), signature);
+	}
+
+	/**
+	 * Mark all methods of a class as reachable
+	 */
+	public void markClass(BytecodeClass clazz) {
+		for (BytecodeMethod method: clazz.getMethods())
+			markMethod(method);
+	}
+
+	/**
+	 * Mark methods referenced by name from hand-written native code as reachable, given the set of identifiers used
+	 * in the native sources. Virtual calls use the `VTABLE_`, `INDEX_`, and `func_` prefixed names, or pass the
+	 * unprefixed name to the invocation macros.
+	 */
+	public void markNativeReferences(Set<String> symbols) {
+		for (BytecodeMethod method: BytecodeClass.OBJECT_METHODS)
+			if (!method.isConstructor() && isVirtualReference(symbols, null, method))
+				markVirtual((BytecodeClass) null, method.getSignature());
+		for (BytecodeClass clazz: classes)
+			for (BytecodeMethod method: clazz.getMethods()) {
+				if (symbols.contains(method.getName()))
+					markMethod(method);
+				if (!method.isStatic() && !method.isConstructor() && !method.isStaticInitializer() && isVirtualReference(symbols, clazz, method))
+					markVirtual(clazz, method.getSignature());
+			}
+	}
+
+	private static boolean isVirtualReference(Set<String> symbols, BytecodeClass clazz, BytecodeMethod method) {
+		String name = method.getName().substring(2);
+		if (symbols.contains("VTABLE_" + name) || symbols.contains("INDEX_" + name) || symbols.contains("func_" + name) || symbols.contains(name))
+			return true;
+		String qualifiedName = clazz == null ? "java_lang_Object" : clazz.getQualifiedName();
+		return symbols.contains(qualifiedName) && symbols.contains(name.substring(qualifiedName.length() + 1));
+	}
+
+	/**
+	 * Find all methods reachable from the marked methods
+	 */
+	public void analyze() {
+		while (!pending.isEmpty())
+			pending.poll().markReachable(this);
+	}
+
+	/**
+	 * Mark the unreachable methods that would otherwise have generated bodies as trimmed, returning the count
+	 */
+	public int trim() {
+		int trimmed = 0;
+		for (BytecodeClass clazz: classes) {
+			if (clazz.hasHierarchyError())
+				continue;
+			for (BytecodeMethod method: clazz.getMethods())
+				if (!reachable.contains(method) && method.hasBody() && !method.isIntrinsic() && !method.isStaticInitializer()) {
+					method.markTrimmed();
+					trimmed++;
+				}
+		}
+		return trimmed;
+	}
+}
@@ -1,8 +1,9 @@
 package com.thelogicmaster.clearwing;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
-public class MethodSignature {
+public class MethodSignature implements Serializable {
 
 	private final String name;
 	private final String desc;
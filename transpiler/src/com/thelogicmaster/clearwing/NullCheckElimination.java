@@ -0,0 +1,185 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.*;
+
+/**
+ * Removes null checks from dereferences of values that can't be null, using a forward dataflow analysis of which object
+ * locals are known to be non-null. The receiver of an instance method is checked on entry, a local becomes non-null once
+ * it has been dereferenced, tested with instanceof, or compared against null, and stays that way until reassigned.
+ * Values from NEW and from string and class constants are never null. At labels, only locals that are non-null on
+ * every incoming path are kept. Exception handlers can be entered from anywhere in their range, so they only keep the
+ * receiver, and only when it is never reassigned.
+ */
+public class NullCheckElimination {
+
+	private final BytecodeMethod method;
+	private final List<Instruction> instructions;
+	private final IdentityHashMap<Instruction, Integer> indices = new IdentityHashMap<>();
+	private final HashMap<Integer, Integer> labels = new HashMap<>();
+	private final BitSet[] states;
+
+	private NullCheckElimination(BytecodeMethod method) {
+		this.method = method;
+		instructions = new ArrayList<>();
+		for (Instruction instruction: method.getInstructions())
+			if (instruction instanceof InstructionGroup group)
+				instructions.addAll(group.getInstructions());
+			else
+				instructions.add(instruction);
+		for (int i = 0; i < instructions.size(); i++) {
+			indices.put(instructions.get(i), i);
+			if (instructions.get(i) instanceof LabelInstruction label)
+				labels.put(label.getLabel(), i);
+		}
+		states = new BitSet[instructions.size()];
+	}
+
+	/**
+	 * Remove the null checks of a method that can't fail, returning the number removed
+	 */
+	public static int eliminateNullChecks(BytecodeMethod method) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated())
+			return 0;
+		return new NullCheckElimination(method).run();
+	}
+
+	private int run() {
+		if (instructions.isEmpty())
+			return 0;
+
+		BitSet entry = new BitSet();
+		if (!method.isStatic())
+			entry.set(0);
+		BitSet handlerEntry = new BitSet();
+		if (!method.isStatic() && instructions.stream().noneMatch(instruction -> isWrite(instruction, 0)))
+			handlerEntry.set(0);
+		states[0] = entry;
+		for (BytecodeMethod.ExceptionFrame frame: method.getExceptionFrames()) {
+			Integer handler = labels.get(frame.getHandlerLabel());
+			if (handler != null)
+				merge(handler, handlerEntry);
+		}
+
+		// States only ever lose locals, so iterating until nothing changes terminates
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < instructions.size(); i++)
+				if (states[i] != null)
+					changed |= propagate(i);
+		}
+
+		int eliminated = 0;
+		for (int i = 0; i < instructions.size(); i++) {
+			Instruction instruction = instructions.get(i);
+			if (states[i] != null && instruction.isNullChecking() && instruction.getInputs() != null && isNonNull(instruction.getInputs().get(0))) {
+				instruction.elideNullCheck();
+				eliminated++;
+			}
+		}
+		return eliminated;
+	}
+
+	/**
+	 * Apply an instruction to its state and merge the results into its successors, returning whether any changed
+	 */
+	private boolean propagate(int index) {
+		Instruction instruction = instructions.get(index);
+		BitSet state = (BitSet) states[index].clone();
+
+		if (instruction.getOpcode() == Opcodes.ASTORE && instruction.getInputs() != null) {
+			int local = ((VariableInstruction) instruction).getLocal();
+			state.set(local, isNonNull(instruction.getInputs().get(0)));
+		}
+		if (instruction.isNullChecking() && instruction.getInputs() != null)
+			markChecked(state, instruction.getInputs().get(0), index);
+
+		boolean changed = false;
+		if (instruction instanceof JumpingInstruction jumping) {
+			BitSet jumpState = state;
+			if (instruction instanceof JumpInstruction && instruction.getInputs() != null && !instruction.getInputs().isEmpty()) {
+				jumpState = (BitSet) state.clone();
+				BitSet nonNullState = getNonNullBranch(instruction) ? jumpState : state;
+				switch (instruction.getOpcode()) {
+					case Opcodes.IFNULL, Opcodes.IFNONNULL -> markChecked(nonNullState, instruction.getInputs().get(0), index);
+					case Opcodes.IFEQ, Opcodes.IFNE -> {
+						Instruction source = instruction.getInputs().get(0).getOriginal().getSource();
+						if (source != null && source.getOpcode() == Opcodes.INSTANCEOF && source.getInputs() != null)
+							markChecked(nonNullState, source.getInputs().get(0), index);
+					}
+				}
+			}
+			for (int label: jumping.getJumpLabels()) {
+				Integer target = labels.get(label);
+				if (target != null)
+					changed |= merge(target, jumpState);
+			}
+		}
+		if (instruction.getOutputs() != null && index + 1 < instructions.size())
+			changed |= merge(index + 1, state);
+		return changed;
+	}
+
+	/**
+	 * Whether a conditional jump is taken when the tested value is non-null, or for instanceof, an instance
+	 */
+	private static boolean getNonNullBranch(Instruction jump) {
+		return jump.getOpcode() == Opcodes.IFNONNULL || jump.getOpcode() == Opcodes.IFNE;
+	}
+
+	private boolean merge(int index, BitSet state) {
+		if (states[index] == null) {
+			states[index] = (BitSet) state.clone();
+			return true;
+		}
+		BitSet merged = (BitSet) states[index].clone();
+		merged.and(state);
+		if (merged.equals(states[index]))
+			return false;
+		states[index] = merged;
+		return true;
+	}
+
+	/**
+	 * Mark the local a value was loaded from as non-null after it has been checked, if it wasn't reassigned in between
+	 */
+	private void markChecked(BitSet state, StackEntry value, int index) {
+		Instruction source = value.getOriginal().getSource();
+		if (source == null || source.getOpcode() != Opcodes.ALOAD || !indices.containsKey(source))
+			return;
+		// Only follow values within straight-line code, where no other path can reassign the local
+		int local = ((VariableInstruction) source).getLocal();
+		for (int i = indices.get(source) + 1; i < index; i++)
+			if (isWrite(instructions.get(i), local) || instructions.get(i) instanceof LabelInstruction)
+				return;
+		state.set(local);
+	}
+
+	/**
+	 * Whether a value is known to never be null
+	 */
+	private boolean isNonNull(StackEntry value) {
+		Instruction source = value.getOriginal().getSource();
+		if (source == null)
+			return false;
+		return switch (source.getOpcode()) {
+			case Opcodes.NEW -> true;
+			case Opcodes.LDC -> ((LoadConstantInstruction) source).getValue() instanceof String
+					|| ((LoadConstantInstruction) source).getValue() instanceof Type;
+			case Opcodes.ALOAD -> {
+				Integer index = indices.get(source);
+				yield index != null && states[index] != null && states[index].get(((VariableInstruction) source).getLocal());
+			}
+			case Opcodes.CHECKCAST -> source.getInputs() != null && isNonNull(source.getInputs().get(0));
+			default -> false;
+		};
+	}
+
+	private static boolean isWrite(Instruction instruction, int local) {
+		return instruction.getOpcode() == Opcodes.ASTORE && ((VariableInstruction) instruction).getLocal() == local;
+	}
+}
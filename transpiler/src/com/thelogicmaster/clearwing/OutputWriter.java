@@ -0,0 +1,64 @@
+package com.thelogicmaster.clearwing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Writes transpiler output files. In incremental mode, files with unchanged contents are left untouched to preserve
+ * their timestamps for the C++ build, and files recorded in the previous run's manifest that are no longer generated
+ * get deleted.
+ */
+public class OutputWriter {
+
+	private static final String MANIFEST = ".clearwing-outputs";
+
+	private final File outputDir;
+	private final boolean incremental;
+	private final TreeSet<String> outputs = new TreeSet<>();
+	private int written;
+	private int skipped;
+
+	public OutputWriter (File outputDir, boolean incremental) {
+		this.outputDir = outputDir;
+		this.incremental = incremental;
+	}
+
+	public void write (File file, String contents) throws IOException {
+		write(file, contents.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public void write (File file, byte[] contents) throws IOException {
+		Path path = file.toPath();
+		outputs.add(outputDir.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath()).normalize().toString().replace('\\', '/'));
+		if (incremental && file.isFile() && file.length() == contents.length && Arrays.equals(Files.readAllBytes(path), contents)) {
+			skipped++;
+			return;
+		}
+		file.getParentFile().mkdirs();
+		Files.write(path, contents);
+		written++;
+	}
+
+	/**
+	 * Deletes stale outputs from the previous run and records the current ones
+	 */
+	public void finish () throws IOException {
+		Path manifest = new File(outputDir, MANIFEST).toPath();
+		int deleted = 0;
+		if (incremental && Files.exists(manifest)) {
+			List<String> previous = Files.readAllLines(manifest);
+			for (String output: previous)
+				if (!output.isEmpty() && !outputs.contains(output) && Files.deleteIfExists(outputDir.toPath().resolve(output)))
+					deleted++;
+		}
+		Files.write(manifest, outputs);
+		if (incremental)
+			System.out.println("Output files: " + written + " written, " + skipped + " unchanged, " + deleted + " deleted");
+	}
+}
@@ -0,0 +1,187 @@
+package com.thelogicmaster.clearwing;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of parsed classes, with one entry per class file named by the hash of its contents. Each entry starts
+ * with a version stamp of the IR format, the transpiler build, and the config options that affect parsing, and entries
+ * with a different stamp are treated as misses and replaced. Entries are only valid until hierarchy processing, so they
+ * get stored straight after parsing.
+ */
+public class ParseCache {
+
+	/**
+	 * Bump when changing the serialized form of the IR in a way the transpiler build stamp wouldn't catch
+	 */
+	private static final int IR_VERSION = 1;
+
+	private final File directory;
+	private final String version;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	public ParseCache (File directory, TranspilerConfig config) {
+		this.directory = directory;
+		version = IR_VERSION + ":" + getTranspilerVersion() + ":" + config.useOptimizations();
+	}
+
+	/**
+	 * Load the classes parsed from a class file, or null if not cached or cached by a different version
+	 */
+	@SuppressWarnings("unchecked")
+	public List<BytecodeClass> load (byte[] classFile) {
+		File file = getFile(classFile);
+		if (file.isFile())
+			try (ObjectInputStream input = new CacheInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				if (version.equals(input.readUTF())) {
+					List<BytecodeClass> classes = (List<BytecodeClass>) input.readObject();
+					hits.incrementAndGet();
+					return classes;
+				}
+			} catch (IOException | ClassNotFoundException | ClassCastException ignored) {
+			}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Store the classes parsed from a class file, replacing any stale entry. Failures only result in a cache miss next time.
+	 */
+	public void store (byte[] classFile, List<BytecodeClass> classes) {
+		File file = getFile(classFile);
+		Path temp = null;
+		try {
+			file.getParentFile().mkdirs();
+			// Write to a temporary file first so that concurrent transpiler runs never see partial entries
+			temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+			try (ObjectOutputStream output = new CacheOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				output.writeUTF(version);
+				output.writeObject(classes);
+			}
+			Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			try {
+				if (temp != null)
+					Files.deleteIfExists(temp);
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	public void printStatistics () {
+		System.out.println("Parse cache: " + hits.get() + " hits, " + misses.get() + " misses");
+	}
+
+	private File getFile (byte[] classFile) {
+		try {
+			StringBuilder builder = new StringBuilder();
+			for (byte b: MessageDigest.getInstance("SHA-256").digest(classFile))
+				builder.append(String.format("%02x", b));
+			return new File(new File(directory, builder.substring(0, 2)), builder.substring(2));
+		} catch (NoSuchAlgorithmException e) {
+			throw new TranspilerException("Failed to hash class file", e);
+		}
+	}
+
+	/**
+	 * Identify the transpiler build by its jar, or by its newest class file when not running from a jar
+	 */
+	private static String getTranspilerVersion () {
+		try {
+			File location = new File(ParseCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (location.isFile())
+				return location.length() + "-" + location.lastModified();
+			try (Stream<Path> stream = Files.walk(location.toPath())) {
+				return Long.toString(stream.mapToLong(path -> path.toFile().lastModified()).max().orElse(0));
+			}
+		} catch (Exception e) {
+			// Without a reliable version, never reuse entries from other runs
+			return UUID.randomUUID().toString();
+		}
+	}
+
+	/**
+	 * ASM objects referenced by the parsed classes aren't serializable, so they are written as placeholders
+	 */
+	private static class CacheOutputStream extends ObjectOutputStream {
+
+		private final IdentityHashMap<Label, LabelPlaceholder> labels = new IdentityHashMap<>();
+
+		public CacheOutputStream (OutputStream output) throws IOException {
+			super(output);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject (Object object) {
+			if (object instanceof Label label)
+				return labels.computeIfAbsent(label, key -> new LabelPlaceholder());
+			if (object instanceof Handle handle)
+				return new HandlePlaceholder(handle);
+			if (object instanceof Type type)
+				return new TypePlaceholder(type);
+			return object;
+		}
+	}
+
+	private static class CacheInputStream extends ObjectInputStream {
+
+		public CacheInputStream (InputStream input) throws IOException {
+			super(input);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject (Object object) {
+			// Placeholders are shared within a stream, so each label placeholder resolves exactly once
+			if (object instanceof LabelPlaceholder)
+				return new Label();
+			if (object instanceof HandlePlaceholder handle)
+				return new Handle(handle.tag, handle.owner, handle.name, handle.desc, handle.isInterface);
+			if (object instanceof TypePlaceholder type)
+				return Type.getType(type.descriptor);
+			return object;
+		}
+	}
+
+	private static class LabelPlaceholder implements Serializable {
+	}
+
+	private static class HandlePlaceholder implements Serializable {
+		private final int tag;
+		private final String owner;
+		private final String name;
+		private final String desc;
+		private final boolean isInterface;
+
+		public HandlePlaceholder (Handle handle) {
+			tag = handle.getTag();
+			owner = handle.getOwner();
+			name = handle.getName();
+			desc = handle.getDesc();
+			isInterface = handle.isInterface();
+		}
+	}
+
+	private static class TypePlaceholder implements Serializable {
+		private final String descriptor;
+
+		public TypePlaceholder (Type type) {
+			descriptor = type.getDescriptor();
+		}
+	}
+}
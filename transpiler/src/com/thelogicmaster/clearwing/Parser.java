@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class Parser extends ClassVisitor {
 
@@ -22,19 +23,40 @@ public class Parser extends ClassVisitor {
         this.config = config;
     }
 
-    public List<BytecodeClass> parse(List<Supplier<InputStream>> sources) throws IOException {
-        classes = new ArrayList<>();
-
+    /**
+     * Parses all class files, in parallel, returning the classes in source order (Generated proxy classes precede their owner).
+     * Classes parsed from a class file are loaded from and stored to the optional cache.
+     */
+    public List<BytecodeClass> parse(List<Supplier<InputStream>> sources, @Nullable ParseCache cache) throws IOException {
+        ArrayList<byte[]> classFiles = new ArrayList<>();
         for (Supplier<InputStream> input: sources)
             try (InputStream inputStream = input.get()) {
-                ClassReader reader = new ClassReader(inputStream);
-                if ("java/lang/Object".equals(reader.getClassName()))
-                    continue;
-                currentClass = new BytecodeClass(reader.getClassName(), reader.getSuperName(), reader.getInterfaces(), reader.getAccess());
-                reader.accept(this, ClassReader.EXPAND_FRAMES);
-                classes.add(currentClass);
+                classFiles.add(inputStream.readAllBytes());
             }
 
+        // Classes don't reference each other until hierarchy processing, so each gets its own parser instance
+        return classFiles.parallelStream()
+                .map(classFile -> {
+                    List<BytecodeClass> classes = cache == null ? null : cache.load(classFile);
+                    if (classes == null) {
+                        classes = new Parser(config).parseClass(classFile);
+                        if (cache != null)
+                            cache.store(classFile, classes);
+                    }
+                    return classes;
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    private List<BytecodeClass> parseClass(byte[] classFile) {
+        classes = new ArrayList<>();
+        ClassReader reader = new ClassReader(classFile);
+        if ("java/lang/Object".equals(reader.getClassName()))
+            return classes;
+        currentClass = new BytecodeClass(reader.getClassName(), reader.getSuperName(), reader.getInterfaces(), reader.getAccess());
+        reader.accept(this, ClassReader.EXPAND_FRAMES);
+        classes.add(currentClass);
         return classes;
     }
 
@@ -110,6 +132,7 @@ public class Parser extends ClassVisitor {
     private class MethodParser extends MethodVisitor {
 
         private final BytecodeMethod method;
+        private final HashMap<Integer, Integer> labelIndices = new HashMap<>();
 
         public MethodParser(BytecodeMethod method) {
             super(Opcodes.ASM6);
@@ -381,11 +404,11 @@ public class Parser extends ClassVisitor {
                     stack.addAll(instruction.getOutputs());
 
                 if (instruction instanceof TryInstruction) {
-                    resolveInstructionIO(method.findLabelInstruction(((TryInstruction) instruction).getFrame().getHandlerLabel()),
+                    resolveInstructionIO(findLabelInstruction(((TryInstruction) instruction).getFrame().getHandlerLabel()),
                             new ArrayList<>(List.of(new StackEntry(new JavaType(TypeVariants.OBJECT), instruction))));
                 } else if (instruction instanceof JumpingInstruction) {
                     for (int label : ((JumpingInstruction) instruction).getJumpLabels())
-                        resolveInstructionIO(method.findLabelInstruction(label), new ArrayList<>(stack));
+                        resolveInstructionIO(findLabelInstruction(label), new ArrayList<>(stack));
                     if (instruction.getOutputs() == null)
                         return;
                 }
@@ -397,6 +420,13 @@ public class Parser extends ClassVisitor {
             }
         }
 
+        private int findLabelInstruction(int label) {
+            Integer index = labelIndices.get(label);
+            if (index == null)
+                throw new TranspilerException("Failed to find label: " + label);
+            return index;
+        }
+
         /**
          * Group optimizable instructions into InstructionGroup objects to convert stack accesses into local variables
          */
@@ -462,6 +492,11 @@ public class Parser extends ClassVisitor {
                         instr -> instr instanceof LabelInstruction && ((LabelInstruction) instr).getLabel() == tryCatch.getFrame().getEndLabel());
                 instructions.add(index + 1, tryCatch.getCatchInstruction());
             }
+
+            // Index labels once no more instructions get inserted before grouping, since searching per jump is quadratic
+            for (int i = 0; i < instructions.size(); i++)
+                if (instructions.get(i) instanceof LabelInstruction label)
+                    labelIndices.put(label.getLabel(), i);
             
             // Create locations
             int[] instructionLocations = new int[instructions.size()];
@@ -472,12 +507,12 @@ public class Parser extends ClassVisitor {
                 if (instruction instanceof TryInstruction tryInstruction) {
                     currentLocation = method.addLocation(currentLine).getIndex();
                     tryInstruction.getFrame().setStartLocation(currentLocation);
-                    int index = method.findLabelInstruction(tryInstruction.getFrame().getStartLabel());
+                    int index = findLabelInstruction(tryInstruction.getFrame().getStartLabel());
                     ((LabelInstruction)instructions.get(index)).setLocation(currentLocation);
                 } else if (instruction instanceof TryInstruction.CatchInstruction catchInstruction) {
                     currentLocation = method.addLocation(currentLine).getIndex();
                     catchInstruction.getTry().getFrame().setEndLocation(currentLocation);
-                    int index = method.findLabelInstruction(catchInstruction.getTry().getFrame().getEndLabel());
+                    int index = findLabelInstruction(catchInstruction.getTry().getFrame().getEndLabel());
                     ((LabelInstruction)instructions.get(index)).setLocation(currentLocation);
                 } else if (instruction instanceof LineNumberInstruction lineInstruction) {
                     currentLine = lineInstruction.getLine();
@@ -492,7 +527,7 @@ public class Parser extends ClassVisitor {
                 Instruction instruction = instructions.get(i);
                 if (instruction instanceof JumpingInstruction jumpingInstruction) {
                     for (int label : jumpingInstruction.getJumpLabels()) {
-                        int index = method.findLabelInstruction(label);
+                        int index = findLabelInstruction(label);
                         LabelInstruction labelInst = (LabelInstruction)instructions.get(index);
                         if (instructionLocations[i] != instructionLocations[index] && labelInst.getLocation() < 0)
                             labelInst.setLocation(instructionLocations[index]);
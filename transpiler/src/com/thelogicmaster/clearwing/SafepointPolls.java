@@ -0,0 +1,195 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+
+/**
+ * Places safepoint polls on the back edges of loops, so a thread running a loop without calls still reaches a safepoint
+ * in bounded time. Together with the poll on method return, every cycle in the code passes through a poll. An innermost
+ * counted loop that runs at most {@link #MAX_UNPOLLED_TRIPS} times doesn't need one, since it can only delay a safepoint
+ * briefly. Such a loop has the shape javac emits for {@code for (int i = start; i < bound; i++)} with constants for both
+ * the start and bound, where the index is only incremented at the end of the body and the loop can only be entered
+ * through its header. Its body can't contain other loops or calls, which may run unpolled loops of their own, so the
+ * delay never multiplies.
+ */
+public class SafepointPolls {
+
+	/**
+	 * The most iterations a counted loop can run without polling on its back edge
+	 */
+	public static final int MAX_UNPOLLED_TRIPS = 1000;
+
+	private final BytecodeMethod method;
+	private final List<Instruction> instructions;
+	private final HashMap<Integer, Integer> labels = new HashMap<>();
+	private final HashSet<Integer> targets = new HashSet<>();
+
+	private SafepointPolls(BytecodeMethod method) {
+		this.method = method;
+		instructions = new ArrayList<>();
+		for (Instruction instruction: method.getInstructions())
+			if (instruction instanceof InstructionGroup group)
+				instructions.addAll(group.getInstructions());
+			else
+				instructions.add(instruction);
+		for (int i = 0; i < instructions.size(); i++) {
+			if (instructions.get(i) instanceof LabelInstruction label)
+				labels.put(label.getLabel(), i);
+			if (instructions.get(i) instanceof JumpingInstruction jumping)
+				targets.addAll(jumping.getJumpLabels());
+		}
+		for (BytecodeMethod.ExceptionFrame frame: method.getExceptionFrames())
+			targets.add(frame.getHandlerLabel());
+	}
+
+	/**
+	 * Poll for safepoints on the back edges of a method's loops, optionally skipping short counted loops, returning the
+	 * number of polls placed
+	 */
+	public static int placeSafepointPolls(BytecodeMethod method, boolean elideCountedLoops) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated())
+			return 0;
+		return new SafepointPolls(method).run(elideCountedLoops);
+	}
+
+	private int run(boolean elideCountedLoops) {
+		int polls = 0;
+		for (int i = 0; i < instructions.size(); i++) {
+			if (!(instructions.get(i) instanceof JumpInstruction jump))
+				continue;
+			Integer target = labels.get(jump.getJumpLabels().get(0));
+			if (target == null || target > i)
+				continue;
+			if (elideCountedLoops && jump.getOpcode() == Opcodes.GOTO && isShortCountedLoop(target, i))
+				continue;
+			jump.pollSafepoint();
+			polls++;
+		}
+		return polls;
+	}
+
+	/**
+	 * Whether the loop from a header label to its back edge is a counted loop with a small constant trip count
+	 */
+	private boolean isShortCountedLoop(int header, int backEdge) {
+		// The header loads the index and bound, then exits the loop once the index reaches the bound
+		int condition = header + 1;
+		while (condition < backEdge && isHeaderLoad(instructions.get(condition)))
+			condition++;
+		Instruction exit = instructions.get(condition);
+		if ((exit.getOpcode() != Opcodes.IF_ICMPGE && exit.getOpcode() != Opcodes.IF_ICMPGT) || exit.getInputs() == null)
+			return false;
+		Integer exitLabel = labels.get(((JumpInstruction) exit).getJumpLabels().get(0));
+		if (exitLabel == null || exitLabel <= backEdge)
+			return false;
+		if (!(exit.getInputs().get(0).getSource() instanceof VariableInstruction load) || load.getOpcode() != Opcodes.ILOAD)
+			return false;
+		int index = load.getLocal();
+		Integer bound = getConstant(exit.getInputs().get(1).getSource());
+		if (bound == null)
+			return false;
+
+		if (!(instructions.get(backEdge - 1) instanceof IncrementInstruction increment) || increment.getLocal() != index || increment.getAmount() <= 0)
+			return false;
+		for (int i = header + 1; i < backEdge - 1; i++)
+			if (isWrite(instructions.get(i), index))
+				return false;
+		Integer start = getStart(header, index);
+		if (start == null)
+			return false;
+		// The loop exits once the index reaches the bound for IF_ICMPGE, or once it passes the bound for IF_ICMPGT
+		long trips = (long) bound - start + (exit.getOpcode() == Opcodes.IF_ICMPGT ? 1 : 0);
+		// The index can't overflow and wrap around without leaving the loop
+		if (trips > MAX_UNPOLLED_TRIPS || (long) bound + increment.getAmount() > Integer.MAX_VALUE)
+			return false;
+		return isInnermost(header, backEdge) && isOnlyEnteredByHeader(header, backEdge);
+	}
+
+	/**
+	 * Whether the loop body has no loops of its own and makes no calls
+	 */
+	private boolean isInnermost(int header, int backEdge) {
+		for (int i = header + 1; i < backEdge; i++) {
+			Instruction instruction = instructions.get(i);
+			if (instruction instanceof MethodInstruction || instruction instanceof InvokeDynamicInstruction)
+				return false;
+			if (!(instruction instanceof JumpingInstruction jumping))
+				continue;
+			for (int label: jumping.getJumpLabels()) {
+				Integer target = labels.get(label);
+				if (target == null || target <= i)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isHeaderLoad(Instruction instruction) {
+		return instruction instanceof LineNumberInstruction || instruction.getOpcode() == Opcodes.ILOAD
+				|| getConstant(instruction) != null;
+	}
+
+	/**
+	 * Get the value of an int constant instruction, or null
+	 */
+	private static Integer getConstant(Instruction instruction) {
+		if (instruction == null)
+			return null;
+		if (instruction instanceof ZeroOperandInstruction && instruction.getOpcode() >= Opcodes.ICONST_M1 && instruction.getOpcode() <= Opcodes.ICONST_5)
+			return instruction.getOpcode() - Opcodes.ICONST_0;
+		if (instruction instanceof IntegerInstruction constant && instruction.getOpcode() != Opcodes.NEWARRAY)
+			return constant.getOperand();
+		if (instruction instanceof LoadConstantInstruction constant && constant.getValue() instanceof Integer value)
+			return value;
+		return null;
+	}
+
+	private static boolean isWrite(Instruction instruction, int local) {
+		if (instruction instanceof IncrementInstruction increment)
+			return increment.getLocal() == local;
+		return instruction instanceof VariableInstruction variable && variable.getLocal() == local
+				&& variable.getOpcode() >= Opcodes.ISTORE && variable.getOpcode() <= Opcodes.ASTORE;
+	}
+
+	/**
+	 * Get the constant the index is last assigned before the loop, or null
+	 */
+	private Integer getStart(int header, int index) {
+		for (int i = header - 1; i >= 0; i--) {
+			Instruction instruction = instructions.get(i);
+			if (instruction instanceof LabelInstruction label && targets.contains(label.getLabel()))
+				return null;
+			if (!isWrite(instruction, index))
+				continue;
+			if (instruction.getOpcode() != Opcodes.ISTORE || instruction.getInputs() == null)
+				return null;
+			return getConstant(instruction.getInputs().get(0).getSource());
+		}
+		return null;
+	}
+
+	/**
+	 * Whether the only jumps into the loop come from inside it, so it is only entered by falling into the header
+	 */
+	private boolean isOnlyEnteredByHeader(int header, int backEdge) {
+		for (int i = 0; i < instructions.size(); i++) {
+			if (i >= header && i <= backEdge || !(instructions.get(i) instanceof JumpingInstruction jumping))
+				continue;
+			for (int label: jumping.getJumpLabels()) {
+				Integer target = labels.get(label);
+				if (target == null || (target >= header && target <= backEdge))
+					return false;
+			}
+		}
+		for (BytecodeMethod.ExceptionFrame frame: method.getExceptionFrames()) {
+			int handler = labels.getOrDefault(frame.getHandlerLabel(), -1);
+			if (handler < header || handler > backEdge)
+				continue;
+			if (labels.getOrDefault(frame.getStartLabel(), -1) <= header || labels.getOrDefault(frame.getEndLabel(), -1) > backEdge)
+				return false;
+		}
+		return true;
+	}
+}
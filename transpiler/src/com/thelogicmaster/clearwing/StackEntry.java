@@ -2,11 +2,12 @@ package com.thelogicmaster.clearwing;
 
 import com.thelogicmaster.clearwing.bytecode.Instruction;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
-public class StackEntry {
+public class StackEntry implements Serializable {
 
-    private final JavaType type;
+    private JavaType type;
     private final Instruction source;
     private final ArrayList<Instruction> consumers = new ArrayList<>();
 
@@ -54,6 +55,13 @@ public class StackEntry {
         return type;
     }
 
+    /**
+     * Change the type of a value, once its source and consumers have been rewritten to agree on it
+     */
+    public void setType(JavaType type) {
+        this.type = type;
+    }
+
     public TypeVariants getBasicType() {
         return type.getBasicType();
     }
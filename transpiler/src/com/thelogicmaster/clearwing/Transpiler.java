@@ -3,8 +3,8 @@ package com.thelogicmaster.clearwing;
 import com.github.javaparser.ast.body.Parameter;
 import com.github.javaparser.ast.type.Type;
 import io.github.classgraph.ClassGraph;
-import io.github.classgraph.ClassInfo;
 import io.github.classgraph.Resource;
+import io.github.classgraph.ResourceList;
 import io.github.classgraph.ScanResult;
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
@@ -12,13 +12,14 @@ import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -28,8 +29,17 @@ import java.util.zip.ZipFile;
 public class Transpiler {
 
 	private final static String[] NATIVE_DEPENDENCIES = {
+			"java/util/concurrent/locks/AbstractQueuedSynchronizer",
 			"java/lang/ArithmeticException",
+			"java/lang/ArrayIndexOutOfBoundsException",
 			"java/lang/reflect/Array",
+			"java/util/concurrent/atomic/AtomicBoolean",
+			"java/util/concurrent/atomic/AtomicInteger",
+			"java/util/concurrent/atomic/AtomicIntegerFieldUpdater",
+			"java/util/concurrent/atomic/AtomicLong",
+			"java/util/concurrent/atomic/AtomicLongFieldUpdater",
+			"java/util/concurrent/atomic/AtomicReference",
+			"java/util/concurrent/atomic/AtomicReferenceFieldUpdater",
 			"java/lang/Boolean",
 			"java/nio/Buffer",
 			"java/lang/Byte",
@@ -53,6 +63,7 @@ public class Transpiler {
 			"java/lang/IllegalMonitorStateException",
 			"java/lang/InterruptedException",
 			"java/util/Locale",
+			"java/util/concurrent/locks/LockSupport",
 			"java/lang/Long",
 			"java/lang/Math",
 			"java/lang/NoSuchMethodError",
@@ -77,6 +88,8 @@ public class Transpiler {
 			"java/util/zip/ZipFile",
 	};
 
+	private final static Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][\\w$]*");
+
 	private static void collect(BytecodeClass clazz, Set<BytecodeClass> collected, HashMap<String, BytecodeClass> classMap) {
 		collected.add(clazz);
 		clazz.collectDependencies(classMap);
@@ -94,27 +107,51 @@ public class Transpiler {
 		}
 	}
 
-	private static void copyResources(String source, String prefix, File outputDir) throws IOException {
+	private static void copyResources(String source, String prefix, File outputDir, OutputWriter output) throws IOException {
 		try (ScanResult scanResult = new ClassGraph().acceptPaths(source).scan()) {
 			for (Resource resource: scanResult.getAllResources()) {
 				Path path = Paths.get(outputDir.getPath(), resource.getPath().substring(prefix.length()));
-				path.getParent().toFile().mkdirs();
-				try (InputStream input = resource.open()) {
-					Files.copy(input, path, StandardCopyOption.REPLACE_EXISTING);
-				}
+				output.write(path.toFile(), resource.load());
+			}
+		}
+	}
+
+	/**
+	 * Collect the identifiers used by C++ code, for finding the generated methods that native code calls
+	 */
+	private static void collectSymbols(String code, Set<String> symbols) {
+		Matcher matcher = IDENTIFIER.matcher(code);
+		while (matcher.find())
+			symbols.add(matcher.group());
+	}
+
+	/**
+	 * Collect the identifiers used by the runtime native sources, excluding bundled third party libraries
+	 */
+	private static void collectRuntimeSymbols(Set<String> symbols) throws IOException {
+		try (ScanResult scanResult = new ClassGraph().acceptPaths("clearwing/src/").scan()) {
+			for (Resource resource: scanResult.getAllResources()) {
+				String path = resource.getPath();
+				if (path.contains("/asmjit/") || path.contains("/ankerl/"))
+					continue;
+				if (path.endsWith(".cpp") || path.endsWith(".h") || path.endsWith(".hpp"))
+					collectSymbols(new String(resource.load(), StandardCharsets.UTF_8), symbols);
 			}
 		}
 	}
 
 	private static void addScanResultSuppliers(ScanResult scanResult, ArrayList<Supplier<InputStream>> sources) {
-		for (ClassInfo info: scanResult.getAllClasses())
+		// Only the first class file for each path is used, like with class loading
+		for (ResourceList resources: scanResult.getResourcesWithExtension("class").asMap().values()) {
+			Resource resource = resources.get(0);
 			sources.add(() -> {
 				try {
-					return info.getResource().open();
+					return resource.open();
 				} catch (IOException e) {
 					throw new TranspilerException("Failed to open file", e);
 				}
 			});
+		}
 	}
 
 	private static Pattern compileQualifiedPattern(String expression) {
@@ -128,9 +165,9 @@ public class Transpiler {
 	}
 
 	/**
-	 * Generates Cpp files from inlined jnigen style native methods
+	 * Generates Cpp files from inlined jnigen style native methods, collecting the identifiers used by the native code
 	 */
-	private static List<String> processSources(List<File> sourceDirs, File outputDir, List<String> ignorePatterns) throws IOException {
+	private static List<String> processSources(List<File> sourceDirs, File outputDir, List<String> ignorePatterns, Set<String> symbols, OutputWriter output) throws IOException {
 		HashMap<String, Path> sourceMap = new HashMap<>();
 		for (File source: sourceDirs)
 			try (Stream<Path> stream = Files.find(source.toPath(), Integer.MAX_VALUE, (path, attr) -> attr.isRegularFile() && path.toString().endsWith(".java"))) {
@@ -225,11 +262,8 @@ public class Transpiler {
 					builder.append("}\n\n");
 				}
 
-			File file = new File(outputDir, name + "_native.cpp");
-			file.getParentFile().mkdirs();
-			try (Writer writer = new BufferedWriter(new FileWriter(file))) {
-				writer.write(builder.toString());
-			}
+			output.write(new File(outputDir, name + "_native.cpp"), builder.toString());
+			collectSymbols(builder.toString(), symbols);
 
 			allIncludes.addAll(includes);
 		}
@@ -243,7 +277,7 @@ public class Transpiler {
 		ArrayList<Supplier<InputStream>> sources = new ArrayList<>();
 		List<BytecodeClass> classes;
 		ArrayList<Closeable> parserCloseables = new ArrayList<>();
-		ScanResult scanResult = new ClassGraph().acceptPaths("regexodus/", "java/").enableClassInfo().ignoreClassVisibility().scan();
+		ScanResult scanResult = new ClassGraph().acceptPaths("regexodus/", "java/").scan();
 		parserCloseables.add(scanResult);
 		addScanResultSuppliers(scanResult, sources);
 
@@ -285,12 +319,16 @@ public class Transpiler {
 			}
 		}
 
-		classes = parser.parse(sources);
+		ParseCache parseCache = config.isCachingParses() ? new ParseCache(new File(outputDir, ".clearwing-cache"), config) : null;
+		classes = parser.parse(sources, parseCache);
+		if (parseCache != null)
+			parseCache.printStatistics();
 
 		for (Closeable result: parserCloseables)
 			result.close();
 
 		HashSet<BytecodeClass> required = new HashSet<>();
+		ArrayList<BytecodeClass> roots = new ArrayList<>();
 
 		// Collect classes into map
 		HashMap<String, BytecodeClass> classMap = new HashMap<>();
@@ -301,13 +339,11 @@ public class Transpiler {
 		for (BytecodeClass clazz: classes)
 			clazz.processHierarchy(classMap);
 
-		// Resolve symbols like methods once the entire hierarchy is generated
-		for (BytecodeClass clazz : classes)
-			clazz.resolveSymbols();
+		// Resolve symbols like methods once the entire hierarchy is generated (Only mutates the class itself)
+		classes.parallelStream().forEach(BytecodeClass::resolveSymbols);
 
 		// Collect dependencies for class trimming
-		for (BytecodeClass clazz: classes)
-			clazz.collectDependencies(classMap);
+		classes.parallelStream().forEach(clazz -> clazz.collectDependencies(classMap));
 
 		// Mark intrinsic methods
 		for (String intrinsic: config.getIntrinsics()) {
@@ -333,7 +369,7 @@ public class Transpiler {
 				}
 			if (!found)
 				System.out.println("Warning: Failed to mark method as intrinsic for: '" + intrinsic + "'");
-			collect(clazz, required, classMap);
+			roots.add(clazz);
 		}
 		
 		// Mark JNI classes
@@ -364,37 +400,125 @@ public class Transpiler {
 
 		// Collect required classes
 		for (String dep: NATIVE_DEPENDENCIES)
-			collect(classMap.get(dep), required, classMap);
-		ArrayList<String> requiredPatterns = new ArrayList<>(config.getNonOptimized());
-		for (String pattern: requiredPatterns)
+			roots.add(classMap.get(dep));
+		ArrayList<BytecodeClass> nonOptimized = new ArrayList<>();
+		for (String pattern: config.getNonOptimized())
 			for (Map.Entry<String, BytecodeClass> entry: filterByPattern(pattern, classMap.entrySet()))
-				collect(entry.getValue(), required, classMap);
+				nonOptimized.add(entry.getValue());
+		roots.addAll(nonOptimized);
 		if (mainClass != null)
-			collect(mainClass, required, classMap);
+			roots.add(mainClass);
+
+		OutputWriter output = new OutputWriter(outputDir, config.isIncremental());
 
 		// Generate natives from jnigen style comments
-		List<String> jniIncludes = processSources(sourceDirs, new File(outputDir, "src"), config.getSourceIgnores());
+		HashSet<String> nativeSymbols = new HashSet<>();
+		List<String> jniIncludes = processSources(sourceDirs, new File(outputDir, "src"), config.getSourceIgnores(), nativeSymbols, output);
 		for (String include : jniIncludes)
-			collect(classMap.get(include), required, classMap);
-		
-		// Todo: Trim unused methods
+			roots.add(classMap.get(include));
+
+		for (BytecodeClass root: roots)
+			collect(root, required, classMap);
+
+		// Trim methods that can't be reached from the entrypoint, non-optimized classes, or native code
+		if (config.isTrimmingMethods()) {
+			MethodReachability reachability = new MethodReachability(required, classMap);
+			if (mainClass != null)
+				for (BytecodeMethod method: mainClass.getMethods())
+					if (method.isMain())
+						reachability.markMethod(method);
+			for (BytecodeClass clazz: nonOptimized)
+				reachability.markClass(clazz);
+			for (String include : jniIncludes)
+				reachability.markClass(classMap.get(include));
+			collectRuntimeSymbols(nativeSymbols);
+			reachability.markNativeReferences(nativeSymbols);
+			reachability.analyze();
+			reachability.trim();
+
+			// Recollect required classes without the dependencies of trimmed methods, keeping the ones used by native code
+			for (BytecodeClass clazz: required)
+				if (nativeSymbols.contains("class_" + clazz.getQualifiedName()) || clazz.getMethods().stream().anyMatch(method -> nativeSymbols.contains(method.getName())))
+					roots.add(clazz);
+			required.clear();
+			for (BytecodeClass root: roots)
+				collect(root, required, classMap);
+		}
+
+		// Call virtual and interface methods directly when only one implementation can be reached
+		ClassHierarchy hierarchy = new ClassHierarchy(required);
+		required.parallelStream().forEach(clazz -> clazz.devirtualize(hierarchy, classMap));
+
+		// Assign interface method table slots for constant time interface dispatch
+		hierarchy.buildItables();
+
+		// Replace boxes that are only unboxed, hashed, or compared with their primitive values (Removed valueOf calls no longer initialize their classes)
+		if (config.useOptimizations() && config.isEliminatingBoxing())
+			required.parallelStream().forEach(clazz -> clazz.getMethods().forEach(BoxElimination::eliminateBoxing));
+
+		// Replace calls to hot JDK methods with inline expressions (Inlined calls no longer initialize their classes)
+		if (config.useOptimizations() && config.isUsingBuiltinIntrinsics())
+			required.parallelStream().forEach(clazz -> {
+				int inlined = 0;
+				for (BytecodeMethod method: clazz.getMethods())
+					inlined += Intrinsics.inlineIntrinsics(method);
+				// Inlined expressions may access the layouts of the classes declaring them
+				if (inlined > 0)
+					clazz.collectDependencies(classMap);
+			});
+
+		// Remove class initialization checks for classes that are known to be initialized already
+		required.parallelStream().forEach(BytecodeClass::elideInitializationChecks);
+
+		// Skip bounds checks for array accesses in counted loops that can't go out of bounds
+		if (config.useOptimizations() && config.isEliminatingBoundsChecks())
+			required.parallelStream().forEach(clazz -> clazz.getMethods().forEach(BoundsCheckElimination::eliminateBoundsChecks));
+
+		// Skip null checks of values that are known to be non-null
+		if (config.useOptimizations() && config.isEliminatingNullChecks())
+			required.parallelStream().forEach(clazz -> clazz.getMethods().forEach(NullCheckElimination::eliminateNullChecks));
+
+		// Poll for safepoints on loop back edges, since method entry doesn't poll and loops may not make calls
+		required.parallelStream().forEach(clazz -> clazz.getMethods().forEach(method -> SafepointPolls.placeSafepointPolls(method, config.useOptimizations())));
+
+		// Move primitive locals into typed C++ variables, after eliminated boxes have their primitive types
+		if (config.useOptimizations() && config.isTypingLocals())
+			required.parallelStream().forEach(clazz -> clazz.getMethods().forEach(TypedLocals::assignTypedLocals));
+
+		// Allocate objects that don't escape the method creating them in its stack frame, in a stable order for summaries
+		if (config.useOptimizations() && config.isStackAllocating()) {
+			EscapeAnalysis escapeAnalysis = new EscapeAnalysis();
+			ArrayList<BytecodeClass> sorted = new ArrayList<>(required);
+			sorted.sort(Comparator.comparing(BytecodeClass::getName));
+			for (BytecodeClass clazz: sorted) {
+				int allocated = 0;
+				for (BytecodeMethod method: clazz.getMethods())
+					allocated += escapeAnalysis.allocateOnStack(method);
+				// Frames holding stack objects need the layout of their classes
+				if (allocated > 0)
+					clazz.collectDependencies(classMap);
+			}
+		}
+
+		// Drop the frames of methods that can't throw or reach a safepoint, once all other passes have rewritten their checks
+		if (config.useOptimizations() && config.isElidingFrames())
+			FramelessMethods.markFramelessMethods(required);
 
 		// Write transpiled output
 		File srcDir = new File(outputDir, "src");
 		File includeDir = srcDir;//new File(outputDir, "include");
 		boolean failed = false;
+		boolean unity = config.getUnityShards() > 0;
+		TreeMap<String, Integer> classSources = new TreeMap<>();
 		for (BytecodeClass clazz: required) {
-			File header = new File(includeDir, Utils.getClassFilename(clazz.getName()) + ".h");
-			Paths.get(header.getAbsolutePath()).getParent().toFile().mkdirs();
-			FileWriter writer = new FileWriter(header);
 			StringBuilder builder = new StringBuilder();
+			clazz.generateDeclarationHeader(builder, config, classMap);
+			output.write(new File(includeDir, Utils.getClassFilename(clazz.getName()) + ".decl.h"), builder.toString());
+
+			builder = new StringBuilder();
 			clazz.generateHeader(builder, config, classMap);
-			writer.write(builder.toString());
-			writer.close();
+			output.write(new File(includeDir, Utils.getClassFilename(clazz.getName()) + ".h"), builder.toString());
 
-			File cpp = new File(srcDir, Utils.getClassFilename(clazz.getName()) + ".cpp");
-			Paths.get(cpp.getAbsolutePath()).getParent().toFile().mkdirs();
-			writer = new FileWriter(cpp);
 			builder = new StringBuilder();
 			try {
 				clazz.generateCpp(builder, config, classMap);
@@ -402,39 +526,87 @@ public class Transpiler {
 				System.err.println("ERR: " + e.getMessage());
 				failed = true;
 			}
-			writer.write(builder.toString());
-			writer.close();
+			// Unity builds include class sources from shards, so they get an extension that isn't compiled on its own
+			String source = Utils.getClassFilename(clazz.getName()) + (unity ? ".inl" : ".cpp");
+			output.write(new File(srcDir, source), builder.toString());
+			classSources.put(source, builder.length());
 		}
 		if (failed)
 			throw new TranspilerException("Failed to transpile sources");
 
+		if (unity)
+			writeUnityShards(srcDir, classSources, config.getUnityShards(), output);
+
+		writePrecompiledHeader(srcDir, required, config.getPrecompiledHeaderClasses(), classMap, output);
+
 		// Write main.cpp
 		if (mainClass != null)
-			try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(new File(outputDir.getPath(), "src/main.cpp")))) {
-				writer.write("" +
-						"#include \"" + Utils.getClassFilename(mainClass.getName()) + ".h\"\n" +
-						"#include \"Clearwing.h\"\n" +
-						"\n" +
-						"int main() {\n" +
-						"\trunVM(SM_" + mainClass.getQualifiedName() + "_main_Array1_java_lang_String);\n" +
-						"}\n"
-				);
-			}
+			output.write(new File(outputDir.getPath(), "src/main.cpp"), "" +
+					"#include \"" + Utils.getClassFilename(mainClass.getName()) + ".h\"\n" +
+					"#include \"Clearwing.h\"\n" +
+					"\n" +
+					"int main() {\n" +
+					"\trunVM(SM_" + mainClass.getQualifiedName() + "_main_Array1_java_lang_String);\n" +
+					"}\n"
+			);
 
 		// Write config header
-		try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(new File(outputDir.getPath(), "src/Config.h")))) {
-			writer.write("#pragma once\n\n" +
-					"#ifndef USE_LINE_NUMBERS\n#define USE_LINE_NUMBERS " + config.hasLineNumbers() + "\n#endif\n\n" +
-					"#ifndef USE_VALUE_CHECKS\n#define USE_VALUE_CHECKS " + config.hasValueChecks() + "\n#endif\n\n" +
-					"#ifndef USE_PLATFORM_OVERRIDE\n#define USE_PLATFORM_OVERRIDE " + config.hasPlatformOverride() + "\n#endif\n\n"
-			);
-		}
+		output.write(new File(outputDir.getPath(), "src/Config.h"), "#pragma once\n\n" +
+				"#ifndef USE_LINE_NUMBERS\n#define USE_LINE_NUMBERS " + config.hasLineNumbers() + "\n#endif\n\n" +
+				"#ifndef USE_VALUE_CHECKS\n#define USE_VALUE_CHECKS " + config.hasValueChecks() + "\n#endif\n\n" +
+				"#ifndef USE_PLATFORM_OVERRIDE\n#define USE_PLATFORM_OVERRIDE " + config.hasPlatformOverride() + "\n#endif\n\n" +
+				"#ifndef INTEGER_CACHE_HIGH\n#define INTEGER_CACHE_HIGH " + config.getIntegerCacheHigh() + "\n#endif\n\n"
+		);
 
 		// Copy resources to output
-		copyResources("clearwing/src/", "clearwing/", outputDir);
-		copyResources("clearwing/include/", "clearwing/", outputDir);
+		copyResources("clearwing/src/", "clearwing/", outputDir, output);
+		copyResources("clearwing/include/", "clearwing/", outputDir, output);
 		if (config.isWritingProjectFiles())
-			copyResources("clearwing/project/", "clearwing/project/", outputDir);
+			copyResources("clearwing/project/", "clearwing/project/", outputDir, output);
+
+		// Remove outputs that are no longer generated
+		output.finish();
+	}
+
+	/**
+	 * Group class sources into balanced unity build translation units. Sources are kept in name order so that packages
+	 * and inner classes end up in the same shard, which also keeps shard contents stable as classes are added.
+	 */
+	private static void writeUnityShards(File srcDir, TreeMap<String, Integer> sources, int shards, OutputWriter output) throws IOException {
+		shards = Math.min(shards, sources.size());
+		long total = 0;
+		for (int size: sources.values())
+			total += size;
+		StringBuilder builder = new StringBuilder();
+		long written = 0;
+		int shard = 0;
+		for (Map.Entry<String, Integer> source: sources.entrySet()) {
+			builder.append("#include \"").append(source.getKey()).append("\"\n");
+			written += source.getValue();
+			if (written * shards >= total * (shard + 1) && shard < shards - 1) {
+				output.write(new File(srcDir, "unity_" + shard++ + ".cpp"), builder.toString());
+				builder.setLength(0);
+			}
+		}
+		if (builder.length() > 0 || shard == 0)
+			output.write(new File(srcDir, "unity_" + shard + ".cpp"), builder.toString());
+	}
+
+	/**
+	 * Write the header that the project files precompile, with the runtime header and the class headers included by the
+	 * most class sources. Class headers are included after the runtime header, which they all depend on.
+	 */
+	private static void writePrecompiledHeader(File srcDir, Collection<BytecodeClass> classes, int classHeaders, HashMap<String, BytecodeClass> classMap, OutputWriter output) throws IOException {
+		HashMap<String, Integer> counts = new HashMap<>();
+		for (BytecodeClass clazz: classes)
+			for (String include: clazz.getIncludes(classMap))
+				counts.merge(include, 1, Integer::sum);
+		StringBuilder builder = new StringBuilder("#pragma once\n\n#include \"Clearwing.h\"\n\n");
+		counts.entrySet().stream()
+				.sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+				.limit(classHeaders)
+				.forEach(entry -> builder.append("#include \"").append(entry.getKey()).append("\"\n"));
+		output.write(new File(srcDir, "Precompiled.h"), builder.toString());
 	}
 
 	private static List<File> getFileArgs(Namespace namespace, String name) {
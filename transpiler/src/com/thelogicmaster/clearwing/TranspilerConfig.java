@@ -20,6 +20,19 @@ public class TranspilerConfig {
     private boolean valueChecks = false; // Enable type/NPE checks at runtime, has substantial performance overhead
     private boolean platformOverride = false; // Enable custom platform implementation for env vars and such
     private boolean optimizations = true; // Enable stack optimizations
+    private boolean incremental = true; // Only write output files whose contents changed and delete stale ones
+    private boolean parseCache = false; // Cache parsed classes in the output directory, keyed by class file contents
+    private int unityShards = 0; // Number of unity build translation units to group class sources into, or zero for one per class
+    private int precompiledHeaderClasses = 32; // Number of the most commonly included class headers to add to the precompiled header
+    private boolean trimMethods = true; // Omit the bodies of methods that can't be reached from the entrypoint or native code
+    private boolean stackAllocate = true; // Place objects that don't escape the method allocating them in its stack frame
+    private boolean eliminateBoxing = true; // Replace boxes that are only unboxed, hashed, or compared with their primitive values
+    private boolean eliminateBoundsChecks = true; // Skip array bounds checks in counted loops where the index is always in bounds
+    private boolean eliminateNullChecks = true; // Skip null checks of values that are known to be non-null
+    private boolean builtinIntrinsics = true; // Replace calls to hot JDK methods like Math.min and String.charAt with inline C++
+    private boolean elideFrames = true; // Generate methods that can't throw, allocate, or call methods with frames without a stack frame
+    private boolean typedLocals = true; // Store primitive locals in typed C++ variables instead of the frame
+    private int integerCacheHigh = 127; // The largest value Integer.valueOf returns a cached instance for, at least 127
 
     public TranspilerConfig() {
     }
@@ -37,6 +50,19 @@ public class TranspilerConfig {
         lineNumbers = json.optBoolean("useLineNumbers", true);
         valueChecks = json.optBoolean("useValueChecks", true);
         platformOverride = json.optBoolean("platformOverride", false);
+        incremental = json.optBoolean("incrementalOutput", true);
+        parseCache = json.optBoolean("parseCache", false);
+        unityShards = json.optInt("unityShards", 0);
+        precompiledHeaderClasses = json.optInt("precompiledHeaderClasses", 32);
+        trimMethods = json.optBoolean("trimMethods", true);
+        stackAllocate = json.optBoolean("stackAllocate", true);
+        eliminateBoxing = json.optBoolean("eliminateBoxing", true);
+        eliminateBoundsChecks = json.optBoolean("eliminateBoundsChecks", true);
+        eliminateNullChecks = json.optBoolean("eliminateNullChecks", true);
+        builtinIntrinsics = json.optBoolean("builtinIntrinsics", true);
+        elideFrames = json.optBoolean("elideFrames", true);
+        typedLocals = json.optBoolean("typedLocals", true);
+        integerCacheHigh = Math.max(127, json.optInt("integerCacheHigh", 127));
     }
 
     private static List<String> getArray(JSONObject json, String name) {
@@ -134,4 +160,108 @@ public class TranspilerConfig {
     public void setOptimizations(boolean optimizations) {
         this.optimizations = optimizations;
     }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isCachingParses() {
+        return parseCache;
+    }
+
+    public void setParseCache(boolean parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    public int getUnityShards() {
+        return unityShards;
+    }
+
+    public void setUnityShards(int unityShards) {
+        this.unityShards = unityShards;
+    }
+
+    public int getPrecompiledHeaderClasses() {
+        return precompiledHeaderClasses;
+    }
+
+    public void setPrecompiledHeaderClasses(int precompiledHeaderClasses) {
+        this.precompiledHeaderClasses = precompiledHeaderClasses;
+    }
+
+    public boolean isTrimmingMethods() {
+        return trimMethods;
+    }
+
+    public void setTrimMethods(boolean trimMethods) {
+        this.trimMethods = trimMethods;
+    }
+
+    public boolean isStackAllocating() {
+        return stackAllocate;
+    }
+
+    public void setStackAllocate(boolean stackAllocate) {
+        this.stackAllocate = stackAllocate;
+    }
+
+    public boolean isEliminatingBoxing() {
+        return eliminateBoxing;
+    }
+
+    public void setEliminateBoxing(boolean eliminateBoxing) {
+        this.eliminateBoxing = eliminateBoxing;
+    }
+
+    public boolean isEliminatingBoundsChecks() {
+        return eliminateBoundsChecks;
+    }
+
+    public void setEliminateBoundsChecks(boolean eliminateBoundsChecks) {
+        this.eliminateBoundsChecks = eliminateBoundsChecks;
+    }
+
+    public boolean isEliminatingNullChecks() {
+        return eliminateNullChecks;
+    }
+
+    public void setEliminateNullChecks(boolean eliminateNullChecks) {
+        this.eliminateNullChecks = eliminateNullChecks;
+    }
+
+    public boolean isUsingBuiltinIntrinsics() {
+        return builtinIntrinsics;
+    }
+
+    public void setBuiltinIntrinsics(boolean builtinIntrinsics) {
+        this.builtinIntrinsics = builtinIntrinsics;
+    }
+
+    public boolean isElidingFrames() {
+        return elideFrames;
+    }
+
+    public void setElideFrames(boolean elideFrames) {
+        this.elideFrames = elideFrames;
+    }
+
+    public boolean isTypingLocals() {
+        return typedLocals;
+    }
+
+    public void setTypedLocals(boolean typedLocals) {
+        this.typedLocals = typedLocals;
+    }
+
+    public int getIntegerCacheHigh() {
+        return integerCacheHigh;
+    }
+
+    public void setIntegerCacheHigh(int integerCacheHigh) {
+        this.integerCacheHigh = Math.max(127, integerCacheHigh);
+    }
 }
@@ -0,0 +1,58 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.*;
+
+import java.util.*;
+
+/**
+ * Moves primitive locals out of the frame array into typed C++ variables that span the whole method, so the C++
+ * compiler can keep them in registers across labels and branches. A local slot qualifies when every access to it
+ * agrees on a single primitive type, which includes locals holding eliminated boxes. Reference locals stay in the frame,
+ * which is the root array the GC scans, and primitive locals are never needed by the GC.
+ */
+public class TypedLocals {
+
+	/**
+	 * Assign typed variables to the primitive locals of a method, returning the number of locals assigned
+	 */
+	public static int assignTypedLocals(BytecodeMethod method) {
+		if (!method.hasBody() || method.isIntrinsic() || method.isTrimmed() || method.isGenerated() || method.getLocalCount() == 0)
+			return 0;
+
+		TreeMap<Integer, TypeVariants> types = new TreeMap<>();
+		HashSet<Integer> rejected = new HashSet<>();
+		for (Instruction instruction: flatten(method.getInstructions())) {
+			if (!(instruction instanceof LocalInstruction local))
+				continue;
+			TypeVariants type = local.getLocalType().getArithmeticVariant();
+			TypeVariants existing = types.putIfAbsent(local.getLocal(), type);
+			if (type == TypeVariants.OBJECT || (existing != null && existing != type))
+				rejected.add(local.getLocal());
+		}
+
+		// Parameters are copied into their locals on entry, so the slot has to agree with the parameter type
+		int slot = method.isStatic() ? 0 : 1;
+		for (JavaType param: method.getSignature().getParamTypes()) {
+			TypeVariants type = types.get(slot);
+			if (type != null && type != param.getBasicType().getArithmeticVariant())
+				rejected.add(slot);
+			slot += param.getBasicType().isWide() ? 2 : 1;
+		}
+		if (!method.isStatic())
+			rejected.add(0);
+
+		types.keySet().removeAll(rejected);
+		method.setTypedLocals(types);
+		return types.size();
+	}
+
+	private static List<Instruction> flatten(List<Instruction> instructions) {
+		ArrayList<Instruction> flattened = new ArrayList<>();
+		for (Instruction instruction: instructions)
+			if (instruction instanceof InstructionGroup group)
+				flattened.addAll(group.getInstructions());
+			else
+				flattened.add(instruction);
+		return flattened;
+	}
+}
@@ -20,7 +20,7 @@ public class Utils {
 	 * Replaces invalid characters found in Java symbols for C++ symbols
 	 */
 	public static String sanitizeName (String name) {
-        return name.replaceAll("\\.", "/").replace("-", "_");
+		return name.replace('.', '/').replace('-', '_');
 	}
 
 	/**
@@ -122,6 +122,38 @@ public class Utils {
 		return builder.toString();
 	}
 
+	/**
+	 * Encodes a UTF-16 C++ String and returns the full literal, which may contain null characters
+	 */
+	public static String encodeUtf16Literal(String string) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("u\"");
+		char[] chars = string.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			char c = chars[i];
+			switch (c) {
+				case '\\' -> builder.append("\\\\");
+				case '"' -> builder.append("\\\"");
+				case '\n' -> builder.append("\\n");
+				case '\r' -> builder.append("\\r");
+				case '\t' -> builder.append("\\t");
+				default -> {
+					if (c >= 32 && c < 127)
+						builder.append(c);
+					else if (Character.isSurrogate(c)) {
+						// Surrogates can't be universal character names, and hex escapes would consume following hex digits
+						builder.append(String.format("\\x%04x", (int)c));
+						if (i + 1 < chars.length && Character.digit(chars[i + 1], 16) >= 0)
+							builder.append("\" u\"");
+					} else
+						builder.append("\\u").append(String.format("%04x", (int)c));
+				}
+			}
+		}
+		builder.append("\"");
+		return builder.toString();
+	}
+
 	/**
 	 * Get a value representation of a Number, String, or Type
 	 */
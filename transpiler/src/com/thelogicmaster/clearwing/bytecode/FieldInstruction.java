@@ -21,6 +21,8 @@ public class FieldInstruction extends Instruction {
     private BytecodeClass ownerClass;
     private BytecodeClass realOwnerClass;
     private String realName;
+    private boolean initializationElided;
+    private boolean nullChecked = true;
 
     public FieldInstruction(BytecodeMethod method, int opcode, String owner, String name, String desc) {
         super(method, opcode);
@@ -72,12 +74,31 @@ public class FieldInstruction extends Instruction {
             realName = Utils.sanitizeField(realOwnerClass.getQualifiedName(), originalName, isStatic);
     }
 
+    @Override
+    public boolean isNullChecking() {
+        return opcode == Opcodes.GETFIELD || opcode == Opcodes.PUTFIELD;
+    }
+
+    @Override
+    public void elideNullCheck() {
+        nullChecked = false;
+    }
+
+    @Override
+    public boolean needsFrame() {
+        return isStatic ? !initializationElided : nullChecked;
+    }
+
+    private String checkObject(String object) {
+        return nullChecked ? "NULL_CHECK(" + object + ")" : "(" + object + ")";
+    }
+
     @Override
     public void appendUnoptimized(StringBuilder builder, TranspilerConfig config) {
         if (realOwnerClass == null)
             throw new TranspilerException("Failed to find owner class for: " + name + " needed for " + method.getName());
         
-        if (isStatic) // Todo: Skip on same class for clinit
+        if (isStatic && !initializationElided)
             builder.append("\tCLINIT(").append(qualifiedOwner).append(");\n");
         
         switch (opcode) {
@@ -87,11 +108,11 @@ public class FieldInstruction extends Instruction {
                 builder.append("\t").append(realName).append(" = (--sp)->").append(type.getBasicType().getStackName()).append(";\n");
             case Opcodes.GETFIELD -> {
                 builder.append("\tsp[-1].").append(type.getBasicType().getStackName()).append(" = ").append(type.isPrimitive() ? "" : "(jobject) ")
-                        .append("((").append(realOwnerClass.getQualifiedName()).append(" *) NULL_CHECK(sp[-1].o))->").append(name).append(";\n");
+                        .append("((").append(realOwnerClass.getQualifiedName()).append(" *) ").append(checkObject("sp[-1].o")).append(")->").append(name).append(";\n");
             }
             case Opcodes.PUTFIELD -> {
                 builder.append("\tsp -= 2;\n");
-                builder.append("\t((").append(realOwnerClass.getQualifiedName()).append(" *) NULL_CHECK(sp[0].o))->").append(name).append(" = ").append(type.isPrimitive() ? "" : "(jref) ")
+                builder.append("\t((").append(realOwnerClass.getQualifiedName()).append(" *) ").append(checkObject("sp[0].o")).append(")->").append(name).append(" = ").append(type.isPrimitive() ? "" : "(jref) ")
                         .append("sp[1].").append(type.getBasicType().getStackName()).append(";\n");
             }
             default -> throw new TranspilerException("Invalid opcode");
@@ -103,7 +124,7 @@ public class FieldInstruction extends Instruction {
         if (realOwnerClass == null)
             throw new TranspilerException("Failed to find owner class for: " + name + " needed for " + method.getName());
         
-        if (isStatic) // Todo: Skip on same class for clinit
+        if (isStatic && !initializationElided)
             builder.append("\tCLINIT(").append(qualifiedOwner).append(");\n");
 
         switch (opcode) {
@@ -113,10 +134,10 @@ public class FieldInstruction extends Instruction {
                     builder.append("\t").append(realName).append(" = ").append(inputs.get(0).arg()).append(";\n");
             case Opcodes.GETFIELD -> outputs.get(0).buildAssignment(builder).append("(")
                     .append(type.getBasicType().getArithmeticType()).append(")").append("((")
-                    .append(realOwnerClass.getQualifiedName()).append(" *) NULL_CHECK(")
-                    .append(inputs.get(0).arg()).append("))->").append(name).append(";\n");
+                    .append(realOwnerClass.getQualifiedName()).append(" *) ")
+                    .append(checkObject(inputs.get(0).arg())).append(")->").append(name).append(";\n");
             case Opcodes.PUTFIELD -> builder.append("\t((").append(realOwnerClass.getQualifiedName())
-                    .append(" *) NULL_CHECK(").append(inputs.get(0).arg()).append("))->").append(name)
+                    .append(" *) ").append(checkObject(inputs.get(0).arg())).append(")->").append(name)
                     .append(" = ").append(type.isPrimitive() ? "" : "(jref) ").append(inputs.get(1).arg()).append(";\n");
             default -> throw new TranspilerException("Invalid opcode");
         }
@@ -125,15 +146,28 @@ public class FieldInstruction extends Instruction {
     @Override
     public void appendInlined(StringBuilder builder) {
         switch (opcode) {
-            case Opcodes.GETSTATIC -> builder.append("[ctx]{CLINIT(").append(qualifiedOwner).append(");}(), (")
-                    .append(type.getArithmeticType()).append(")").append(realName);
+            case Opcodes.GETSTATIC -> {
+                if (!initializationElided)
+                    builder.append("[ctx]{CLINIT(").append(qualifiedOwner).append(");}(), ");
+                builder.append("(").append(type.getArithmeticType()).append(")").append(realName);
+            }
             case Opcodes.GETFIELD -> builder.append("(").append(type.getBasicType().getArithmeticType()).append(")")
-                    .append("((").append(realOwnerClass.getQualifiedName()).append(" *) NULL_CHECK(")
-                    .append(inputs.get(0).arg()).append("))->").append(name);
+                    .append("((").append(realOwnerClass.getQualifiedName()).append(" *) ")
+                    .append(checkObject(inputs.get(0).arg())).append(")->").append(name);
             default -> throw new TranspilerException("Not inlinable");
         }
     }
 
+    @Override
+    public BytecodeClass getInitializedClass() {
+        return isStatic ? ownerClass : null;
+    }
+
+    @Override
+    public void elideInitialization() {
+        initializationElided = true;
+    }
+
     @Override
     public void resolveIO(List<StackEntry> stack) {
         if (opcode == Opcodes.GETFIELD)
@@ -159,10 +193,18 @@ public class FieldInstruction extends Instruction {
     @Override
     public void collectDependencies(Set<String> dependencies) {
         dependencies.add(Utils.sanitizeName(owner));
+        if (realOwnerClass != null)
+            dependencies.add(realOwnerClass.getName());
         if (!type.isPrimitive() && type.getArrayDimensions() == 0)
             dependencies.add(type.getRegistryTypeName());
     }
 
+    @Override
+    public void collectLayoutDependencies(Set<String> dependencies) {
+        if (!isStatic && realOwnerClass != null)
+            dependencies.add(realOwnerClass.getName());
+    }
+
     public String getOwner() {
         return owner;
     }
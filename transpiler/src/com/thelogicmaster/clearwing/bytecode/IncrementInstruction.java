@@ -24,7 +24,10 @@ public class IncrementInstruction extends Instruction implements LocalInstructio
 
 	@Override
 	public void appendUnoptimized (StringBuilder builder, TranspilerConfig config) {
-		appendStandardInstruction(builder, "iinc", "" + local, "" + amount);
+		if (method.getTypedLocals().containsKey(local))
+			builder.append("\tlocal").append(local).append(" += ").append(amount).append(";\n");
+		else
+			appendStandardInstruction(builder, "iinc", "" + local, "" + amount);
 	}
 
 	@Override
@@ -32,6 +35,11 @@ public class IncrementInstruction extends Instruction implements LocalInstructio
 		appendUnoptimized(builder, config);
 	}
 
+	@Override
+	public boolean needsFrame() {
+		return false;
+	}
+
 	@Override
 	public void resolveIO(List<StackEntry> stack) {
 		setInputs();
@@ -3,12 +3,13 @@ package com.thelogicmaster.clearwing.bytecode;
 import com.thelogicmaster.clearwing.*;
 import org.objectweb.asm.util.Printer;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
  * The base class for all instructions and pseudo-instructions
  */
-public abstract class Instruction {
+public abstract class Instruction implements Serializable {
 
 	public static final String LABEL_PREFIX = "label_";
 
@@ -41,6 +42,52 @@ public abstract class Instruction {
 	public void resolveSymbols() {
 	}
 
+	/**
+	 * Replace dynamic dispatch with direct calls where the class hierarchy permits
+	 */
+	public void devirtualize(ClassHierarchy hierarchy) {
+	}
+
+	/**
+	 * Mark the methods that this instruction can call as reachable
+	 */
+	public void markReachable(MethodReachability reachability) {
+	}
+
+	/**
+	 * Get the class that is known to be initialized once this instruction has executed, if any
+	 */
+	public BytecodeClass getInitializedClass() {
+		return null;
+	}
+
+	/**
+	 * Omit the class initialization check, since the class is known to be initialized already
+	 */
+	public void elideInitialization() {
+	}
+
+	/**
+	 * Whether the instruction dereferences its first input, so it can't complete normally if the input is null
+	 */
+	public boolean isNullChecking() {
+		return false;
+	}
+
+	/**
+	 * Omit the null check of the first input, since it is known to never be null
+	 */
+	public void elideNullCheck() {
+	}
+
+	/**
+	 * Whether the instruction needs its method to have a frame, since it can throw, allocate, reach a safepoint, or call a
+	 * method that has a frame
+	 */
+	public boolean needsFrame() {
+		return true;
+	}
+
 	/**
 	 * Append the raw instruction to the method output
 	 */
@@ -161,6 +208,12 @@ public abstract class Instruction {
 	public void collectDependencies(Set<String> dependencies) {
 	}
 
+	/**
+	 * Collect sanitized names of classes whose struct layout is accessed, requiring the full class header
+	 */
+	public void collectLayoutDependencies(Set<String> dependencies) {
+	}
+
 	/**
 	 * Append the default ending for unoptimized instructions
 	 */
@@ -50,6 +50,11 @@ public class IntegerInstruction extends Instruction {
         return opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH;
     }
 
+    @Override
+    public boolean needsFrame() {
+        return opcode == Opcodes.NEWARRAY;
+    }
+
     @Override
     public void resolveIO(List<StackEntry> stack) {
         if (opcode == Opcodes.NEWARRAY)
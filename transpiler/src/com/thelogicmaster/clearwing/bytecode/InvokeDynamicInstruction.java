@@ -26,9 +26,16 @@ public class InvokeDynamicInstruction extends Instruction {
 
     @Override
     public void appendUnoptimized(StringBuilder builder, TranspilerConfig config) {
-        // Todo: Cache proxies without args 
         builder.append("\t{ /* InvokeDynamic */\n");
-        builder.append("\t\tCLINIT(").append(qualifiedProxyClassName).append(");\n");
+        if (proxyFields.length == 0) {
+            appendInstanceDeclaration(builder);
+            builder.append("\t\tPUSH_OBJECT(");
+            appendInstanceFetch(builder);
+            builder.append(");\n");
+            builder.append("\t}\n");
+            return;
+        }
+        // Proxy classes have no static state, so they don't need to be initialized
         builder.append("\t\tauto proxy").append(" = (").append(qualifiedProxyClassName).append(" *) gcAlloc(ctx, &class_").append(qualifiedProxyClassName).append(");\n");
         for (int i = proxyFields.length - 1; i >= 0; i--)
             builder.append("\t\tproxy->F_field").append(i).append(" = ").append(proxyFields[i].isPrimitive() ? "" : "(jref) ").append("(--sp)->").append(proxyFields[i].getBasicType().getStackName()).append(";\n");
@@ -38,9 +45,17 @@ public class InvokeDynamicInstruction extends Instruction {
 
     @Override
     public void appendOptimized(StringBuilder builder, TranspilerConfig config) {
-        // Todo: Cache proxies without args 
         builder.append("\t{ /* InvokeDynamic */\n");
-        builder.append("\t\tCLINIT(").append(qualifiedProxyClassName).append(");\n");
+        if (proxyFields.length == 0) {
+            appendInstanceDeclaration(builder);
+            builder.append("\t");
+            outputs.get(0).buildAssignment(builder);
+            appendInstanceFetch(builder);
+            builder.append(";\n");
+            builder.append("\t}\n");
+            return;
+        }
+        // Proxy classes have no static state, so they don't need to be initialized
         builder.append("\t\tauto proxy").append(" = (").append(qualifiedProxyClassName).append(" *) gcAlloc(ctx, &class_").append(qualifiedProxyClassName).append(");\n");
         for (int i = proxyFields.length - 1; i >= 0; i--)
             builder.append("\t\tproxy->F_field").append(i).append(" = ").append(proxyFields[i].isPrimitive() ? "" : "(jref) ").append(inputs.get(i).arg()).append(";\n");
@@ -49,6 +64,17 @@ public class InvokeDynamicInstruction extends Instruction {
         builder.append("\t}\n");
     }
 
+    /**
+     * Non-capturing lambdas are stateless, so every evaluation of the call site can share a single instance
+     */
+    private void appendInstanceDeclaration(StringBuilder builder) {
+        builder.append("\t\tstatic jobject instance;\n");
+    }
+
+    private void appendInstanceFetch(StringBuilder builder) {
+        builder.append("getLambdaInstance(ctx, &class_").append(qualifiedProxyClassName).append(", &instance)");
+    }
+
     @Override
     public void resolveIO(List<StackEntry> stack) {
         setInputsFromStack(stack, proxyFields.length);
@@ -60,6 +86,11 @@ public class InvokeDynamicInstruction extends Instruction {
         dependencies.add(Utils.sanitizeName(className));
     }
 
+    @Override
+    public void collectLayoutDependencies(Set<String> dependencies) {
+        dependencies.add(Utils.sanitizeName(className));
+    }
+
     public Handle getHandle() {
         return handle;
     }
@@ -110,6 +141,14 @@ public class InvokeDynamicInstruction extends Instruction {
             // Todo: Resolve methods the same way as MethodInstruction, if needed
         }
 
+        @Override
+        public void markReachable(MethodReachability reachability) {
+            if (isStatic || isSpecial || handle.getName().equals("<init>"))
+                reachability.markMethod(target, targetSignature);
+            else
+                reachability.markVirtual(target, targetSignature);
+        }
+
         @Override
         public void appendUnoptimized(StringBuilder builder, TranspilerConfig config) {
             boolean isConstructor = handle.getName().equals("<init>");
@@ -3,13 +3,18 @@ package com.thelogicmaster.clearwing.bytecode;
 import com.thelogicmaster.clearwing.*;
 import org.objectweb.asm.Opcodes;
 
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * A string concatenation from an invokedynamic makeConcatWithConstants call site, which gets specialized for the recipe
+ * so primitives are formatted directly into the result and only the resulting string and its chars are allocated
+ */
 public class InvokeStringConcatInstruction extends Instruction {
     private final MethodSignature signature;
     private final String recipe;
     private final Object[] constants;
-    
+
     public InvokeStringConcatInstruction(BytecodeMethod method, String desc, String recipe, Object[] constants) {
         super(method, Opcodes.INVOKEDYNAMIC);
         signature = new MethodSignature("", desc, null);
@@ -17,57 +22,63 @@ public class InvokeStringConcatInstruction extends Instruction {
         this.constants = constants;
     }
 
-    @Override
-    public void appendUnoptimized(StringBuilder builder, TranspilerConfig config) {
+    /**
+     * Append the concatenation call for the given argument expressions, merging constants into the literal text
+     */
+    private void appendConcat(StringBuilder builder, List<String> args) {
+        builder.append("(jobject) concatStrings(ctx");
+        StringBuilder literal = new StringBuilder();
         int arg = 0;
         int constant = 0;
-        char[] chars = recipe.toCharArray();
-        int values = 0;
-        for (char c : chars)
-            if (c == '\u0001' || c == '\u0002')
-                values++;
-        builder.append("\tPOP_N(").append(values).append("); // Pop string concat args\n");
-        builder.append("\t(sp++)->o = (jobject)concatStringsRecipe(ctx, ").append(Utils.encodeStringLiteral(recipe)).append(".string, ").append(values);
-        for (char c : chars) {
+        for (char c : recipe.toCharArray()) {
             if (c == '\u0001') {
-                JavaType paramType = signature.getParamTypes()[arg];
+                if (!literal.isEmpty()) {
+                    builder.append(", ").append(Utils.encodeUtf16Literal(literal.toString()));
+                    literal.setLength(0);
+                }
                 builder.append(", ");
-                boolean wrapped = paramType.appendWrapperPrefix(new JavaType("Ljava/lang/Object;"), builder);
-                builder.append("sp[").append(arg).append("].").append(paramType.getBasicType().getStackName());
-                if (wrapped)
-                    builder.append(")");
+                JavaType paramType = signature.getParamTypes()[arg];
+                switch (paramType.getBasicType()) {
+                    case BOOLEAN -> builder.append("jbool(").append(args.get(arg)).append(")");
+                    case CHAR -> builder.append("jchar(").append(args.get(arg)).append(")");
+                    case BYTE, SHORT, INT -> builder.append("jint(").append(args.get(arg)).append(")");
+                    case LONG -> builder.append("jlong(").append(args.get(arg)).append(")");
+                    case FLOAT -> builder.append("jfloat(").append(args.get(arg)).append(")");
+                    case DOUBLE -> builder.append("jdouble(").append(args.get(arg)).append(")");
+                    default -> builder.append("Ljava/lang/String;".equals(paramType.getDesc()) ? "(jstring) " : "(jobject) ")
+                            .append(args.get(arg));
+                }
                 arg++;
-            } else if (c == '\u0002') {
-                builder.append(", (jobject)").append(Utils.encodeStringLiteral((String)constants[constant++]));
-            }
+            } else if (c == '\u0002')
+                literal.append(constants[constant++]);
+            else
+                literal.append(c);
         }
-        builder.append(");\n");
+        if (!literal.isEmpty())
+            builder.append(", ").append(Utils.encodeUtf16Literal(literal.toString()));
+        builder.append(")");
+    }
+
+    @Override
+    public void appendUnoptimized(StringBuilder builder, TranspilerConfig config) {
+        int count = signature.getParamTypes().length;
+        if (count > 0)
+            builder.append("\tPOP_N(").append(count).append("); // Pop string concat args\n");
+        ArrayList<String> args = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            args.add("sp[" + i + "]." + signature.getParamTypes()[i].getBasicType().getStackName());
+        builder.append("\tsp->o = ");
+        appendConcat(builder, args);
+        builder.append(";\n\tsp++;\n");
     }
 
     @Override
     public void appendOptimized(StringBuilder builder, TranspilerConfig config) {
-        int arg = 0;
-        int constant = 0;
-        char[] chars = recipe.toCharArray();
-        int values = 0;
-        for (char c : chars)
-            if (c == '\u0001' || c == '\u0002')
-                values++;
-        outputs.get(0).buildAssignment(builder).append("(jobject)concatStringsRecipe(ctx, ").append(Utils.encodeStringLiteral(recipe)).append(".string, ").append(values);
-        for (char c : chars) {
-            if (c == '\u0001') {
-                JavaType paramType = signature.getParamTypes()[arg];
-                builder.append(", ");
-                boolean wrapped = paramType.appendWrapperPrefix(new JavaType("Ljava/lang/Object;"), builder);
-                inputs.get(arg).buildArg(builder);
-                if (wrapped)
-                    builder.append(")");
-                arg++;
-            } else if (c == '\u0002') {
-                builder.append(", (jobject)").append(Utils.encodeStringLiteral((String)constants[constant++]));
-            }
-        }
-        builder.append(");\n");
+        ArrayList<String> args = new ArrayList<>();
+        for (StackEntry input : inputs)
+            args.add(input.arg());
+        appendConcat(outputs.get(0).buildAssignment(builder), args);
+        builder.append(";\n");
     }
 
     @Override
@@ -12,14 +12,33 @@ import java.util.List;
  */
 public class JumpInstruction extends Instruction implements JumpingInstruction {
     private final int label;
+    private TypeVariants unboxedType;
+    private boolean pollingSafepoint;
 
     public JumpInstruction(BytecodeMethod method, int opcode, Label label) {
         super(method, opcode);
         this.label = method.getLabelId(label);
     }
     
+    /**
+     * Compare the primitive values of eliminated boxes of the given type instead of references
+     */
+    public void eliminateBoxing(TypeVariants type) {
+        unboxedType = type;
+    }
+
+    /**
+     * Poll for a safepoint before taking the jump, for loop back edges
+     */
+    public void pollSafepoint() {
+        pollingSafepoint = true;
+    }
+
     private void appendGoto(StringBuilder builder) {
-        builder.append("goto ").append(LABEL_PREFIX).append(label).append(";");
+        if (pollingSafepoint)
+            builder.append("{ SAFEPOINT(); goto ").append(LABEL_PREFIX).append(label).append("; }");
+        else
+            builder.append("goto ").append(LABEL_PREFIX).append(label).append(";");
     }
 
     private void appendCompare(StringBuilder builder, TypeVariants type, String operation) {
@@ -74,8 +93,24 @@ public class JumpInstruction extends Instruction implements JumpingInstruction {
         builder.append("\n");
     }
 
+    /**
+     * Compare eliminated boxes by whether valueOf would have returned the same cached instance for both
+     */
+    private void appendBoxCompareOptimized(StringBuilder builder, boolean equal) {
+        String high = unboxedType == TypeVariants.INT ? "INTEGER_CACHE_HIGH" : "127";
+        String value = inputs.get(0).arg();
+        builder.append("\tif (").append(equal ? "" : "!").append("(").append(value).append(" == ").append(inputs.get(1).arg())
+                .append(" && ").append(value).append(" >= -128 && ").append(value).append(" <= ").append(high).append(")) ");
+        appendGoto(builder);
+    }
+
     @Override
     public void appendOptimized(StringBuilder builder, TranspilerConfig config) {
+        if (unboxedType != null) {
+            appendBoxCompareOptimized(builder, opcode == Opcodes.IF_ACMPEQ);
+            builder.append("\n");
+            return;
+        }
         switch (opcode) {
             case Opcodes.IFEQ -> appendCompareZeroOptimized(builder, TypeVariants.INT, "==");
             case Opcodes.IFNE -> appendCompareZeroOptimized(builder, TypeVariants.INT, "!=");
@@ -102,6 +137,11 @@ public class JumpInstruction extends Instruction implements JumpingInstruction {
         builder.append("\n");
     }
 
+    @Override
+    public boolean needsFrame() {
+        return pollingSafepoint;
+    }
+
     @Override
     public void resolveIO(List<StackEntry> stack) {
         switch (opcode) {
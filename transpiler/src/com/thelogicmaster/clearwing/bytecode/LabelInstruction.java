@@ -48,6 +48,11 @@ public class LabelInstruction extends Instruction {
 		this.location = location;
 	}
 
+	@Override
+	public boolean needsFrame() {
+		return false;
+	}
+
 	@Override
 	public void resolveIO(List<StackEntry> stack) {
 		setInputs();
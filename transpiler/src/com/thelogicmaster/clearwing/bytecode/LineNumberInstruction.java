@@ -25,7 +25,8 @@ public class LineNumberInstruction extends Instruction {
 
 	@Override
 	public void appendUnoptimized (StringBuilder builder, TranspilerConfig config) {
-		if (location >= 0)
+		// Frameless methods can't throw, so they don't track their location
+		if (location >= 0 && !method.isFrameless())
 			builder.append("\tLINE_NUMBER(").append(line).append(", ").append(location).append(");\n");
 	}
 
@@ -34,6 +35,11 @@ public class LineNumberInstruction extends Instruction {
 		appendUnoptimized(builder, config);
 	}
 
+	@Override
+	public boolean needsFrame() {
+		return false;
+	}
+
 	@Override
 	public void resolveIO(List<StackEntry> stack) {
 		setInputs();
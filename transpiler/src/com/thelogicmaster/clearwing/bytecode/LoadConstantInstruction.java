@@ -62,6 +62,11 @@ public class LoadConstantInstruction extends Instruction {
         return true;
     }
 
+    @Override
+    public boolean needsFrame() {
+        return type == TypeVariants.OBJECT;
+    }
+
     @Override
     public void resolveIO(List<StackEntry> stack) {
         setInputs();
@@ -21,6 +21,12 @@ public class MethodInstruction extends Instruction {
     private final boolean isStatic;
     private BytecodeClass ownerClass;
     private BytecodeMethod resolvedMethod;
+    private BytecodeMethod devirtualizedMethod;
+    private BytecodeClass devirtualizedGuard;
+    private BytecodeClass stackObjectClass;
+    private TypeVariants unboxedType;
+    private Intrinsics.Intrinsic intrinsic;
+    private boolean nullChecked = true;
 
     public MethodInstruction(BytecodeMethod method, int opcode, String owner, String name, String desc, boolean onInterface) {
         super(method, opcode);
@@ -54,6 +60,108 @@ public class MethodInstruction extends Instruction {
                 }
     }
 
+    @Override
+    public void devirtualize(ClassHierarchy hierarchy) {
+        devirtualizedMethod = null;
+        devirtualizedGuard = null;
+        if ((opcode != Opcodes.INVOKEVIRTUAL && opcode != Opcodes.INVOKEINTERFACE) || ownerClass == null || resolvedMethod == null || isObjectInterfaceCall())
+            return;
+        BytecodeMethod target = hierarchy.findImplementation(ownerClass, signature);
+        if (target == null)
+            return;
+        // Interfaces may have runtime proxy implementations, so only a guarded direct call to a single implementer is possible
+        if (hierarchy.isOpen(ownerClass)) {
+            List<BytecodeClass> implementations = hierarchy.getImplementations(ownerClass);
+            if (implementations.size() != 1)
+                return;
+            devirtualizedGuard = implementations.get(0);
+        }
+        devirtualizedMethod = target;
+    }
+
+    @Override
+    public void markReachable(MethodReachability reachability) {
+        if (resolvedMethod == null)
+            return;
+        reachability.markMethod(resolvedMethod);
+        if (opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE)
+            reachability.markVirtual(ownerClass, signature);
+    }
+
+    /**
+     * Initialize the stack allocated object this constructor is called on before the call
+     */
+    public void initializeStackObject(BytecodeClass clazz) {
+        stackObjectClass = clazz;
+    }
+
+    /**
+     * Operate on the primitive value in place of an eliminated box of the given type
+     */
+    public void eliminateBoxing(TypeVariants type) {
+        unboxedType = type;
+    }
+
+    /**
+     * Replace the call with the inline expression of a built-in intrinsic
+     */
+    public void inlineIntrinsic(Intrinsics.Intrinsic intrinsic) {
+        this.intrinsic = intrinsic;
+    }
+
+    @Override
+    public boolean isNullChecking() {
+        // Special calls aren't checked here, but the callee checks its receiver on entry
+        return unboxedType == null && (opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE || opcode == Opcodes.INVOKESPECIAL);
+    }
+
+    @Override
+    public void elideNullCheck() {
+        nullChecked = false;
+    }
+
+    @Override
+    public boolean needsFrame() {
+        if (unboxedType != null || stackObjectClass != null)
+            return true;
+        if (intrinsic != null)
+            return intrinsic.throwing() || (!isStatic && nullChecked);
+        BytecodeMethod target = switch (opcode) {
+            case Opcodes.INVOKESTATIC -> resolvedMethod;
+            // A null receiver throws from the callee's entry check, as if from this call
+            case Opcodes.INVOKESPECIAL -> nullChecked ? null : resolvedMethod;
+            case Opcodes.INVOKEVIRTUAL, Opcodes.INVOKEINTERFACE -> devirtualizedGuard == null && !nullChecked ? devirtualizedMethod : null;
+            default -> null;
+        };
+        return target == null || !target.isFrameless();
+    }
+
+    private String checkReceiver(String receiver) {
+        return nullChecked ? "nullCheck(ctx, " + receiver + ")" : receiver;
+    }
+
+    @Override
+    public BytecodeClass getInitializedClass() {
+        if (unboxedType != null || intrinsic != null)
+            return null;
+        // Static methods with generated bodies check for initialization on entry
+        if (opcode == Opcodes.INVOKESTATIC && resolvedMethod != null && resolvedMethod.hasBody() && !resolvedMethod.isIntrinsic())
+            return resolvedMethod.getOwner();
+        return null;
+    }
+
+    /**
+     * Whether this is an interface call to a method declared by Object, which gets dispatched through the vtable
+     */
+    private boolean isObjectInterfaceCall() {
+        if (opcode != Opcodes.INVOKEINTERFACE)
+            return false;
+        for (BytecodeMethod m : BytecodeClass.OBJECT_METHODS)
+            if (m.getDesc().equals(desc) && m.getOriginalName().equals(originalName))
+                return true;
+        return false;
+    }
+
     // Todo: Move to BytecodeClass
     private BytecodeMethod resolveMethod(BytecodeClass clazz) {
         if (clazz == null)
@@ -77,51 +185,73 @@ public class MethodInstruction extends Instruction {
             throw new TranspilerException("Method not resolved: " + owner + "." + originalName + " " + signature.getDesc() + " for " + method);
         if (signature.getParamTypes().length > 0 || opcode != Opcodes.INVOKESTATIC)
             builder.append("\tPOP_N(").append(signature.getParamTypes().length + (opcode != Opcodes.INVOKESTATIC ? 1 : 0)).append("); // Pop method args\n");
+        if (stackObjectClass != null)
+            builder.append("\tinitStackObject(sp[0].o, &class_").append(stackObjectClass.getQualifiedName()).append(");\n");
         builder.append("\t");
         if (!signature.getReturnType().isVoid())
             builder.append("sp->").append(signature.getReturnType().getBasicType().getStackName()).append(" = (").append(signature.getReturnType().getBasicType().getArithmeticType()).append(")");
 
-        int actualOpcode = opcode;
-        String virtualName = name;
-        if (opcode == Opcodes.INVOKEINTERFACE) {
-            for (BytecodeMethod m : BytecodeClass.OBJECT_METHODS) {
-                if (m.getDesc().equals(desc) && m.getOriginalName().equals(originalName)) {
-                    actualOpcode = Opcodes.INVOKEVIRTUAL;
-                    virtualName = m.getName();
-                    break;
-                }
-            }
-        }
-
-        // Todo: Use invocation macros
-        switch (actualOpcode) {
-            case Opcodes.INVOKEVIRTUAL ->
-                builder.append("((func_").append(virtualName.substring(2)).append(") ((void **) nullCheck(ctx, sp[0].o)->vtable)[VTABLE_").append(virtualName.substring(2)).append("])");
-            case Opcodes.INVOKEINTERFACE ->
-                builder.append("((func_").append(resolvedMethod.getName().substring(2)).append(") resolveInterfaceMethod(ctx, &class_")
-                        .append(resolvedMethod.getOwner().getQualifiedName()).append(", INDEX_").append(resolvedMethod.getName().substring(2)).append(", sp[0].o))");
-            case Opcodes.INVOKESPECIAL, Opcodes.INVOKESTATIC -> builder.append(resolvedMethod.getName());
-            default -> throw new TranspilerException("Invalid opcode");
-        }
-        builder.append("(ctx");
-        if (actualOpcode != Opcodes.INVOKESTATIC)
-            builder.append(", sp[0].o");
-        int paramOffset = actualOpcode == Opcodes.INVOKESTATIC ? 0 : 1;
-        for (int i = 0; i < signature.getParamTypes().length; i++) {
-            JavaType type = signature.getParamTypes()[i];
-            builder.append(", ");
-            builder.append("sp[").append(paramOffset + i).append("].").append(type.getBasicType().getStackName());
-        }
-        builder.append(");\n");
+        ArrayList<String> args = new ArrayList<>();
+        int paramOffset = opcode == Opcodes.INVOKESTATIC ? 0 : 1;
+        for (int i = 0; i < signature.getParamTypes().length; i++)
+            args.add("sp[" + (paramOffset + i) + "]." + signature.getParamTypes()[i].getBasicType().getStackName());
+        appendInvocation(builder, "sp[0].o", args);
+        builder.append(";\n");
 
         if (!signature.getReturnType().isVoid())
             builder.append("\tsp++;\n");
     }
 
+    @Override
+    public boolean inlineable() {
+        return unboxedType != null;
+    }
+
+    @Override
+    public void appendInlined(StringBuilder builder) {
+        if (unboxedType == null)
+            throw new TranspilerException("Not inlinable");
+        switch (originalName) {
+            case "valueOf" -> builder.append(inputs.get(0).arg());
+            case "hashCode" -> {
+                if (unboxedType == TypeVariants.LONG)
+                    builder.append("jint(").append(inputs.get(0).arg()).append(" ^ bit_cast<jlong>(bit_cast<uint64_t>(")
+                            .append(inputs.get(0).arg()).append(") >> 32))");
+                else
+                    builder.append(inputs.get(0).arg());
+            }
+            case "equals" -> builder.append(inputs.get(0).arg()).append(" == ").append(inputs.get(1).arg());
+            case "compareTo" -> builder.append("longCompare(").append(inputs.get(0).arg()).append(", ").append(inputs.get(1).arg()).append(")");
+            default -> builder.append(signature.getReturnType().getBasicType().getCppType()).append("(").append(inputs.get(0).arg()).append(")");
+        }
+    }
+
     @Override
     public void appendOptimized(StringBuilder builder, TranspilerConfig config) {
+        if (unboxedType != null) {
+            appendInlined(outputs.get(0).buildAssignment(builder));
+            builder.append(";\n");
+            return;
+        }
+
         if (resolvedMethod == null)
             throw new TranspilerException("Method not resolved: " + owner + "." + originalName + " " + signature.getDesc() + " for " + method);
+
+        ArrayList<String> args = new ArrayList<>();
+        int paramOffset = opcode == Opcodes.INVOKESTATIC ? 0 : 1;
+        for (int i = 0; i < signature.getParamTypes().length; i++)
+            args.add(inputs.get(paramOffset + i).arg());
+
+        if (stackObjectClass != null) {
+            // Inlined arguments have to be evaluated first, since they may read a previous instance in the same storage
+            builder.append("\t{\n");
+            for (int i = 0; i < args.size(); i++)
+                if (inputs.get(paramOffset + i).getOperandType() == OperandType.Inlined) {
+                    builder.append("\tauto arg").append(i).append(" = ").append(args.get(i)).append(";\n");
+                    args.set(i, "arg" + i);
+                }
+            builder.append("\tinitStackObject(").append(inputs.get(0).arg()).append(", &class_").append(stackObjectClass.getQualifiedName()).append(");\n");
+        }
         
         if (!signature.getReturnType().isVoid())
             outputs.get(0).buildAssignment(builder).append("(")
@@ -129,6 +259,43 @@ public class MethodInstruction extends Instruction {
         else
             builder.append("\t");
 
+        appendInvocation(builder, opcode == Opcodes.INVOKESTATIC ? null : inputs.get(0).arg(), args);
+        builder.append(";\n");
+
+        if (stackObjectClass != null)
+            builder.append("\t}\n");
+    }
+
+    /**
+     * Append the call expression for the given receiver (Null if static) and argument expressions
+     */
+    private void appendInvocation(StringBuilder builder, String receiver, List<String> args) {
+        if (intrinsic != null) {
+            ArrayList<String> intrinsicArgs = new ArrayList<>();
+            if (!isStatic)
+                intrinsicArgs.add(checkReceiver(receiver));
+            intrinsicArgs.addAll(args);
+            builder.append(intrinsic.expand(intrinsicArgs));
+            return;
+        }
+
+        if (devirtualizedMethod != null) {
+            if (devirtualizedGuard == null) {
+                builder.append(devirtualizedMethod.getName()).append("(ctx, ").append(checkReceiver(receiver));
+                appendArgs(builder, args);
+            } else {
+                builder.append("(").append(checkReceiver(receiver)).append("->clazz == (jref) &class_").append(devirtualizedGuard.getQualifiedName()).append(" ? ");
+                builder.append(devirtualizedMethod.getName()).append("(ctx, ").append(receiver);
+                appendArgs(builder, args);
+                builder.append(" : ");
+                appendDispatch(builder, opcode, name, receiver);
+                builder.append("(ctx, ").append(receiver);
+                appendArgs(builder, args);
+                builder.append(")");
+            }
+            return;
+        }
+
         int actualOpcode = opcode;
         String virtualName = name;
         if (opcode == Opcodes.INVOKEINTERFACE) {
@@ -141,27 +308,38 @@ public class MethodInstruction extends Instruction {
             }
         }
 
+        appendDispatch(builder, actualOpcode, virtualName, receiver);
+        builder.append("(ctx");
+        if (actualOpcode != Opcodes.INVOKESTATIC)
+            builder.append(", ").append(receiver);
+        appendArgs(builder, args);
+    }
+
+    /**
+     * Append the function to call, resolving the vtable or interface method if needed
+     */
+    private void appendDispatch(StringBuilder builder, int actualOpcode, String virtualName, String receiver) {
         // Todo: Use invocation macros
         switch (actualOpcode) {
             case Opcodes.INVOKEVIRTUAL ->
-                    builder.append("((func_").append(virtualName.substring(2)).append(") ((void **) nullCheck(ctx, ").append(inputs.get(0).arg())
-                            .append(")->vtable)[VTABLE_").append(virtualName.substring(2)).append("])");
+                    builder.append("((func_").append(virtualName.substring(2)).append(") ((void **) ").append(checkReceiver(receiver))
+                            .append("->vtable)[VTABLE_").append(virtualName.substring(2)).append("])");
             case Opcodes.INVOKEINTERFACE ->
                     builder.append("((func_").append(resolvedMethod.getName().substring(2)).append(") resolveInterfaceMethod(ctx, &class_")
                             .append(resolvedMethod.getOwner().getQualifiedName()).append(", INDEX_").append(resolvedMethod.getName().substring(2))
-                            .append(", ").append(inputs.get(0).arg()).append("))");
+                            .append(", ").append(receiver).append("))");
             case Opcodes.INVOKESPECIAL, Opcodes.INVOKESTATIC -> builder.append(resolvedMethod.getName());
             default -> throw new TranspilerException("Invalid opcode");
         }
-        builder.append("(ctx");
-        if (actualOpcode != Opcodes.INVOKESTATIC)
-            builder.append(", ").append(inputs.get(0).arg());
-        int paramOffset = actualOpcode == Opcodes.INVOKESTATIC ? 0 : 1;
-        for (int i = 0; i < signature.getParamTypes().length; i++) {
-            builder.append(", ");
-            inputs.get(paramOffset + i).buildArg(builder);
-        }
-        builder.append(");\n");
+    }
+
+    /**
+     * Append the remaining arguments after the context and receiver, then close the call
+     */
+    private static void appendArgs(StringBuilder builder, List<String> args) {
+        for (String arg: args)
+            builder.append(", ").append(arg);
+        builder.append(")");
     }
 
     @Override
@@ -188,6 +366,16 @@ public class MethodInstruction extends Instruction {
             dependencies.add(signature.getReturnType().getReferenceType());
         if (resolvedMethod != null)
             dependencies.add(resolvedMethod.getOwner().getName());
+        if (devirtualizedMethod != null)
+            dependencies.add(devirtualizedMethod.getOwner().getName());
+        if (devirtualizedGuard != null)
+            dependencies.add(devirtualizedGuard.getName());
+    }
+
+    @Override
+    public void collectLayoutDependencies(Set<String> dependencies) {
+        if (intrinsic != null && intrinsic.accessesLayout())
+            dependencies.add(resolvedMethod.getOwner().getName());
     }
 
     public String getOwner() {
@@ -210,6 +398,10 @@ public class MethodInstruction extends Instruction {
         return desc;
     }
 
+    public BytecodeMethod getResolvedMethod() {
+        return resolvedMethod;
+    }
+
     public boolean isOnInterface() {
         return onInterface;
     }
@@ -53,6 +53,11 @@ public class SwitchInstruction extends Instruction implements JumpingInstruction
 		appendSwitch(builder, inputs.get(0).arg());
 	}
 
+	@Override
+	public boolean needsFrame() {
+		return false;
+	}
+
 	@Override
 	public void resolveIO(List<StackEntry> stack) {
 		setInputsFromStack(stack, 1);
@@ -3,6 +3,7 @@ package com.thelogicmaster.clearwing.bytecode;
 import com.thelogicmaster.clearwing.*;
 import org.objectweb.asm.Opcodes;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -14,6 +15,9 @@ public class TypeInstruction extends Instruction {
     private final String type;
     private final String qualifiedType;
     private final JavaType javaType;
+    private BytecodeClass typeClass;
+    private boolean initializationElided;
+    private int stackObject = -1;
 
     public TypeInstruction(BytecodeMethod method, int opcode, String type) {
         super(method, opcode);
@@ -22,12 +26,22 @@ public class TypeInstruction extends Instruction {
         javaType = new JavaType(type);
     }
 
+    @Override
+    public void processHierarchy(HashMap<String, BytecodeClass> classMap) {
+        if (opcode == Opcodes.NEW)
+            typeClass = classMap.get(Utils.sanitizeName(type));
+    }
+
     @Override
     public void appendUnoptimized(StringBuilder builder, TranspilerConfig config) {
         switch (opcode) {
             case Opcodes.NEW -> {
-                builder.append("\tCLINIT(").append(qualifiedType).append(");\n");
-                builder.append("\tPUSH_OBJECT(gcAlloc(ctx, &class_").append(qualifiedType).append("));\n");
+                if (!initializationElided)
+                    builder.append("\tCLINIT(").append(qualifiedType).append(");\n");
+                if (stackObject >= 0)
+                    builder.append("\tPUSH_OBJECT((jobject) &frame[").append(method.getStackObjectOffset(stackObject)).append("]);\n");
+                else
+                    builder.append("\tPUSH_OBJECT(gcAlloc(ctx, &class_").append(qualifiedType).append("));\n");
             }
             case Opcodes.ANEWARRAY -> appendStandardInstruction(builder, "anewarray", javaType.generateClassFetch());
             case Opcodes.CHECKCAST -> appendStandardInstruction(builder, "checkcast", javaType.generateClassFetch());
@@ -40,8 +54,12 @@ public class TypeInstruction extends Instruction {
     public void appendOptimized(StringBuilder builder, TranspilerConfig config) {
         switch (opcode) {
             case Opcodes.NEW -> {
-                builder.append("\tCLINIT(").append(qualifiedType).append(");\n");
-                outputs.get(0).buildAssignment(builder).append("gcAlloc(ctx, &class_").append(qualifiedType).append(");\n");;
+                if (!initializationElided)
+                    builder.append("\tCLINIT(").append(qualifiedType).append(");\n");
+                if (stackObject >= 0)
+                    outputs.get(0).buildAssignment(builder).append("(jobject) &frame[").append(method.getStackObjectOffset(stackObject)).append("];\n");
+                else
+                    outputs.get(0).buildAssignment(builder).append("gcAlloc(ctx, &class_").append(qualifiedType).append(");\n");
             }
             case Opcodes.ANEWARRAY -> outputs.get(0).buildAssignment(builder).append("(jobject)createArray(ctx, ")
                     .append(javaType.generateClassFetch()).append(", ").append(inputs.get(0).arg()).append(");\n");
@@ -53,6 +71,23 @@ public class TypeInstruction extends Instruction {
         }
     }
 
+    @Override
+    public BytecodeClass getInitializedClass() {
+        return typeClass;
+    }
+
+    @Override
+    public void elideInitialization() {
+        initializationElided = true;
+    }
+
+    /**
+     * Place the new object in the method's stack frame rather than the heap, since it doesn't escape the method
+     */
+    public void allocateOnStack() {
+        stackObject = method.addStackObject(typeClass);
+    }
+
     @Override
     public boolean inlineable() {
         return opcode == Opcodes.CHECKCAST || opcode == Opcodes.INSTANCEOF;
@@ -98,6 +133,12 @@ public class TypeInstruction extends Instruction {
             dependencies.add(javaType.getRegistryTypeName());
     }
 
+    @Override
+    public void collectLayoutDependencies(Set<String> dependencies) {
+        if (stackObject >= 0)
+            dependencies.add(typeClass.getName());
+    }
+
     public String getType() {
         return type;
     }
@@ -105,4 +146,8 @@ public class TypeInstruction extends Instruction {
     public String getQualifiedType() {
         return qualifiedType;
     }
+
+    public BytecodeClass getTypeClass() {
+        return typeClass;
+    }
 }
@@ -11,13 +11,29 @@ import java.util.List;
 public class VariableInstruction extends Instruction implements LocalInstruction {
 
     private final int local;
+    private TypeVariants unboxedType;
 
     public VariableInstruction(BytecodeMethod method, int opcode, int local) {
         super(method, opcode);
         this.local = local;
     }
 
+    /**
+     * Store the primitive in place of a local that only ever holds eliminated boxes
+     */
+    public void eliminateBoxing(TypeVariants type) {
+        unboxedType = type;
+    }
+
     private void appendLoadStore(StringBuilder builder, int baseOpcode, String suffix) {
+        if (method.getTypedLocals().containsKey(local)) {
+            String stackValue = getLocalType().getStackName();
+            if (baseOpcode == Opcodes.ILOAD)
+                builder.append("\t(sp++)->").append(stackValue).append(" = local").append(local).append(";\n");
+            else
+                builder.append("\tlocal").append(local).append(" = (--sp)->").append(stackValue).append(";\n");
+            return;
+        }
         String name = (TypeVariants.values()[TypeVariants.INT.ordinal() + opcode - baseOpcode].name().toLowerCase().charAt(0) + "").replace("o", "a") + suffix;
         appendStandardInstruction(builder, name, "" + local);
     }
@@ -35,10 +51,9 @@ public class VariableInstruction extends Instruction implements LocalInstruction
     public void appendOptimized(StringBuilder builder, TranspilerConfig config) {
         switch (opcode) {
             case Opcodes.ILOAD, Opcodes.LLOAD, Opcodes.FLOAD, Opcodes.DLOAD, Opcodes.ALOAD ->
-                    outputs.get(0).buildAssignment(builder).append("frame[").append(local).append("].")
-                            .append(getLocalType().getStackName()).append(";\n");
+                    outputs.get(0).buildAssignment(builder).append(method.getLocalReference(local, getLocalType())).append(";\n");
             case Opcodes.ISTORE, Opcodes.LSTORE, Opcodes.FSTORE, Opcodes.DSTORE, Opcodes.ASTORE ->
-                    builder.append("\tframe[").append(local).append("].").append(getLocalType().getStackName())
+                    builder.append("\t").append(method.getLocalReference(local, getLocalType()))
                             .append(" = ").append(inputs.get(0).arg()).append(";\n");
             default -> throw new TranspilerException("Invalid opcode");
         }
@@ -48,7 +63,7 @@ public class VariableInstruction extends Instruction implements LocalInstruction
     public void appendInlined(StringBuilder builder) {
         switch (opcode) {
             case Opcodes.ILOAD, Opcodes.LLOAD, Opcodes.FLOAD, Opcodes.DLOAD, Opcodes.ALOAD ->
-                    builder.append("frame[").append(local).append("].").append(getLocalType().getStackName());
+                    builder.append(method.getLocalReference(local, getLocalType()));
             default -> throw new TranspilerException("Not inlinable");
         }
     }
@@ -61,6 +76,11 @@ public class VariableInstruction extends Instruction implements LocalInstruction
         };
     }
 
+    @Override
+    public boolean needsFrame() {
+        return false;
+    }
+
     @Override
     public void resolveIO(List<StackEntry> stack) {
         switch (opcode) {
@@ -75,6 +95,8 @@ public class VariableInstruction extends Instruction implements LocalInstruction
 
     @Override
     public TypeVariants getLocalType() {
+        if (unboxedType != null)
+            return unboxedType;
         return switch (opcode) {
             case Opcodes.ILOAD, Opcodes.ISTORE -> TypeVariants.INT;
             case Opcodes.LLOAD, Opcodes.LSTORE -> TypeVariants.LONG;
@@ -11,10 +11,53 @@ import java.util.*;
  */
 public class ZeroOperandInstruction extends Instruction {
 
+    private boolean boundsChecked = true;
+    private boolean nullChecked = true;
+
     public ZeroOperandInstruction(BytecodeMethod method, int opcode) {
         super(method, opcode);
     }
 
+    /**
+     * Skip the bounds check of an array access with an index that is known to be in bounds
+     */
+    public void eliminateBoundsCheck() {
+        boundsChecked = false;
+    }
+
+    @Override
+    public boolean isNullChecking() {
+        return opcode == Opcodes.ARRAYLENGTH || (opcode >= Opcodes.IALOAD && opcode <= Opcodes.SALOAD)
+                || (opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE);
+    }
+
+    @Override
+    public void elideNullCheck() {
+        nullChecked = false;
+    }
+
+    @Override
+    public boolean needsFrame() {
+        return switch (opcode) {
+            case Opcodes.IDIV, Opcodes.IREM, Opcodes.LDIV, Opcodes.LREM, Opcodes.ATHROW, Opcodes.MONITORENTER, Opcodes.MONITOREXIT,
+                 Opcodes.ARRAYLENGTH, Opcodes.AASTORE -> true;
+            case Opcodes.IALOAD, Opcodes.LALOAD, Opcodes.FALOAD, Opcodes.DALOAD, Opcodes.AALOAD, Opcodes.BALOAD, Opcodes.CALOAD, Opcodes.SALOAD,
+                 Opcodes.IASTORE, Opcodes.LASTORE, Opcodes.FASTORE, Opcodes.DASTORE, Opcodes.BASTORE, Opcodes.CASTORE, Opcodes.SASTORE ->
+                    nullChecked || boundsChecked;
+            default -> false;
+        };
+    }
+
+    private String getArrayAccess() {
+        if (boundsChecked)
+            return nullChecked ? "ARRAY_ACCESS(" : "ARRAY_ACCESS_NON_NULL(";
+        return nullChecked ? "ARRAY_ACCESS_IN_BOUNDS(" : "ARRAY_ACCESS_UNCHECKED(";
+    }
+
+    private String getArrayLength(String array) {
+        return nullChecked ? "((jarray) nullCheck(ctx, " + array + "))->length" : "((jarray) " + array + ")->length";
+    }
+
     private String getOpcodeConst(int zeroOpcode) {
         return Integer.toString(opcode - zeroOpcode);
     }
@@ -122,13 +165,13 @@ public class ZeroOperandInstruction extends Instruction {
             case Opcodes.ACONST_NULL -> outputs.get(0).buildAssignment(builder).append("jobject(nullptr);\n");
             case Opcodes.IALOAD, Opcodes.LALOAD, Opcodes.FALOAD, Opcodes.DALOAD, Opcodes.AALOAD, Opcodes.BALOAD, Opcodes.CALOAD, Opcodes.SALOAD -> {
                 type = opcodeType(Opcodes.IALOAD);
-                outputs.get(0).buildAssignment(builder).append("(").append(type.getArithmeticType()).append(")ARRAY_ACCESS(")
+                outputs.get(0).buildAssignment(builder).append("(").append(type.getArithmeticType()).append(")").append(getArrayAccess())
                         .append(type.getCppType()).append(", ").append(inputs.get(0).arg()).append(", ")
                         .append(inputs.get(1).arg()).append(");\n");
             }
             case Opcodes.IASTORE, Opcodes.LASTORE, Opcodes.FASTORE, Opcodes.DASTORE, Opcodes.AASTORE, Opcodes.BASTORE, Opcodes.CASTORE, Opcodes.SASTORE -> {
                 type = opcodeType(Opcodes.IASTORE);
-                builder.append("\tARRAY_ACCESS(").append(type.getCppType()).append(", ").append(inputs.get(0).arg()).append(", ")
+                builder.append("\t").append(getArrayAccess()).append(type.getCppType()).append(", ").append(inputs.get(0).arg()).append(", ")
                         .append(inputs.get(1).arg()).append(") = ").append(inputs.get(2).arg()).append(";\n");
             }
             case Opcodes.POP, Opcodes.POP2, Opcodes.DUP, Opcodes.DUP_X1, Opcodes.DUP_X2, Opcodes.DUP2, Opcodes.DUP2_X1, Opcodes.DUP2_X2, Opcodes.SWAP ->
@@ -187,7 +230,7 @@ public class ZeroOperandInstruction extends Instruction {
             case Opcodes.DCMPG ->
                 outputs.get(0).buildAssignment(builder).append("doubleCompare(").append(inputs.get(0).arg()).append(", ").append(inputs.get(1).arg()).append(", 1);\n");
             case Opcodes.ARRAYLENGTH ->
-                outputs.get(0).buildAssignment(builder).append("((jarray) nullCheck(ctx, ").append(inputs.get(0).arg()).append("))->length;\n");
+                outputs.get(0).buildAssignment(builder).append(getArrayLength(inputs.get(0).arg())).append(";\n");
             case Opcodes.ATHROW -> {
                 builder.append("\tthrowException(ctx, ").append(inputs.get(0).arg()).append(");");
                 appendThrowReturn(builder);
@@ -219,7 +262,7 @@ public class ZeroOperandInstruction extends Instruction {
             case Opcodes.ACONST_NULL -> builder.append("jobject(nullptr)");
             case Opcodes.IALOAD, Opcodes.LALOAD, Opcodes.FALOAD, Opcodes.DALOAD, Opcodes.AALOAD, Opcodes.BALOAD, Opcodes.CALOAD, Opcodes.SALOAD -> {
                 type = opcodeType(Opcodes.IALOAD);
-                builder.append("(").append(type.getArithmeticType()).append(")ARRAY_ACCESS(")
+                builder.append("(").append(type.getArithmeticType()).append(")").append(getArrayAccess())
                         .append(type.getCppType()).append(", ").append(inputs.get(0).arg()).append(", ")
                         .append(inputs.get(1).arg()).append(")");
             }
@@ -277,7 +320,7 @@ public class ZeroOperandInstruction extends Instruction {
             case Opcodes.DCMPG ->
                     builder.append("doubleCompare(").append(inputs.get(0).arg()).append(", ").append(inputs.get(1).arg()).append(", 1)");
             case Opcodes.ARRAYLENGTH ->
-                    builder.append("((jarray) nullCheck(ctx, ").append(inputs.get(0).arg()).append("))->length");
+                    builder.append(getArrayLength(inputs.get(0).arg()));
             default -> throw new TranspilerException("Not inlinable");
         }
     }
@@ -0,0 +1,146 @@
+package com.thelogicmaster.clearwing;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundsCheckEliminationTest {
+
+	@SuppressWarnings("unused")
+	static class Loops {
+
+		static int sum(int[] array) {
+			int sum = 0;
+			for (int i = 0; i < array.length; i++)
+				sum += array[i];
+			return sum;
+		}
+
+		static int capturedLength(int[] array) {
+			int sum = 0;
+			int length = array.length;
+			for (int i = 0; i < length; i++)
+				sum += array[i];
+			return sum;
+		}
+
+		static int indexWritten(int[] array) {
+			int sum = 0;
+			for (int i = 0; i < array.length; i++) {
+				sum += array[i];
+				i++;
+				sum += array[i];
+			}
+			return sum;
+		}
+
+		static int arrayWritten(int[] array, int[] other) {
+			int sum = 0;
+			for (int i = 0; i < array.length; i++) {
+				sum += array[i];
+				array = other;
+			}
+			return sum;
+		}
+
+		static int negativeStart(int[] array) {
+			int sum = 0;
+			for (int i = -1; i < array.length; i++)
+				sum += array[i];
+			return sum;
+		}
+	}
+
+	private static final TestClasses classes = new TestClasses(Loops.class);
+
+	private static final String GENERATED = "com/thelogicmaster/clearwing/BoundsCheckEliminationTest$Generated";
+
+	/**
+	 * Generate a counted loop over an array, optionally with a jump from before the loop into its body that skips the
+	 * loop condition, which javac never emits
+	 */
+	private static void generateLoop(ClassWriter writer, String name, boolean enterBody) {
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_STATIC, name, "([II)I", null, null);
+		Label header = new Label();
+		Label body = new Label();
+		Label exit = new Label();
+		method.visitCode();
+		method.visitInsn(Opcodes.ICONST_0);
+		method.visitVarInsn(Opcodes.ISTORE, 2);
+		method.visitInsn(Opcodes.ICONST_0);
+		method.visitVarInsn(Opcodes.ISTORE, 3);
+		if (enterBody) {
+			method.visitVarInsn(Opcodes.ILOAD, 1);
+			method.visitJumpInsn(Opcodes.IFNE, body);
+		}
+		method.visitLabel(header);
+		method.visitVarInsn(Opcodes.ILOAD, 3);
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitInsn(Opcodes.ARRAYLENGTH);
+		method.visitJumpInsn(Opcodes.IF_ICMPGE, exit);
+		method.visitLabel(body);
+		method.visitVarInsn(Opcodes.ILOAD, 2);
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitVarInsn(Opcodes.ILOAD, 3);
+		method.visitInsn(Opcodes.IALOAD);
+		method.visitInsn(Opcodes.IADD);
+		method.visitVarInsn(Opcodes.ISTORE, 2);
+		method.visitIincInsn(3, 1);
+		method.visitJumpInsn(Opcodes.GOTO, header);
+		method.visitLabel(exit);
+		method.visitVarInsn(Opcodes.ILOAD, 2);
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+	}
+
+	private static final TestClasses generated;
+
+	static {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_6, Opcodes.ACC_SUPER, GENERATED, null, "java/lang/Object", null);
+		generateLoop(writer, "headerEntry", false);
+		generateLoop(writer, "bodyEntry", true);
+		writer.visitEnd();
+		generated = new TestClasses(writer.toByteArray());
+	}
+
+	private static int eliminate(String method) {
+		return BoundsCheckElimination.eliminateBoundsChecks(classes.getMethod(Loops.class, method));
+	}
+
+	private static int eliminateGenerated(String method) {
+		return BoundsCheckElimination.eliminateBoundsChecks(generated.getMethod(GENERATED, method));
+	}
+
+	@Test
+	public void countedLoopsSkipChecks() {
+		assertEquals(1, eliminate("sum"));
+		assertEquals(1, eliminate("capturedLength"));
+	}
+
+	@Test
+	public void indexWrittenInBodyIsChecked() {
+		assertEquals(0, eliminate("indexWritten"));
+	}
+
+	@Test
+	public void arrayWrittenInBodyIsChecked() {
+		assertEquals(0, eliminate("arrayWritten"));
+	}
+
+	@Test
+	public void negativeStartIsChecked() {
+		assertEquals(0, eliminate("negativeStart"));
+	}
+
+	@Test
+	public void loopsEnteredOutsideTheHeaderAreChecked() {
+		assertEquals(1, eliminateGenerated("headerEntry"));
+		assertEquals(0, eliminateGenerated("bodyEntry"));
+	}
+}
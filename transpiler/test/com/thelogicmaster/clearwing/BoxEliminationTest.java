@@ -0,0 +1,89 @@
+package com.thelogicmaster.clearwing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoxEliminationTest {
+
+	@SuppressWarnings("unused")
+	static class Boxes {
+
+		static Object shared;
+
+		static int unboxed(int value) {
+			Integer box = Integer.valueOf(value);
+			return box.intValue() + 1;
+		}
+
+		static int hashed(long value) {
+			return Long.valueOf(value).hashCode();
+		}
+
+		static boolean compared(int a, int b) {
+			return Integer.valueOf(a).equals(Integer.valueOf(b));
+		}
+
+		static Object returned(int value) {
+			return Integer.valueOf(value);
+		}
+
+		static void stored(int value) {
+			shared = Integer.valueOf(value);
+		}
+
+		static boolean sameLocal(int value) {
+			Integer box = Integer.valueOf(value);
+			return box == box;
+		}
+
+		static boolean hashedDouble(double value) {
+			return Double.valueOf(value).hashCode() == 0;
+		}
+
+		static int reassigned(int value, Integer other) {
+			Integer box = Integer.valueOf(value);
+			if (value > 0)
+				box = other;
+			return box.intValue();
+		}
+	}
+
+	private static final TestClasses classes = new TestClasses(Boxes.class);
+
+	private static int eliminate(String method) {
+		return BoxElimination.eliminateBoxing(classes.getMethod(Boxes.class, method));
+	}
+
+	@Test
+	public void unboxedBoxesAreEliminated() {
+		assertEquals(1, eliminate("unboxed"));
+	}
+
+	@Test
+	public void hashedAndComparedBoxesAreEliminated() {
+		assertEquals(1, eliminate("hashed"));
+		assertEquals(2, eliminate("compared"));
+	}
+
+	@Test
+	public void escapingBoxesAreKept() {
+		assertEquals(0, eliminate("returned"));
+		assertEquals(0, eliminate("stored"));
+	}
+
+	@Test
+	public void referenceComparisonsOfOneLocalAreKept() {
+		assertEquals(0, eliminate("sameLocal"));
+	}
+
+	@Test
+	public void doubleHashesAreKept() {
+		assertEquals(0, eliminate("hashedDouble"));
+	}
+
+	@Test
+	public void localsHoldingOtherObjectsAreKept() {
+		assertEquals(0, eliminate("reassigned"));
+	}
+}
@@ -0,0 +1,118 @@
+package com.thelogicmaster.clearwing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EscapeAnalysisTest {
+
+	@SuppressWarnings("unused")
+	static class Point {
+		int x;
+		int y;
+
+		Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		int sum() {
+			return x + y;
+		}
+
+		synchronized int lockedSum() {
+			return x + y;
+		}
+	}
+
+	@SuppressWarnings("unused")
+	static class Holder {
+		Point point;
+	}
+
+	@SuppressWarnings("unused")
+	static class Allocations {
+
+		static Point shared;
+
+		static int local() {
+			Point point = new Point(1, 2);
+			return point.sum();
+		}
+
+		static void storedToStatic() {
+			shared = new Point(1, 2);
+		}
+
+		static void storedToField(Holder holder) {
+			holder.point = new Point(1, 2);
+		}
+
+		static Point returned() {
+			return new Point(1, 2);
+		}
+
+		static int synchronizedCallee() {
+			Point point = new Point(1, 2);
+			return point.lockedSum();
+		}
+
+		static int loop() {
+			int sum = 0;
+			for (int i = 0; i < 10; i++) {
+				Point point = new Point(i, i);
+				sum += point.sum();
+			}
+			return sum;
+		}
+
+		static int loopWithPrevious() {
+			int sum = 0;
+			Point previous = null;
+			for (int i = 0; i < 10; i++) {
+				Point point = new Point(i, i);
+				if (previous != null)
+					sum += previous.sum();
+				previous = point;
+			}
+			return sum;
+		}
+	}
+
+	private static final TestClasses classes = new TestClasses(Point.class, Holder.class, Allocations.class);
+
+	private static int allocate(String method) {
+		return new EscapeAnalysis().allocateOnStack(classes.getMethod(Allocations.class, method));
+	}
+
+	@Test
+	public void localObjectsAreStackAllocated() {
+		assertEquals(1, allocate("local"));
+	}
+
+	@Test
+	public void storedObjectsEscape() {
+		assertEquals(0, allocate("storedToStatic"));
+		assertEquals(0, allocate("storedToField"));
+	}
+
+	@Test
+	public void returnedObjectsEscape() {
+		assertEquals(0, allocate("returned"));
+	}
+
+	@Test
+	public void synchronizedCalleesEscape() {
+		assertEquals(0, allocate("synchronizedCallee"));
+	}
+
+	@Test
+	public void loopAllocationsReuseStorage() {
+		assertEquals(1, allocate("loop"));
+	}
+
+	@Test
+	public void loopAllocationsWithLivePreviousInstanceEscape() {
+		assertEquals(0, allocate("loopWithPrevious"));
+	}
+}
@@ -0,0 +1,139 @@
+package com.thelogicmaster.clearwing;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FramelessMethodsTest {
+
+	@SuppressWarnings("unused")
+	static class Methods {
+
+		int value;
+
+		int getValue() {
+			return value;
+		}
+
+		int getValueTwice() {
+			return getValue() + getValue();
+		}
+
+		static int square(int value) {
+			return value * value;
+		}
+
+		static int squareSum(int a, int b) {
+			return square(a) + square(b);
+		}
+
+		static int divide(int a, int b) {
+			return a / b;
+		}
+
+		static boolean isEven(int value) {
+			return value == 0 || isOdd(value - 1);
+		}
+
+		static boolean isOdd(int value) {
+			return value != 0 && isEven(value - 1);
+		}
+
+		static int allocating() {
+			return new Object().hashCode();
+		}
+	}
+
+	private static final String GENERATED = "com/thelogicmaster/clearwing/FramelessMethodsTest$Generated";
+
+	/**
+	 * Generate a class with INVOKESPECIAL calls to a private method, which javac calls with INVOKEVIRTUAL instead
+	 */
+	private static byte[] generateClass() {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_6, Opcodes.ACC_SUPER, GENERATED, null, "java/lang/Object", null);
+		writer.visitField(0, "value", "I", null, null).visitEnd();
+
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PRIVATE, "getValue", "()I", null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitFieldInsn(Opcodes.GETFIELD, GENERATED, "value", "I");
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+
+		generateSpecialCall(writer, "callOther", Opcodes.ACC_STATIC, "(L" + GENERATED + ";)I");
+		generateSpecialCall(writer, "callSelf", 0, "()I");
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static void generateSpecialCall(ClassWriter writer, String name, int access, String desc) {
+		MethodVisitor method = writer.visitMethod(access, name, desc, null, null);
+		method.visitCode();
+		method.visitVarInsn(Opcodes.ALOAD, 0);
+		method.visitMethodInsn(Opcodes.INVOKESPECIAL, GENERATED, "getValue", "()I", false);
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+	}
+
+	private static final TestClasses classes = new TestClasses(Methods.class);
+	private static final TestClasses generated = new TestClasses(generateClass());
+
+	static {
+		// Frames depend on which calls were devirtualized and which null checks were eliminated, as in the transpiler
+		ArrayList<BytecodeClass> all = new ArrayList<>(classes.getClasses());
+		all.addAll(generated.getClasses());
+		HashMap<String, BytecodeClass> classMap = new HashMap<>(classes.getClassMap());
+		classMap.putAll(generated.getClassMap());
+		ClassHierarchy hierarchy = new ClassHierarchy(all);
+		for (BytecodeClass clazz: all)
+			clazz.devirtualize(hierarchy, classMap);
+		for (BytecodeClass clazz: all)
+			for (BytecodeMethod method: clazz.getMethods())
+				NullCheckElimination.eliminateNullChecks(method);
+		FramelessMethods.markFramelessMethods(all);
+	}
+
+	private static boolean isFrameless(String method) {
+		return classes.getMethod(Methods.class, method).isFrameless();
+	}
+
+	@Test
+	public void leafMethodsAreFrameless() {
+		assertTrue(isFrameless("getValue"));
+		assertTrue(isFrameless("square"));
+	}
+
+	@Test
+	public void callersOfFramelessMethodsAreFrameless() {
+		assertTrue(isFrameless("getValueTwice"));
+		assertTrue(isFrameless("squareSum"));
+	}
+
+	@Test
+	public void throwingAndAllocatingMethodsKeepFrames() {
+		assertFalse(isFrameless("divide"));
+		assertFalse(isFrameless("allocating"));
+	}
+
+	@Test
+	public void mutuallyRecursiveMethodsKeepFrames() {
+		assertFalse(isFrameless("isEven"));
+		assertFalse(isFrameless("isOdd"));
+	}
+
+	@Test
+	public void specialCallsWithEntryNullChecksKeepFrames() {
+		assertTrue(generated.getMethod(GENERATED, "getValue").isFrameless());
+		assertTrue(generated.getMethod(GENERATED, "callSelf").isFrameless());
+		assertFalse(generated.getMethod(GENERATED, "callOther").isFrameless());
+	}
+}
@@ -0,0 +1,80 @@
+package com.thelogicmaster.clearwing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MethodReachabilityTest {
+
+	@SuppressWarnings("unused")
+	static abstract class Shape {
+		abstract int area();
+
+		int unused() {
+			return 0;
+		}
+	}
+
+	@SuppressWarnings("unused")
+	static class Square extends Shape {
+		int area() {
+			return 4;
+		}
+	}
+
+	@SuppressWarnings("unused")
+	static class Circle extends Shape {
+		int area() {
+			return 3;
+		}
+	}
+
+	@SuppressWarnings("unused")
+	static class Program {
+		static int entry() {
+			Shape shape = new Square();
+			return shape.area() + helper();
+		}
+
+		static int helper() {
+			return 1;
+		}
+
+		static int dead() {
+			return helper();
+		}
+	}
+
+	private static final TestClasses classes = new TestClasses(Shape.class, Square.class, Circle.class, Program.class);
+
+	static {
+		MethodReachability reachability = new MethodReachability(classes.getClasses(), classes.getClassMap());
+		reachability.markMethod(classes.getMethod(Program.class, "entry"));
+		reachability.analyze();
+		reachability.trim();
+	}
+
+	private static boolean isTrimmed(Class<?> fixture, String method) {
+		return classes.getMethod(fixture, method).isTrimmed();
+	}
+
+	@Test
+	public void calledMethodsAreKept() {
+		assertFalse(isTrimmed(Program.class, "entry"));
+		assertFalse(isTrimmed(Program.class, "helper"));
+		assertFalse(isTrimmed(Square.class, "<init>"));
+		assertFalse(isTrimmed(Shape.class, "<init>"));
+	}
+
+	@Test
+	public void uncalledMethodsAreTrimmed() {
+		assertTrue(isTrimmed(Program.class, "dead"));
+		assertTrue(isTrimmed(Shape.class, "unused"));
+	}
+
+	@Test
+	public void virtualCallsKeepEveryImplementation() {
+		assertFalse(isTrimmed(Square.class, "area"));
+		assertFalse(isTrimmed(Circle.class, "area"));
+	}
+}
@@ -0,0 +1,104 @@
+package com.thelogicmaster.clearwing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NullCheckEliminationTest {
+
+	@SuppressWarnings("unused")
+	static class Checks {
+
+		Object field;
+
+		static int dereferencedTwice(String string) {
+			return string.length() + string.length();
+		}
+
+		static int reassigned(String string, String other) {
+			int length = string.length();
+			string = other;
+			return length + string.length();
+		}
+
+		static int reassignedInHandler(String string) {
+			int length = string.length();
+			try {
+				length += Integer.parseInt(string);
+			} catch (NumberFormatException e) {
+				string = null;
+			}
+			return length + string.length();
+		}
+
+		int receiverInHandler(String string) {
+			try {
+				return Integer.parseInt(string);
+			} catch (NumberFormatException e) {
+				return field.hashCode();
+			}
+		}
+
+		static int nonNullBranch(String string) {
+			if (string == null)
+				return 0;
+			return string.length();
+		}
+
+		static int nullBranch(String string) {
+			if (string != null)
+				return 0;
+			return string.length();
+		}
+
+		static int instanceBranch(Object object) {
+			if (object instanceof String)
+				return object.hashCode();
+			return 0;
+		}
+
+		static int notInstanceBranch(Object object) {
+			if (!(object instanceof String))
+				return object.hashCode();
+			return 0;
+		}
+	}
+
+	private static final TestClasses classes = new TestClasses(Checks.class);
+
+	private static int eliminate(String method) {
+		return NullCheckElimination.eliminateNullChecks(classes.getMethod(Checks.class, method));
+	}
+
+	@Test
+	public void dereferencedLocalsAreNonNull() {
+		assertEquals(1, eliminate("dereferencedTwice"));
+	}
+
+	@Test
+	public void reassignedLocalsAreChecked() {
+		assertEquals(0, eliminate("reassigned"));
+	}
+
+	@Test
+	public void localsReassignedInHandlersAreChecked() {
+		assertEquals(0, eliminate("reassignedInHandler"));
+	}
+
+	@Test
+	public void receiverIsNonNullInHandlers() {
+		assertEquals(1, eliminate("receiverInHandler"));
+	}
+
+	@Test
+	public void nullComparisonsCheckTheNonNullBranch() {
+		assertEquals(1, eliminate("nonNullBranch"));
+		assertEquals(0, eliminate("nullBranch"));
+	}
+
+	@Test
+	public void instanceofChecksTheInstanceBranch() {
+		assertEquals(1, eliminate("instanceBranch"));
+		assertEquals(0, eliminate("notInstanceBranch"));
+	}
+}
@@ -0,0 +1,97 @@
+package com.thelogicmaster.clearwing;
+
+import com.thelogicmaster.clearwing.bytecode.Instruction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParseCacheTest {
+
+	@SuppressWarnings("unused")
+	static class Fixture {
+
+		int value;
+
+		int sum(int[] array) {
+			int sum = value;
+			for (int i: array)
+				sum += i;
+			return sum;
+		}
+
+		Runnable lambda() {
+			return () -> value++;
+		}
+	}
+
+	@TempDir
+	File directory;
+
+	private static byte[] getClassFile() throws IOException {
+		try (InputStream input = Fixture.class.getResourceAsStream("ParseCacheTest$Fixture.class")) {
+			return input.readAllBytes();
+		}
+	}
+
+	private static List<BytecodeClass> parse(TranspilerConfig config, byte[] classFile, ParseCache cache) throws IOException {
+		return new Parser(config).parse(List.of(() -> new ByteArrayInputStream(classFile)), cache);
+	}
+
+	/**
+	 * Summarize parsed classes by their methods and instructions, which have no equals implementations
+	 */
+	private static List<String> describe(List<BytecodeClass> classes) {
+		ArrayList<String> description = new ArrayList<>();
+		for (BytecodeClass clazz: classes)
+			for (BytecodeMethod method: clazz.getMethods()) {
+				description.add(clazz.getName() + "." + method.getName() + method.getDesc());
+				for (Instruction instruction: method.getInstructions())
+					description.add(instruction.toString());
+			}
+		return description;
+	}
+
+	@Test
+	public void storedClassesAreLoaded() throws IOException {
+		TranspilerConfig config = new TranspilerConfig();
+		byte[] classFile = getClassFile();
+		List<BytecodeClass> parsed = parse(config, classFile, new ParseCache(directory, config));
+		List<BytecodeClass> loaded = new ParseCache(directory, config).load(classFile);
+		assertNotNull(loaded);
+		assertEquals(describe(parsed), describe(loaded));
+	}
+
+	@Test
+	public void otherClassFilesMiss() throws IOException {
+		TranspilerConfig config = new TranspilerConfig();
+		byte[] classFile = getClassFile();
+		parse(config, classFile, new ParseCache(directory, config));
+		byte[] modified = classFile.clone();
+		modified[modified.length - 1]++;
+		assertNull(new ParseCache(directory, config).load(modified));
+	}
+
+	@Test
+	public void entriesFromOtherVersionsMiss() throws IOException {
+		TranspilerConfig config = new TranspilerConfig();
+		byte[] classFile = getClassFile();
+		parse(config, classFile, new ParseCache(directory, config));
+		TranspilerConfig unoptimized = new TranspilerConfig();
+		unoptimized.setOptimizations(false);
+		ParseCache cache = new ParseCache(directory, unoptimized);
+		assertNull(cache.load(classFile));
+
+		// The stale entry gets replaced
+		parse(unoptimized, classFile, cache);
+		assertNotNull(new ParseCache(directory, unoptimized).load(classFile));
+		assertNull(new ParseCache(directory, config).load(classFile));
+	}
+}
@@ -0,0 +1,111 @@
+package com.thelogicmaster.clearwing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SafepointPollsTest {
+
+	@SuppressWarnings("unused")
+	static class Loops {
+
+		static int flag;
+
+		static int shortLoop() {
+			int sum = 0;
+			for (int i = 0; i < 1000; i++)
+				sum += i;
+			return sum;
+		}
+
+		static int longLoop() {
+			int sum = 0;
+			for (int i = 0; i < 1001; i++)
+				sum += i;
+			return sum;
+		}
+
+		static int shortInclusiveLoop() {
+			int sum = 0;
+			for (int i = 1; i <= 1000; i++)
+				sum += i;
+			return sum;
+		}
+
+		static int longInclusiveLoop() {
+			int sum = 0;
+			for (int i = 0; i <= 1000; i++)
+				sum += i;
+			return sum;
+		}
+
+		static int nested() {
+			int sum = 0;
+			for (int i = 0; i < 500; i++)
+				for (int j = 0; j < 500; j++)
+					for (int k = 0; k < 500; k++)
+						sum += i ^ j ^ k;
+			return sum;
+		}
+
+		static int calling() {
+			int sum = 0;
+			for (int i = 0; i < 10; i++)
+				sum += shortLoop();
+			return sum;
+		}
+
+		static int unbounded() {
+			int sum = 0;
+			while (flag != 0)
+				sum++;
+			return sum;
+		}
+	}
+
+	private static final Map<String, BytecodeMethod> methods = new HashMap<>();
+
+	static {
+		try {
+			List<BytecodeClass> classes = new Parser(new TranspilerConfig()).parse(List.of(() -> Loops.class.getResourceAsStream("SafepointPollsTest$Loops.class")), null);
+			for (BytecodeMethod method: classes.get(0).getMethods())
+				methods.put(method.getOriginalName(), method);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static int countPolls(String method) {
+		return SafepointPolls.placeSafepointPolls(methods.get(method), true);
+	}
+
+	@Test
+	public void shortCountedLoopsSkipPolls() {
+		assertEquals(0, countPolls("shortLoop"));
+		assertEquals(0, countPolls("shortInclusiveLoop"));
+	}
+
+	@Test
+	public void tripLimitIsExact() {
+		assertEquals(1, countPolls("longLoop"));
+		assertEquals(1, countPolls("longInclusiveLoop"));
+	}
+
+	@Test
+	public void nestedShortLoopsPollOuterLoops() {
+		assertEquals(2, countPolls("nested"));
+	}
+
+	@Test
+	public void loopsWithCallsPoll() {
+		assertEquals(1, countPolls("calling"));
+	}
+
+	@Test
+	public void unboundedLoopsPoll() {
+		assertEquals(1, countPolls("unbounded"));
+	}
+}
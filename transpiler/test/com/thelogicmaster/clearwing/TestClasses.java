@@ -0,0 +1,72 @@
+package com.thelogicmaster.clearwing;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Parses test fixture classes and links them the way the transpiler does before running its passes, so passes that
+ * resolve calls, fields, or the class hierarchy can be run on them. Fixtures are nested classes of a test, or class
+ * files generated with ASM for bytecode that javac doesn't emit.
+ */
+class TestClasses {
+
+	private final HashMap<String, BytecodeClass> classMap = new HashMap<>();
+
+	TestClasses(Class<?>... fixtures) {
+		this(Arrays.stream(fixtures).map(TestClasses::getSource).toList());
+	}
+
+	TestClasses(byte[]... classFiles) {
+		this(Arrays.stream(classFiles).<Supplier<InputStream>>map(bytes -> () -> new ByteArrayInputStream(bytes)).toList());
+	}
+
+	private TestClasses(List<Supplier<InputStream>> sources) {
+		List<BytecodeClass> classes;
+		try {
+			classes = new Parser(new TranspilerConfig()).parse(sources, null);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		for (BytecodeClass clazz: classes)
+			classMap.put(clazz.getName(), clazz);
+		for (BytecodeClass clazz: classes)
+			clazz.processHierarchy(classMap);
+		for (BytecodeClass clazz: classes)
+			clazz.resolveSymbols();
+	}
+
+	private static Supplier<InputStream> getSource(Class<?> fixture) {
+		String name = fixture.getName().substring(fixture.getPackageName().length() + 1);
+		return () -> fixture.getResourceAsStream(name + ".class");
+	}
+
+	Collection<BytecodeClass> getClasses() {
+		return classMap.values();
+	}
+
+	HashMap<String, BytecodeClass> getClassMap() {
+		return classMap;
+	}
+
+	BytecodeClass getClass(String name) {
+		return Objects.requireNonNull(classMap.get(name.replace('.', '/')), name);
+	}
+
+	BytecodeClass getClass(Class<?> fixture) {
+		return getClass(fixture.getName());
+	}
+
+	BytecodeMethod getMethod(Class<?> fixture, String name) {
+		return getMethod(fixture.getName(), name);
+	}
+
+	BytecodeMethod getMethod(String className, String name) {
+		for (BytecodeMethod method: getClass(className).getMethods())
+			if (method.getOriginalName().equals(name))
+				return method;
+		throw new NoSuchElementException(className + "." + name);
+	}
+}